@@ -0,0 +1,241 @@
+package com.example.ivs_broadcaster;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.amazonaws.ivs.broadcast.CustomAudioSource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feeds the broadcast's custom audio input with the microphone mixed with PCM pushed by the app.
+ *
+ * A single capture thread reads 10 ms frames from an {@link AudioRecord}, adds whatever app audio
+ * is waiting in a {@link PcmRingBuffer}, meters the result and appends it to the session's
+ * {@link CustomAudioSource}. Muting stops the {@link AudioRecord} itself, so the microphone is
+ * released, and the thread keeps the stream's audio clock going with app audio or silence paced
+ * by the wall clock. All audio is 48 kHz mono 16-bit; app audio is expected in that format as
+ * little-endian bytes. An underrun is a frame the app was streaming for but had not delivered.
+ */
+final class AudioPipeline {
+    static final int SAMPLE_RATE = 48_000;
+    static final int CHANNELS = 1;
+    private static final String TAG = "AudioPipeline";
+    private static final int FRAME_SAMPLES = SAMPLE_RATE / 100;
+    private static final long FRAME_US = 10_000;
+    // how much app audio may be queued ahead of the mix
+    private static final int APP_BUFFER_SAMPLES = SAMPLE_RATE * 2;
+    // app audio pushed more recently than this is considered streaming
+    private static final long APP_STREAMING_MS = 200;
+    private static final float SILENCE_DB = -96f;
+
+    private final CustomAudioSource source;
+    private final PcmRingBuffer appAudio = new PcmRingBuffer(APP_BUFFER_SAMPLES);
+    // producer side scratch, Flutter platform thread only
+    private short[] pushScratch = new short[FRAME_SAMPLES];
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean muted = false;
+    private volatile float appGain = 1f;
+    private volatile long lastPushMs = 0;
+
+    // written by the capture thread, read for metrics
+    private volatile float peakDb = SILENCE_DB;
+    private volatile float rmsDb = SILENCE_DB;
+    private volatile long frames = 0;
+    private volatile long underruns = 0;
+    private volatile long appendFailures = 0;
+    private volatile long micErrors = 0;
+
+    AudioPipeline(CustomAudioSource source) {
+        this.source = source;
+        this.thread = new Thread(this::run, "IvsAudioCapture");
+        thread.start();
+    }
+
+    /**
+     * Queue little-endian 16-bit mono PCM at {@link #SAMPLE_RATE} to be mixed in. Only one thread
+     * may push.
+     *
+     * @return how many samples were queued; the rest did not fit
+     */
+    int push(byte[] pcm) {
+        int count = pcm.length / 2;
+        if (pushScratch.length < count) {
+            pushScratch = new short[count];
+        }
+        ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(pushScratch, 0, count);
+        lastPushMs = SystemClock.elapsedRealtime();
+        return appAudio.write(pushScratch, 0, count);
+    }
+
+    void setMuted(boolean muted) {
+        this.muted = muted;
+    }
+
+    boolean isMuted() {
+        return muted;
+    }
+
+    void setAppGain(float gain) {
+        appGain = Math.max(0f, gain);
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("peakDb", (double) peakDb);
+        metrics.put("rmsDb", (double) rmsDb);
+        metrics.put("muted", muted);
+        metrics.put("frames", frames);
+        metrics.put("underruns", underruns);
+        metrics.put("appBufferedMs", appAudio.available() * 1000L / SAMPLE_RATE);
+        metrics.put("appDroppedSamples", appAudio.getDroppedCount());
+        metrics.put("appendFailures", appendFailures);
+        metrics.put("micErrors", micErrors);
+        return metrics;
+    }
+
+    void release() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.d(TAG, "Audio: " + getMetrics());
+    }
+
+    // RECORD_AUDIO is requested from Dart before the preview starts
+    @SuppressLint("MissingPermission")
+    private AudioRecord openMicrophone() {
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record = new AudioRecord(MediaRecorder.AudioSource.CAMCORDER, SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                Math.max(minBuffer, FRAME_SAMPLES * 2 * 4));
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            micErrors++;
+            Log.e(TAG, "Could not open the microphone");
+            return null;
+        }
+        record.startRecording();
+        return record;
+    }
+
+    private void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        short[] mic = new short[FRAME_SAMPLES];
+        short[] app = new short[FRAME_SAMPLES];
+        ByteBuffer out = ByteBuffer.allocateDirect(FRAME_SAMPLES * 2).order(ByteOrder.nativeOrder());
+        AudioRecord record = null;
+        long nextFrameUs = SystemClock.elapsedRealtimeNanos() / 1000;
+        // retried on the next unmute rather than every frame
+        boolean micFailed = false;
+        while (running) {
+            boolean capture = !muted;
+            if (capture && record == null && !micFailed) {
+                record = openMicrophone();
+                micFailed = record == null;
+            } else if (!capture) {
+                micFailed = false;
+                if (record != null) {
+                    record.stop();
+                    record.release();
+                    record = null;
+                }
+            }
+
+            long timestampUs;
+            if (record != null) {
+                int read = 0;
+                while (read < FRAME_SAMPLES && running) {
+                    int count = record.read(mic, read, FRAME_SAMPLES - read);
+                    if (count < 0) {
+                        micErrors++;
+                        break;
+                    }
+                    read += count;
+                }
+                if (read < FRAME_SAMPLES) {
+                    // an error or a release in the middle of the frame, fill with silence
+                    Arrays.fill(mic, read, FRAME_SAMPLES, (short) 0);
+                }
+                timestampUs = System.nanoTime() / 1000 - FRAME_US;
+                nextFrameUs = SystemClock.elapsedRealtimeNanos() / 1000;
+            } else {
+                // no microphone to pace the loop
+                long waitUs = nextFrameUs - SystemClock.elapsedRealtimeNanos() / 1000;
+                if (waitUs > 0) {
+                    SystemClock.sleep(Math.max(1, waitUs / 1000));
+                    if (!running) {
+                        break;
+                    }
+                }
+                nextFrameUs += FRAME_US;
+                Arrays.fill(mic, (short) 0);
+                timestampUs = System.nanoTime() / 1000;
+            }
+
+            int appSamples = appAudio.read(app, 0, FRAME_SAMPLES);
+            if (appSamples < FRAME_SAMPLES
+                    && SystemClock.elapsedRealtime() - lastPushMs < APP_STREAMING_MS) {
+                underruns++;
+            }
+            mix(mic, app, appSamples, appGain, out);
+            out.rewind();
+            if (source.appendBuffer(out, FRAME_SAMPLES * 2, timestampUs) < 0) {
+                appendFailures++;
+            }
+            frames++;
+        }
+        if (record != null) {
+            record.stop();
+            record.release();
+        }
+    }
+
+    /**
+     * Add {@code appSamples} of {@code app} scaled by {@code gain} onto {@code mic}, saturating,
+     * write the result to {@code out} and update the level meters.
+     */
+    private void mix(short[] mic, short[] app, int appSamples, float gain, ByteBuffer out) {
+        out.clear();
+        int peak = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < FRAME_SAMPLES; i++) {
+            int sample = mic[i];
+            if (i < appSamples) {
+                sample += (int) (app[i] * gain);
+            }
+            if (sample > Short.MAX_VALUE) {
+                sample = Short.MAX_VALUE;
+            } else if (sample < Short.MIN_VALUE) {
+                sample = Short.MIN_VALUE;
+            }
+            out.putShort((short) sample);
+            peak = Math.max(peak, Math.abs(sample));
+            sumSquares += (double) sample * sample;
+        }
+        peakDb = toDb(peak);
+        rmsDb = toDb(Math.sqrt(sumSquares / FRAME_SAMPLES));
+    }
+
+    private static float toDb(double level) {
+        if (level <= 0) {
+            return SILENCE_DB;
+        }
+        return (float) Math.max(SILENCE_DB, 20 * Math.log10(level / Short.MAX_VALUE));
+    }
+}
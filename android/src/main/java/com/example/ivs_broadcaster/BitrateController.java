@@ -0,0 +1,54 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Decides the bitrate and frame rate a broadcast should aim for from its transmission stats.
+ *
+ * An implementation is created per session with what is known about the network beforehand and
+ * is fed every {@code TransmissionStats} callback. It only returns a {@link Decision} when it
+ * changes its mind so the caller can log and apply each one. Implementations are confined to the
+ * thread delivering the stats, apart from {@link #getCurrent()}.
+ */
+interface BitrateController {
+
+    /** An immutable target the broadcast should stay within. */
+    final class Decision {
+        final int bitrateCeiling;
+        final int fps;
+        final String reason;
+
+        Decision(int bitrateCeiling, int fps, String reason) {
+            this.bitrateCeiling = bitrateCeiling;
+            this.fps = fps;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Decision{ceiling=" + bitrateCeiling + ", fps=" + fps + ", " + reason + "}";
+        }
+    }
+
+    /**
+     * @return the bitrate to configure the session with
+     */
+    int getInitialBitrate();
+
+    /**
+     * Take one stats sample. {@code nowMs} is from a monotonic clock, bitrates are in bits per
+     * second.
+     *
+     * @return the new decision, or null if the current one still holds
+     */
+    Decision onTransmissionStats(long nowMs, double measuredBitrate, double recommendedBitrate, double rttMs);
+
+    /**
+     * @return the decision in force, safe to call from any thread
+     */
+    Decision getCurrent();
+
+    /**
+     * @return a bitrate this session's network sustained, to seed the next session, or 0 if there
+     * was not enough to tell
+     */
+    long getSustainedBitrate();
+}
@@ -0,0 +1,121 @@
+package com.example.ivs_broadcaster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coalesces the broadcast session's transmission, audio and retry callbacks into one snapshot.
+ *
+ * The SDK reports these at up to 30 Hz; callers feed every callback in and drain a single event
+ * per interval. Only the latest values survive, apart from the health score, which is smoothed so
+ * the UI does not flicker on a single bad sample. The retry state is a transition rather than a
+ * sample, so it is only part of the event that follows a change. Thread-safe.
+ */
+final class BroadcastStatsAggregator {
+    private static final double SCORE_SMOOTHING = 0.3;
+    // RTT at or below this is considered perfect, at or above GOOD + RANGE worthless
+    private static final double GOOD_RTT_MS = 100;
+    private static final double RTT_RANGE_MS = 900;
+    private static final int WORST_HEALTH = 4;
+
+    private boolean dirty = false;
+    private boolean hasTransmissionStats = false;
+    private double measuredBitrate;
+    private double recommendedBitrate;
+    private double rttMs;
+    private int qualityLevel;
+    private int healthLevel;
+    private double audioPeak;
+    private double audioRms;
+    private boolean hasAudioStats = false;
+    private int retryState = -1;
+    private boolean retryStateChanged = false;
+    private double healthScore = -1;
+
+    /**
+     * @param qualityLevel 0 (near maximum) to 4 (near minimum), matching the Dart BroadcastQuality enum
+     * @param healthLevel  0 (excellent) to 4 (bad), matching the Dart BroadcastHealth enum
+     */
+    synchronized void onTransmissionStats(double measuredBitrate, double recommendedBitrate, double rttMs,
+                                          int qualityLevel, int healthLevel) {
+        this.measuredBitrate = measuredBitrate;
+        this.recommendedBitrate = recommendedBitrate;
+        this.rttMs = rttMs;
+        this.qualityLevel = qualityLevel;
+        this.healthLevel = healthLevel;
+        hasTransmissionStats = true;
+        double score = computeScore();
+        healthScore = healthScore < 0 ? score : healthScore + SCORE_SMOOTHING * (score - healthScore);
+        dirty = true;
+    }
+
+    synchronized void onAudioStats(double peak, double rms) {
+        audioPeak = peak;
+        audioRms = rms;
+        hasAudioStats = true;
+        dirty = true;
+    }
+
+    /**
+     * @param retryState ordinal matching the Dart RetryState enum
+     */
+    synchronized void onRetryState(int retryState) {
+        if (retryState == this.retryState) {
+            return;
+        }
+        this.retryState = retryState;
+        retryStateChanged = true;
+        dirty = true;
+    }
+
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * @return smoothed health between 0 and 100, or -1 before the first transmission stats
+     */
+    synchronized double getHealthScore() {
+        return healthScore;
+    }
+
+    /**
+     * Build the event for everything that changed since the last drain.
+     *
+     * @return the event, or null if nothing changed
+     */
+    synchronized Map<Object, Object> drain() {
+        if (!dirty) {
+            return null;
+        }
+        dirty = false;
+        Map<Object, Object> event = new HashMap<>();
+        Map<String, Object> stats = new HashMap<>();
+        if (hasTransmissionStats) {
+            // keys understood by the existing Dart stream controllers
+            event.put("quality", qualityLevel);
+            event.put("network", healthLevel);
+            stats.put("measuredBitrate", measuredBitrate);
+            stats.put("recommendedBitrate", recommendedBitrate);
+            stats.put("rtt", rttMs);
+            stats.put("healthScore", Math.round(healthScore * 10) / 10.0);
+        }
+        if (hasAudioStats) {
+            stats.put("audioPeak", audioPeak);
+            stats.put("audioRms", audioRms);
+        }
+        if (retryStateChanged) {
+            event.put("retrystate", retryState);
+            retryStateChanged = false;
+        }
+        event.put("stats", stats);
+        return event;
+    }
+
+    private double computeScore() {
+        double health = 1.0 - Math.min(WORST_HEALTH, Math.max(0, healthLevel)) / (double) WORST_HEALTH;
+        double bitrate = recommendedBitrate > 0 ? Math.min(1.0, measuredBitrate / recommendedBitrate) : health;
+        double rtt = 1.0 - Math.min(1.0, Math.max(0.0, (rttMs - GOOD_RTT_MS) / RTT_RANGE_MS));
+        return 100.0 * (0.5 * health + 0.3 * bitrate + 0.2 * rtt);
+    }
+}
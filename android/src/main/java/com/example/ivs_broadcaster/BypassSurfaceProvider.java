@@ -0,0 +1,82 @@
+package com.example.ivs_broadcaster;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.Preview;
+import androidx.camera.core.SurfaceRequest;
+import androidx.core.content.ContextCompat;
+
+import com.amazonaws.ivs.broadcast.ImageDevice;
+import com.amazonaws.ivs.broadcast.SurfaceSource;
+
+/**
+ * Surface provider used for the CameraX preview use-case when no AR effect is active. It hands
+ * the broadcast session's image input surface, or the {@link SurfaceFanout} feeding it, straight
+ * to the camera, so frames skip the CPU copy and DeepAR entirely.
+ */
+public class BypassSurfaceProvider implements Preview.SurfaceProvider {
+    private static final String tag = BypassSurfaceProvider.class.getSimpleName();
+
+    /**
+     * Called on the main thread once the camera no longer draws into the surface.
+     */
+    interface ReleaseListener {
+        void onSurfaceReleased();
+    }
+
+    /**
+     * Rotates the camera's sensor oriented buffers upright, in degrees clockwise.
+     */
+    interface RotationTarget {
+        void setRotation(int degrees);
+    }
+
+    BypassSurfaceProvider(Context context, SurfaceSource surfaceSource, ReleaseListener releaseListener) {
+        this(context, surfaceSource.getInputSurface(),
+                degrees -> surfaceSource.setRotation(toRotation(degrees)), releaseListener);
+    }
+
+    BypassSurfaceProvider(Context context, Surface surface, RotationTarget rotationTarget,
+                          ReleaseListener releaseListener) {
+        this.context = context;
+        this.surface = surface;
+        this.rotationTarget = rotationTarget;
+        this.releaseListener = releaseListener;
+    }
+
+    @Override
+    public void onSurfaceRequested(@NonNull SurfaceRequest request) {
+        Log.d(tag, "Surface requested: " + request.getResolution());
+
+        // the camera writes sensor oriented buffers, let the session rotate them upright
+        request.setTransformationInfoListener(ContextCompat.getMainExecutor(context),
+                transformationInfo -> rotationTarget.setRotation(transformationInfo.getRotationDegrees()));
+
+        request.provideSurface(surface, ContextCompat.getMainExecutor(context), result -> {
+            Log.i(tag, "Surface released, result code " + result.getResultCode());
+            rotationTarget.setRotation(0);
+            releaseListener.onSurfaceReleased();
+        });
+    }
+
+    private static ImageDevice.Rotation toRotation(int degrees) {
+        switch (degrees) {
+            case 90:
+                return ImageDevice.Rotation.ROTATION_90;
+            case 180:
+                return ImageDevice.Rotation.ROTATION_180;
+            case 270:
+                return ImageDevice.Rotation.ROTATION_270;
+            default:
+                return ImageDevice.Rotation.ROTATION_0;
+        }
+    }
+
+    private final Context context;
+    private final RotationTarget rotationTarget;
+    private final Surface surface;
+    private final ReleaseListener releaseListener;
+}
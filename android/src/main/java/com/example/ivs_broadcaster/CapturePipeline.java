@@ -0,0 +1,265 @@
+package com.example.ivs_broadcaster;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the CPU camera path off the main thread.
+ *
+ * CameraX delivers frames to the analyzer on a dedicated capture thread where they are copied
+ * into the {@link FramePool}, as RGBA or packed to NV21 depending on the {@link IngestMode}.
+ * The copies are handed to a submission thread through a bounded {@link FrameQueue} that drops
+ * the oldest frame when DeepAR falls behind, so neither thread ever waits on the other and the
+ * main thread is left to Flutter. The pool must be sized with
+ * {@link FramePool#depthForQueue(int)} for the queue's capacity, otherwise the pool runs dry before
+ * the queue is full and the newest frame is dropped instead of the oldest.
+ */
+class CapturePipeline {
+    private static final String TAG = "CapturePipeline";
+    static final int DEFAULT_QUEUE_CAPACITY = 2;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long REPEAT_INTERVAL_MS = 33;
+
+    /**
+     * Receives frames on the submission thread. The frame is only valid until the call returns
+     * unless the sink calls {@link FramePool.Frame#retain()}.
+     */
+    interface FrameSink {
+        void onFrame(@NonNull FramePool.Frame frame);
+
+        /**
+         * Called on the submission thread when no frame arrived for one frame interval while
+         * {@link #setRepeatLastFrame(boolean)} is on, e.g. while the camera is being switched.
+         */
+        void onIdle();
+    }
+
+    private final FramePool framePool;
+    private final FrameRateGovernor governor;
+    private final PipelineMetrics metrics;
+    private final IngestMode ingestMode;
+    private final YuvConverter yuvConverter = new YuvConverter();
+    private final FrameQueue<FramePool.Frame> queue;
+    private final FrameSink sink;
+    private final ExecutorService analyzerExecutor;
+    private final Thread submitThread;
+    private volatile boolean running = true;
+    private volatile boolean repeatLastFrame = false;
+
+    CapturePipeline(FramePool framePool, FrameRateGovernor governor, PipelineMetrics metrics,
+                    IngestMode ingestMode, FrameSink sink) {
+        this(framePool, governor, metrics, ingestMode, sink, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    CapturePipeline(FramePool framePool, FrameRateGovernor governor, PipelineMetrics metrics,
+                    IngestMode ingestMode, FrameSink sink, int queueCapacity) {
+        this.framePool = framePool;
+        this.governor = governor;
+        this.metrics = metrics;
+        this.ingestMode = ingestMode;
+        this.sink = sink;
+        this.queue = new FrameQueue<>(queueCapacity, frame -> {
+            metrics.recordDropped();
+            frame.release();
+        });
+        this.analyzerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                runnable.run();
+            }, "IvsCaptureAnalyzer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.submitThread = new Thread(this::submitLoop, "IvsCaptureSubmit");
+        this.submitThread.setDaemon(true);
+        this.submitThread.start();
+    }
+
+    IngestMode getIngestMode() {
+        return ingestMode;
+    }
+
+    /**
+     * @return the CameraX output format matching this pipeline's ingest mode
+     */
+    int getOutputImageFormat() {
+        return ingestMode == IngestMode.YUV
+                ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888
+                : ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888;
+    }
+
+    /**
+     * @return the executor CameraX should run this analyzer on
+     */
+    ExecutorService getAnalyzerExecutor() {
+        return analyzerExecutor;
+    }
+
+    /**
+     * @param bindGeneration stamped on every frame this analyzer copies, so the sink can tell
+     *                       frames of a new camera binding from ones still queued from the old one
+     * @return the analyzer to set on one ImageAnalysis use case
+     */
+    ImageAnalysis.Analyzer analyzerFor(int bindGeneration) {
+        return image -> analyze(image, bindGeneration);
+    }
+
+    private void analyze(@NonNull ImageProxy image, int bindGeneration) {
+        try {
+            if (!running) {
+                return;
+            }
+            long analyzedAt = System.nanoTime();
+            if (!governor.shouldAccept(analyzedAt)) {
+                // shed surplus frames before paying for the copy
+                return;
+            }
+            FramePool.Frame frame = ingestMode == IngestMode.YUV ? copyYuv(image) : copyRgba(image);
+            if (frame == null) {
+                // DeepAR still holds every buffer, drop this frame instead of tearing one
+                metrics.recordDropped();
+                return;
+            }
+            frame.analyzedNanos = analyzedAt;
+            frame.copiedNanos = System.nanoTime();
+            frame.captureNanos = toNanoTime(image.getImageInfo().getTimestamp(), analyzedAt);
+            if (frame.captureNanos != 0) {
+                metrics.record(PipelineMetrics.Stage.CAPTURE, (analyzedAt - frame.captureNanos) / 1000);
+            }
+            metrics.record(PipelineMetrics.Stage.COPY, (frame.copiedNanos - analyzedAt) / 1000);
+            frame.ingestMode = ingestMode;
+            frame.width = image.getWidth();
+            frame.height = image.getHeight();
+            frame.rotationDegrees = image.getImageInfo().getRotationDegrees();
+            frame.timestampNanos = image.getImageInfo().getTimestamp();
+            frame.bindGeneration = bindGeneration;
+            queue.offer(frame);
+        } finally {
+            image.close();
+        }
+    }
+
+    /**
+     * Camera timestamps use either the monotonic clock or elapsedRealtime depending on the
+     * device; map them onto System.nanoTime() or return 0 if neither fits.
+     */
+    private static long toNanoTime(long sensorTimestamp, long now) {
+        if (sensorTimestamp <= 0) {
+            return 0;
+        }
+        long age = now - sensorTimestamp;
+        if (age >= 0 && age < 1_000_000_000L) {
+            return sensorTimestamp;
+        }
+        long realtimeAge = SystemClock.elapsedRealtimeNanos() - sensorTimestamp;
+        if (realtimeAge >= 0 && realtimeAge < 1_000_000_000L) {
+            return now - realtimeAge;
+        }
+        return 0;
+    }
+
+    private FramePool.Frame copyRgba(ImageProxy image) {
+        ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+        int rowBytes = image.getWidth() * plane.getPixelStride();
+        FramePool.Frame frame = framePool.acquire(rowBytes * image.getHeight());
+        if (frame != null) {
+            frame.copyFrom(plane.getBuffer(), plane.getRowStride(), rowBytes, image.getHeight());
+            frame.pixelStride = plane.getPixelStride();
+        }
+        return frame;
+    }
+
+    private FramePool.Frame copyYuv(ImageProxy image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        FramePool.Frame frame = framePool.acquire(YuvConverter.nv21Size(width, height));
+        if (frame != null) {
+            ImageProxy.PlaneProxy[] planes = image.getPlanes();
+            ByteBuffer out = frame.getBuffer();
+            yuvConverter.packNv21(
+                    planes[0].getBuffer(), planes[0].getRowStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(),
+                    planes[1].getRowStride(), planes[1].getPixelStride(),
+                    width, height, out);
+            out.flip();
+            frame.pixelStride = 1;
+        }
+        return frame;
+    }
+
+    /**
+     * While enabled the sink is asked to repeat its last frame whenever the camera goes quiet for
+     * a frame interval, so the output keeps moving through gaps such as a camera switch.
+     */
+    void setRepeatLastFrame(boolean repeat) {
+        repeatLastFrame = repeat;
+    }
+
+    private void submitLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+        while (running) {
+            boolean repeat = repeatLastFrame;
+            FramePool.Frame frame;
+            try {
+                frame = queue.poll(repeat ? REPEAT_INTERVAL_MS : POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (frame == null) {
+                if (repeat && running) {
+                    try {
+                        sink.onIdle();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Frame repeat failed", e);
+                    }
+                }
+                continue;
+            }
+            long start = System.nanoTime();
+            metrics.record(PipelineMetrics.Stage.QUEUE, (start - frame.copiedNanos) / 1000);
+            try {
+                sink.onFrame(frame);
+                long end = System.nanoTime();
+                // render and total are recorded once the frame comes out of DeepAR
+                metrics.record(PipelineMetrics.Stage.SUBMIT, (end - start) / 1000);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Frame submission failed", e);
+            } finally {
+                frame.release();
+            }
+        }
+    }
+
+    /**
+     * @return number of copied frames discarded because a newer frame replaced them
+     */
+    long getQueueDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * Stop both threads and return every queued frame to the pool. Blocks until the submission
+     * thread has left the sink so callers can safely tear down what the sink uses.
+     */
+    void shutdown() {
+        running = false;
+        analyzerExecutor.shutdown();
+        queue.close();
+        submitThread.interrupt();
+        try {
+            submitThread.join(POLL_TIMEOUT_MS * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
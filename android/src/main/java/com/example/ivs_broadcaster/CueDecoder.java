@@ -0,0 +1,167 @@
+package com.example.ivs_broadcaster;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the text of timed metadata cues into the maps sent to Flutter.
+ *
+ * A cue may carry a single message or an RFC 7464 batch as sent by {@link MetadataQueue}, in
+ * which case every record becomes its own cue. Records that look like JSON are parsed; the raw
+ * text is always kept. The player delivers the same cue again after a seek or a reconnect, so a
+ * record with the same start time and content as one seen within the dedup window is dropped.
+ * Not thread-safe: meant to be confined to the cue worker thread. Timestamps are caller supplied
+ * in milliseconds from a monotonic clock.
+ */
+final class CueDecoder {
+    static final long DEFAULT_DEDUP_WINDOW_MS = 60_000;
+    static final int DEFAULT_MAX_REMEMBERED = 512;
+
+    private static final class Key {
+        final long startTime;
+        final int hash;
+        final int length;
+
+        Key(long startTime, String record) {
+            this.startTime = startTime;
+            this.hash = record.hashCode();
+            this.length = record.length();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return startTime == key.startTime && hash == key.hash && length == key.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Long.hashCode(startTime) + hash) + length;
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final long dedupWindowMs;
+    private final int maxRemembered;
+    // insertion ordered, so the oldest records are evicted first
+    private final LinkedHashMap<Key, Long> seen = new LinkedHashMap<>();
+
+    private long decodedCount = 0;
+    private long duplicateCount = 0;
+    private long parseFailureCount = 0;
+
+    CueDecoder() {
+        this(DEFAULT_DEDUP_WINDOW_MS, DEFAULT_MAX_REMEMBERED);
+    }
+
+    CueDecoder(long dedupWindowMs, int maxRemembered) {
+        this.dedupWindowMs = dedupWindowMs;
+        this.maxRemembered = Math.max(1, maxRemembered);
+    }
+
+    /**
+     * Decode one cue, appending a map per new record to {@code out}.
+     *
+     * @return how many records were appended
+     */
+    int decode(String text, long startTime, long endTime, long nowMs, List<Map<String, Object>> out) {
+        forget(nowMs);
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int added = 0;
+        for (String record : split(text)) {
+            Key key = new Key(startTime, record);
+            if (seen.containsKey(key)) {
+                duplicateCount++;
+                continue;
+            }
+            seen.put(key, nowMs);
+            Map<String, Object> cue = new HashMap<>();
+            cue.put("startTime", startTime);
+            cue.put("endTime", endTime);
+            cue.put("text", record);
+            Object data = parse(record);
+            if (data != null) {
+                cue.put("data", data);
+            }
+            out.add(cue);
+            decodedCount++;
+            added++;
+        }
+        forget(nowMs);
+        return added;
+    }
+
+    long getDecodedCount() {
+        return decodedCount;
+    }
+
+    long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    long getParseFailureCount() {
+        return parseFailureCount;
+    }
+
+    static List<String> split(String text) {
+        List<String> records = new ArrayList<>();
+        if (text.indexOf(MetadataQueue.RECORD_SEPARATOR) < 0) {
+            records.add(text);
+            return records;
+        }
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf(MetadataQueue.RECORD_SEPARATOR, start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String record = text.substring(start, end).trim();
+            if (!record.isEmpty()) {
+                records.add(record);
+            }
+            start = end + 1;
+        }
+        return records;
+    }
+
+    /**
+     * @return the parsed JSON as maps, lists, strings, doubles and booleans, or null if the record
+     * is not a JSON object or array
+     */
+    private Object parse(String record) {
+        char first = record.charAt(0);
+        if (first != '{' && first != '[') {
+            return null;
+        }
+        try {
+            return gson.fromJson(record, Object.class);
+        } catch (JsonParseException e) {
+            parseFailureCount++;
+            return null;
+        }
+    }
+
+    private void forget(long nowMs) {
+        Iterator<Map.Entry<Key, Long>> iterator = seen.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Long> entry = iterator.next();
+            if (seen.size() > maxRemembered || nowMs - entry.getValue() > dedupWindowMs) {
+                iterator.remove();
+            } else {
+                break;
+            }
+        }
+    }
+}
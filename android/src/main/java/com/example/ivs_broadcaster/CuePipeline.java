@@ -0,0 +1,171 @@
+package com.example.ivs_broadcaster;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decodes timed metadata cues off the main thread and hands them to Flutter in batches.
+ *
+ * The player reports cues on the main thread, where {@link #submit(String, long, long)} only
+ * queues the text for a worker running a {@link CueDecoder}. Decoded cues are collected and
+ * delivered on the main thread at most once per delivery interval, at most {@link #MAX_BATCH}
+ * at a time; if more than {@link #MAX_PENDING} pile up the oldest are dropped, so a burst can
+ * neither flood the event channel nor grow without bound.
+ */
+final class CuePipeline {
+    static final long DEFAULT_DELIVERY_INTERVAL_MS = 100;
+    static final int MAX_BATCH = 50;
+    static final int MAX_PENDING = 500;
+    private static final String TAG = "CuePipeline";
+
+    /** Receives decoded cues on the main thread, oldest first. */
+    interface Listener {
+        void onCues(List<Map<String, Object>> cues);
+    }
+
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService worker;
+    // only used on the worker
+    private final CueDecoder decoder = new CueDecoder();
+    private final List<Map<String, Object>> decoded = new ArrayList<>();
+
+    private final Object lock = new Object();
+    private final ArrayList<Map<String, Object>> pending = new ArrayList<>();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+    private volatile long deliveryIntervalMs = DEFAULT_DELIVERY_INTERVAL_MS;
+    private volatile boolean closed = false;
+    // main thread only
+    private long lastDeliveryMs = 0;
+
+    private long submittedCues = 0;
+    private long deliveredCues = 0;
+    private long deliveredBatches = 0;
+    private long droppedCues = 0;
+
+    CuePipeline(Listener listener) {
+        this.listener = listener;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "IvsCueDecoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a cue's text for decoding. Safe to call from any thread.
+     */
+    void submit(String text, long startTime, long endTime) {
+        if (closed) {
+            return;
+        }
+        synchronized (lock) {
+            submittedCues++;
+        }
+        worker.execute(() -> decode(text, startTime, endTime));
+    }
+
+    void setDeliveryInterval(long intervalMs) {
+        deliveryIntervalMs = Math.max(0, intervalMs);
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        synchronized (lock) {
+            metrics.put("submitted", submittedCues);
+            metrics.put("delivered", deliveredCues);
+            metrics.put("batches", deliveredBatches);
+            metrics.put("dropped", droppedCues);
+            metrics.put("pending", pending.size());
+        }
+        return metrics;
+    }
+
+    /**
+     * Stop decoding and delivering; anything pending is discarded.
+     */
+    void close() {
+        closed = true;
+        worker.shutdownNow();
+        mainHandler.removeCallbacks(deliver);
+        synchronized (lock) {
+            pending.clear();
+        }
+        Log.d(TAG, "Cues: " + getMetrics() + ", duplicates=" + decoder.getDuplicateCount()
+                + ", parse failures=" + decoder.getParseFailureCount());
+    }
+
+    private void decode(String text, long startTime, long endTime) {
+        decoded.clear();
+        if (decoder.decode(text, startTime, endTime, SystemClock.elapsedRealtime(), decoded) == 0) {
+            return;
+        }
+        synchronized (lock) {
+            pending.addAll(decoded);
+            int overflow = pending.size() - MAX_PENDING;
+            if (overflow > 0) {
+                pending.subList(0, overflow).clear();
+                droppedCues += overflow;
+            }
+        }
+        decoded.clear();
+        scheduleDelivery();
+    }
+
+    private void scheduleDelivery() {
+        if (!closed && deliveryScheduled.compareAndSet(false, true)) {
+            mainHandler.post(deliver);
+        }
+    }
+
+    private final Runnable deliver = new Runnable() {
+        @Override
+        public void run() {
+            if (closed) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            long wait = lastDeliveryMs + deliveryIntervalMs - now;
+            if (wait > 0) {
+                // still inside the interval of the previous batch
+                mainHandler.postDelayed(this, wait);
+                return;
+            }
+            List<Map<String, Object>> batch;
+            boolean more;
+            synchronized (lock) {
+                // cleared under the lock so cues added after this batch schedule another one
+                deliveryScheduled.set(false);
+                int count = Math.min(pending.size(), MAX_BATCH);
+                batch = new ArrayList<>(pending.subList(0, count));
+                pending.subList(0, count).clear();
+                more = !pending.isEmpty();
+                deliveredCues += count;
+                if (count > 0) {
+                    deliveredBatches++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                lastDeliveryMs = now;
+                listener.onCues(batch);
+            }
+            if (more) {
+                scheduleDelivery();
+            }
+        }
+    };
+}
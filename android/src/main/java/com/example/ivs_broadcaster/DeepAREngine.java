@@ -0,0 +1,192 @@
+package com.example.ivs_broadcaster;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.Image;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.deepar.ar.ARErrorType;
+import ai.deepar.ar.AREventListener;
+import ai.deepar.ar.DeepAR;
+
+/**
+ * Process-level, reference-counted holder of the DeepAR engine.
+ *
+ * Initialising DeepAR creates a GL context and loads its models, which is too slow to repeat
+ * every time the go-live screen is opened. Views acquire the engine when they are created and
+ * release it in dispose; the engine is only shut down once nobody has held it for
+ * {@link #IDLE_TIMEOUT_MS}.
+ *
+ * DeepAR has a single render surface and a single set of callbacks, so only one holder is active
+ * at a time: the one that acquired it last. The previously active holder is told to let go of the
+ * engine first and gets it back, in acquisition order, once the holders above it have released it.
+ * Callbacks only reach the active holder. Must be used from the main thread.
+ */
+class DeepAREngine {
+    private static final String TAG = "DeepAREngine";
+    private static final String LICENSE_KEY = "eb7b033f1a6d9db5256545fdfdf319e32735116df5f7b7040b939486d018ac6c209f074ebe1afdf4";
+    private static final long IDLE_TIMEOUT_MS = 30_000;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable idleShutdown = this::shutdown;
+    // acquisition order, the last one is active
+    private final List<Holder> holders = new ArrayList<>();
+    private DeepAR deepAR;
+    private volatile Holder active;
+
+    /**
+     * A user of the engine. Besides DeepAR's own callbacks it is told when it stops or starts
+     * being the active holder.
+     */
+    interface Holder extends AREventListener {
+        /**
+         * Another holder took the engine over. Detach the render surface and stop feeding frames
+         * before returning; the instance must not be used until {@link #onEngineRestored}.
+         */
+        void onEngineRevoked();
+
+        /**
+         * The holder that took the engine over released it, this one is active again. The
+         * engine has no render surface and no effect loaded.
+         */
+        void onEngineRestored(DeepAR deepAR);
+    }
+
+    DeepAREngine(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Hand out the engine, initialising it if this is the first use or it was shut down, and make
+     * the caller the active holder. The previously active holder is revoked first.
+     */
+    DeepAR acquire(Holder holder) {
+        if (holders.contains(holder)) {
+            throw new IllegalStateException("Engine acquired twice by the same holder");
+        }
+        mainHandler.removeCallbacks(idleShutdown);
+        if (deepAR == null) {
+            Log.d(TAG, "Initializing DeepAR");
+            deepAR = new DeepAR(context);
+            deepAR.setLicenseKey(LICENSE_KEY);
+            deepAR.initialize(context, dispatcher);
+        } else {
+            Log.d(TAG, "Reusing DeepAR, references: " + holders.size());
+        }
+        Holder previous = active;
+        if (previous != null) {
+            previous.onEngineRevoked();
+            clean();
+        }
+        holders.add(holder);
+        active = holder;
+        return deepAR;
+    }
+
+    /**
+     * Give the engine back. The caller must not use the instance it acquired afterwards. If it
+     * was the active holder the engine goes back to the previous one.
+     */
+    void release(Holder holder) {
+        if (!holders.remove(holder)) {
+            Log.w(TAG, "release called without a matching acquire");
+            return;
+        }
+        if (active != holder) {
+            return;
+        }
+        active = null;
+        if (deepAR == null) {
+            return;
+        }
+        clean();
+        if (holders.isEmpty()) {
+            // keep it initialised for a while for the next view
+            mainHandler.postDelayed(idleShutdown, IDLE_TIMEOUT_MS);
+        } else {
+            Holder next = holders.get(holders.size() - 1);
+            active = next;
+            next.onEngineRestored(deepAR);
+        }
+    }
+
+    int getRefCount() {
+        return holders.size();
+    }
+
+    private void clean() {
+        deepAR.setRenderSurface(null, 0, 0);
+        deepAR.switchEffect("effect", (String) null);
+    }
+
+    /**
+     * Release the engine now regardless of the idle timeout.
+     */
+    void shutdown() {
+        mainHandler.removeCallbacks(idleShutdown);
+        if (deepAR != null) {
+            Log.d(TAG, "Releasing DeepAR, references: " + holders.size());
+            deepAR.release();
+            deepAR = null;
+        }
+        active = null;
+        holders.clear();
+    }
+
+    private final AREventListener dispatcher = new AREventListener() {
+        @Override public void screenshotTaken(Bitmap bitmap) {
+            AREventListener target = active;
+            if (target != null) target.screenshotTaken(bitmap);
+        }
+        @Override public void videoRecordingStarted() {
+            AREventListener target = active;
+            if (target != null) target.videoRecordingStarted();
+        }
+        @Override public void videoRecordingFinished() {
+            AREventListener target = active;
+            if (target != null) target.videoRecordingFinished();
+        }
+        @Override public void videoRecordingFailed() {
+            AREventListener target = active;
+            if (target != null) target.videoRecordingFailed();
+        }
+        @Override public void videoRecordingPrepared() {
+            AREventListener target = active;
+            if (target != null) target.videoRecordingPrepared();
+        }
+        @Override public void shutdownFinished() {
+            AREventListener target = active;
+            if (target != null) target.shutdownFinished();
+        }
+        @Override public void initialized() {
+            AREventListener target = active;
+            if (target != null) target.initialized();
+        }
+        @Override public void faceVisibilityChanged(boolean b) {
+            AREventListener target = active;
+            if (target != null) target.faceVisibilityChanged(b);
+        }
+        @Override public void imageVisibilityChanged(String s, boolean b) {
+            AREventListener target = active;
+            if (target != null) target.imageVisibilityChanged(s, b);
+        }
+        @Override public void frameAvailable(Image image) {
+            AREventListener target = active;
+            if (target != null) target.frameAvailable(image);
+        }
+        @Override public void error(ARErrorType arErrorType, String s) {
+            AREventListener target = active;
+            if (target != null) target.error(arErrorType, s);
+        }
+        @Override public void effectSwitched(String s) {
+            AREventListener target = active;
+            if (target != null) target.effectSwitched(s);
+        }
+    };
+}
@@ -0,0 +1,301 @@
+package com.example.ivs_broadcaster;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resolves effect names to paths DeepAR can load and keeps the likely next effects warm.
+ *
+ * The list of bundled effects is read from the APK once per process. Effects can optionally be
+ * extracted into the cache directory, which lets DeepAR load them from a plain file instead of
+ * going through the asset manager. Without extraction "warm" only means the asset has been read
+ * once so its pages sit in the OS page cache; nothing is held in memory by this class and DeepAR
+ * still parses the effect on every switch. Preloading runs on a single background thread and a
+ * bounded LRU keeps the most recently used effects warm; evicted extractions are deleted again.
+ * The thread and the LRU are shared by every view in the process, as they all extract into the
+ * same directory and one view's eviction must not delete a file another view still counts as warm.
+ */
+class EffectManager {
+    private static final String TAG = "EffectManager";
+    static final String NONE = "none";
+    private static final String EFFECT_EXTENSION = ".deepar";
+    private static final String ASSET_URI_PREFIX = "file:///android_asset/";
+    private static final String CACHE_DIR = "deepar_effects";
+    private static final int DEFAULT_WARM_EFFECTS = 4;
+    private static final String EXTRACTED_KEY_SUFFIX = "@extracted";
+
+    // preferred order for the effects we ship, anything else in the assets is appended
+    private static final List<String> PREFERRED_ORDER = Arrays.asList(
+            "aviators.deepar",
+            "bigmouth.deepar",
+            "dalmatian.deepar",
+            "flowers.deepar",
+            "koala.deepar",
+            "lion.deepar",
+            "smallface.deepar",
+            "teddycigar.deepar",
+            "background_segmentation.deepar",
+            "tripleface.deepar",
+            "sleepingmask.deepar",
+            "fatify.deepar",
+            "mudmask.deepar",
+            "pug.deepar",
+            "twistedface.deepar",
+            "grumpycat.deepar"
+    );
+
+    private static volatile List<String> assetIndex;
+
+    // keyed by cacheKey(), valued by the path DeepAR loads
+    private static final LruCache<String, String> warmEffects = new LruCache<String, String>(DEFAULT_WARM_EFFECTS) {
+        @Override
+        protected void entryRemoved(boolean evicted, String key, String oldPath, String newPath) {
+            if (evicted && !oldPath.startsWith(ASSET_URI_PREFIX)) {
+                if (!new File(oldPath).delete()) {
+                    Log.w(TAG, "Unable to delete evicted effect " + oldPath);
+                }
+            }
+        }
+    };
+    private static final ExecutorService preloadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "IvsEffectPreload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AssetManager assets;
+    private final File cacheDir;
+    private final boolean extractToCache;
+    private final List<String> effects;
+
+    // switch latency, guarded by this
+    private String pendingEffect;
+    private long pendingSince;
+    private int switchCount;
+    private long lastSwitchMs;
+    private long maxSwitchMs;
+    private long totalSwitchMs;
+
+    EffectManager(Context context, boolean extractToCache) {
+        this.assets = context.getAssets();
+        this.cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        this.extractToCache = extractToCache;
+        this.effects = buildEffectList(getAssetIndex(assets));
+    }
+
+    /**
+     * Views with and without extraction share the LRU, so an extracted file gets its own key and
+     * a view that extracts never settles for a warm asset.
+     */
+    private String cacheKey(String name) {
+        return extractToCache ? name + EXTRACTED_KEY_SUFFIX : name;
+    }
+
+    private static List<String> getAssetIndex(AssetManager assets) {
+        List<String> index = assetIndex;
+        if (index == null) {
+            synchronized (EffectManager.class) {
+                index = assetIndex;
+                if (index == null) {
+                    index = new ArrayList<>();
+                    try {
+                        String[] names = assets.list("");
+                        if (names != null) {
+                            for (String name : names) {
+                                if (name.endsWith(EFFECT_EXTENSION)) {
+                                    index.add(name);
+                                }
+                            }
+                        }
+                    } catch (IOException e) {
+                        Log.e(TAG, "Unable to list effect assets", e);
+                    }
+                    index = Collections.unmodifiableList(index);
+                    assetIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static List<String> buildEffectList(List<String> index) {
+        Set<String> ordered = new LinkedHashSet<>();
+        ordered.add(NONE);
+        for (String name : PREFERRED_ORDER) {
+            if (index.contains(name)) {
+                ordered.add(name);
+            } else {
+                Log.w(TAG, "Effect not bundled, skipping: " + name);
+            }
+        }
+        ordered.addAll(index);
+        return Collections.unmodifiableList(new ArrayList<>(ordered));
+    }
+
+    /**
+     * @return "none" followed by every effect that is actually bundled
+     */
+    List<String> getEffects() {
+        return effects;
+    }
+
+    boolean isAvailable(String name) {
+        return effects.contains(name);
+    }
+
+    /**
+     * Resolve the path DeepAR should load for an effect and record the start of the switch.
+     * Never blocks on I/O: an effect that is not warm yet is loaded from the assets directly.
+     *
+     * @return the path to load, or null to clear the effect slot
+     */
+    String beginSwitch(String name) {
+        synchronized (this) {
+            pendingEffect = name;
+            pendingSince = SystemClock.elapsedRealtime();
+        }
+        if (name == null || NONE.equals(name) || !isAvailable(name)) {
+            return null;
+        }
+        String path = warmEffects.get(cacheKey(name));
+        if (path == null) {
+            path = ASSET_URI_PREFIX + name;
+            preload(name);
+        }
+        preloadNeighbours(name);
+        return path;
+    }
+
+    /**
+     * Called from DeepAR's effectSwitched callback to close the latency measurement.
+     */
+    synchronized void onEffectSwitched() {
+        if (pendingEffect == null) {
+            return;
+        }
+        lastSwitchMs = SystemClock.elapsedRealtime() - pendingSince;
+        maxSwitchMs = Math.max(maxSwitchMs, lastSwitchMs);
+        totalSwitchMs += lastSwitchMs;
+        switchCount++;
+        Log.d(TAG, "Switched to " + pendingEffect + " in " + lastSwitchMs + " ms");
+        pendingEffect = null;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("switchCount", switchCount);
+        metrics.put("lastSwitchMs", lastSwitchMs);
+        metrics.put("maxSwitchMs", maxSwitchMs);
+        metrics.put("avgSwitchMs", switchCount == 0 ? 0 : totalSwitchMs / switchCount);
+        List<String> warm = new ArrayList<>();
+        for (String key : warmEffects.snapshot().keySet()) {
+            String name = key.endsWith(EXTRACTED_KEY_SUFFIX)
+                    ? key.substring(0, key.length() - EXTRACTED_KEY_SUFFIX.length())
+                    : key;
+            if (!warm.contains(name)) {
+                warm.add(name);
+            }
+        }
+        metrics.put("warmEffects", warm);
+        return metrics;
+    }
+
+    /**
+     * Warm the effects next to the given one in the list, which is how the UI usually cycles.
+     */
+    private void preloadNeighbours(String name) {
+        int index = effects.indexOf(name);
+        if (index < 0) {
+            return;
+        }
+        for (int offset : new int[] {1, -1}) {
+            int neighbour = (index + offset + effects.size()) % effects.size();
+            String neighbourName = effects.get(neighbour);
+            if (!NONE.equals(neighbourName)) {
+                preload(neighbourName);
+            }
+        }
+    }
+
+    void preload(String name) {
+        String key = cacheKey(name);
+        if (!isAvailable(name) || NONE.equals(name) || warmEffects.get(key) != null) {
+            return;
+        }
+        preloadExecutor.execute(() -> {
+            if (warmEffects.get(key) != null) {
+                return;
+            }
+            long start = SystemClock.elapsedRealtime();
+            String path = extractToCache ? extract(name) : warmAsset(name);
+            if (path != null) {
+                warmEffects.put(key, path);
+                Log.d(TAG, "Preloaded " + name + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+            }
+        });
+    }
+
+    private String extract(String name) {
+        File target = new File(cacheDir, name);
+        if (target.exists()) {
+            return target.getAbsolutePath();
+        }
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "Unable to create " + cacheDir);
+            return null;
+        }
+        File partial = new File(cacheDir, name + ".part");
+        try (InputStream in = assets.open(name); OutputStream out = new FileOutputStream(partial)) {
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to extract " + name, e);
+            return null;
+        }
+        if (!partial.renameTo(target)) {
+            Log.w(TAG, "Unable to move extracted effect into place: " + target);
+            return null;
+        }
+        return target.getAbsolutePath();
+    }
+
+    /**
+     * Read the asset once so its pages are likely still in the OS page cache when DeepAR opens
+     * it. This only saves the storage read; the bytes are not kept and DeepAR still decodes the
+     * effect when it is switched to.
+     */
+    private String warmAsset(String name) {
+        try (InputStream in = assets.open(name)) {
+            byte[] chunk = new byte[64 * 1024];
+            //noinspection StatementWithEmptyBody
+            while (in.read(chunk) != -1) {
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read " + name, e);
+            return null;
+        }
+        return ASSET_URI_PREFIX + name;
+    }
+}
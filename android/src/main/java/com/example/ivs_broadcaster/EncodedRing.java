@@ -0,0 +1,277 @@
+package com.example.ivs_broadcaster;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps the most recent encoded video samples in a fixed-size off-heap buffer.
+ *
+ * Sample bytes live in one direct {@link ByteBuffer} used as a byte ring, so a sample may wrap
+ * around its end; per-sample offsets, sizes, timestamps and key frame flags live in parallel
+ * arrays. Nothing is allocated per sample. The oldest samples are evicted when bytes or slots run
+ * out and whole groups of pictures are dropped once the rest still covers the window. The ring
+ * always starts at a key frame so any run of samples copied from its start decodes on its own.
+ * Every sample gets a sequence number, counting all samples ever added, so a reader can copy the
+ * ring out in bounded {@link Chunk}s and notice when the next sample it wants was evicted in the
+ * meantime. Not thread-safe: meant to be confined to the encoder thread, with
+ * {@link #copyTo(long, long, Chunk)} copying out what is needed to write a file elsewhere.
+ */
+final class EncodedRing {
+
+    /** A bounded, reusable copy of consecutive samples, oldest first. */
+    static final class Chunk {
+        final ByteBuffer data;
+        final int[] offsets;
+        final int[] sizes;
+        final long[] ptsUs;
+        final boolean[] keyFrames;
+        int count = 0;
+
+        Chunk(int capacityBytes, int maxSamples) {
+            this.data = ByteBuffer.allocateDirect(capacityBytes);
+            this.offsets = new int[maxSamples];
+            this.sizes = new int[maxSamples];
+            this.ptsUs = new long[maxSamples];
+            this.keyFrames = new boolean[maxSamples];
+        }
+
+        /**
+         * @return a read-only view of sample {@code index}'s bytes
+         */
+        ByteBuffer sample(int index) {
+            ByteBuffer view = data.asReadOnlyBuffer();
+            view.limit(offsets[index] + sizes[index]);
+            view.position(offsets[index]);
+            return view;
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int maxSamples;
+    private final long windowUs;
+
+    private final int[] offsets;
+    private final int[] sizes;
+    private final long[] ptsUs;
+    private final boolean[] keyFrames;
+
+    // slot of the oldest sample
+    private int head = 0;
+    private int count = 0;
+    private int writePosition = 0;
+    private int usedBytes = 0;
+
+    private long addedSamples = 0;
+    private long evictedSamples = 0;
+    private long rejectedSamples = 0;
+    private int largestSample = 0;
+
+    EncodedRing(int capacityBytes, int maxSamples, long windowUs) {
+        this.capacity = capacityBytes;
+        this.maxSamples = maxSamples;
+        this.windowUs = windowUs;
+        this.data = ByteBuffer.allocateDirect(capacityBytes);
+        this.offsets = new int[maxSamples];
+        this.sizes = new int[maxSamples];
+        this.ptsUs = new long[maxSamples];
+        this.keyFrames = new boolean[maxSamples];
+    }
+
+    /**
+     * Append the remaining bytes of {@code sample}, leaving its position untouched.
+     *
+     * @return false if the sample was dropped: larger than the whole ring, or not a key frame
+     * while the ring is waiting for one
+     */
+    boolean add(ByteBuffer sample, long sampleTimeUs, boolean keyFrame) {
+        int size = sample.remaining();
+        if (size > capacity || (count == 0 && !keyFrame)) {
+            rejectedSamples++;
+            return false;
+        }
+        while (count > 0 && (count == maxSamples || capacity - usedBytes < size)) {
+            evictOldest();
+        }
+        dropLeadingDeltaFrames();
+        if (count == 0 && !keyFrame) {
+            // its key frame was evicted to make room
+            rejectedSamples++;
+            return false;
+        }
+
+        int slot = (head + count) % maxSamples;
+        offsets[slot] = writePosition;
+        sizes[slot] = size;
+        ptsUs[slot] = sampleTimeUs;
+        keyFrames[slot] = keyFrame;
+        copyIn(sample, writePosition);
+        writePosition = (writePosition + size) % capacity;
+        usedBytes += size;
+        count++;
+        addedSamples++;
+        largestSample = Math.max(largestSample, size);
+
+        trimToWindow();
+        return true;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int getUsedBytes() {
+        return usedBytes;
+    }
+
+    long getDurationUs() {
+        return count == 0 ? 0 : ptsUs[slot(count - 1)] - ptsUs[head];
+    }
+
+    long getAddedCount() {
+        return addedSamples;
+    }
+
+    long getEvictedCount() {
+        return evictedSamples;
+    }
+
+    long getRejectedCount() {
+        return rejectedSamples;
+    }
+
+    /**
+     * @return sequence number of the oldest sample in the ring
+     */
+    long getFirstSequence() {
+        return addedSamples - count;
+    }
+
+    /**
+     * @return sequence number the next added sample will get
+     */
+    long getEndSequence() {
+        return addedSamples;
+    }
+
+    /**
+     * @return size of the largest sample added so far, the least a {@link Chunk} must hold
+     */
+    int getLargestSampleBytes() {
+        return largestSample;
+    }
+
+    void clear() {
+        head = 0;
+        count = 0;
+        writePosition = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * Replace the contents of {@code chunk} with the samples from sequence {@code fromSequence}
+     * on, as many as fit, stopping before {@code endSequence}.
+     *
+     * @return how many samples were copied, or -1 if the sample at {@code fromSequence} was
+     * already evicted
+     */
+    int copyTo(long fromSequence, long endSequence, Chunk chunk) {
+        if (fromSequence < getFirstSequence()) {
+            return -1;
+        }
+        ByteBuffer target = chunk.data;
+        target.clear();
+        chunk.count = 0;
+        int first = (int) (fromSequence - getFirstSequence());
+        int last = (int) Math.min(count, endSequence - getFirstSequence());
+        for (int i = first; i < last && chunk.count < chunk.sizes.length; i++) {
+            int slot = slot(i);
+            if (sizes[slot] > target.remaining()) {
+                if (chunk.count == 0) {
+                    throw new IllegalArgumentException("Chunk cannot hold a " + sizes[slot] + " byte sample");
+                }
+                break;
+            }
+            chunk.offsets[chunk.count] = target.position();
+            chunk.sizes[chunk.count] = sizes[slot];
+            chunk.ptsUs[chunk.count] = ptsUs[slot];
+            chunk.keyFrames[chunk.count] = keyFrames[slot];
+            copyOut(offsets[slot], sizes[slot], target);
+            chunk.count++;
+        }
+        target.clear();
+        return chunk.count;
+    }
+
+    private int slot(int index) {
+        return (head + index) % maxSamples;
+    }
+
+    private void evictOldest() {
+        usedBytes -= sizes[head];
+        head = (head + 1) % maxSamples;
+        count--;
+        evictedSamples++;
+        if (count == 0) {
+            writePosition = 0;
+            head = 0;
+        }
+    }
+
+    // delta frames without their key frame cannot be decoded
+    private void dropLeadingDeltaFrames() {
+        while (count > 0 && !keyFrames[head]) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * Drop the oldest group of pictures while the next one still starts a full window before the
+     * newest sample.
+     */
+    private void trimToWindow() {
+        long newest = ptsUs[slot(count - 1)];
+        while (true) {
+            int nextKey = -1;
+            for (int i = 1; i < count; i++) {
+                if (keyFrames[slot(i)]) {
+                    nextKey = i;
+                    break;
+                }
+            }
+            if (nextKey < 0 || newest - ptsUs[slot(nextKey)] < windowUs) {
+                return;
+            }
+            for (int i = 0; i < nextKey; i++) {
+                evictOldest();
+            }
+        }
+    }
+
+    private void copyIn(ByteBuffer sample, int position) {
+        ByteBuffer source = sample.duplicate();
+        int firstPart = Math.min(source.remaining(), capacity - position);
+        ByteBuffer target = data.duplicate();
+        target.position(position);
+        int limit = source.limit();
+        source.limit(source.position() + firstPart);
+        target.put(source);
+        source.limit(limit);
+        if (source.hasRemaining()) {
+            target.position(0);
+            target.put(source);
+        }
+    }
+
+    private void copyOut(int offset, int size, ByteBuffer target) {
+        ByteBuffer source = data.duplicate();
+        int firstPart = Math.min(size, capacity - offset);
+        source.limit(offset + firstPart);
+        source.position(offset);
+        target.put(source);
+        if (firstPart < size) {
+            source.limit(size - firstPart);
+            source.position(0);
+            target.put(source);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.ivs_broadcaster;
+
+import android.view.Choreographer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.StandardMethodCodec;
+
+/**
+ * Batches events for an EventChannel and writes them straight to the messenger in the channel's
+ * binary codec.
+ *
+ * Discrete events (state changes, errors) are delivered in the order they were posted. Periodic
+ * values are posted per key and only the latest value of each key survives until the next flush.
+ * Everything pending is flushed at most once per vsync, with a single frame callback outstanding
+ * at a time. The EventChannels' stream handlers still own listen/cancel and toggle
+ * {@link #setListening(String, boolean)}; every channel Flutter listens on receives each event.
+ * Events can be posted from any thread; the flush runs on the thread that created the
+ * dispatcher, which must be the main thread.
+ */
+final class EventDispatcher implements Choreographer.FrameCallback {
+    private final BinaryMessenger messenger;
+    private final Choreographer choreographer;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object lock = new Object();
+    // channels Flutter currently listens on
+    private final CopyOnWriteArrayList<String> channels = new CopyOnWriteArrayList<>();
+    private volatile boolean listening = false;
+
+    // pending and in-flight buffers are swapped on flush so both are reused
+    private List<Map<Object, Object>> pendingDiscrete = new ArrayList<>();
+    private List<Map<Object, Object>> flushingDiscrete = new ArrayList<>();
+    private Map<Object, Object> pendingLatest = new HashMap<>();
+    private Map<Object, Object> flushingLatest = new HashMap<>();
+
+    private long sentMessages = 0;
+    private long coalescedValues = 0;
+
+    EventDispatcher(BinaryMessenger messenger) {
+        this.messenger = messenger;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Start or stop delivery on {@code channel}. Anything still pending is dropped when Flutter
+     * no longer listens on any channel.
+     */
+    void setListening(String channel, boolean listening) {
+        if (listening) {
+            channels.addIfAbsent(channel);
+        } else {
+            channels.remove(channel);
+        }
+        this.listening = !channels.isEmpty();
+        if (!this.listening) {
+            synchronized (lock) {
+                pendingDiscrete.clear();
+                pendingLatest.clear();
+            }
+        }
+    }
+
+    boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * Stop delivery on every channel.
+     */
+    void close() {
+        channels.clear();
+        listening = false;
+        synchronized (lock) {
+            pendingDiscrete.clear();
+            pendingLatest.clear();
+        }
+    }
+
+    /**
+     * Queue an event that must not be merged with others, such as a state change.
+     */
+    void post(Map<Object, Object> event) {
+        if (!listening) {
+            return;
+        }
+        synchronized (lock) {
+            pendingDiscrete.add(event);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Set the value sent under {@code key} on the next flush, replacing any value not yet sent.
+     */
+    void postLatest(Object key, Object value) {
+        if (!listening) {
+            return;
+        }
+        synchronized (lock) {
+            if (pendingLatest.put(key, value) != null) {
+                coalescedValues++;
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * {@link #postLatest(Object, Object)} for every entry of {@code values}.
+     */
+    void postLatest(Map<?, ?> values) {
+        if (!listening) {
+            return;
+        }
+        synchronized (lock) {
+            for (Map.Entry<?, ?> entry : values.entrySet()) {
+                if (pendingLatest.put(entry.getKey(), entry.getValue()) != null) {
+                    coalescedValues++;
+                }
+            }
+        }
+        scheduleFlush();
+    }
+
+    long getSentCount() {
+        synchronized (lock) {
+            return sentMessages;
+        }
+    }
+
+    long getCoalescedCount() {
+        synchronized (lock) {
+            return coalescedValues;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        flushScheduled.set(false);
+        synchronized (lock) {
+            List<Map<Object, Object>> discrete = pendingDiscrete;
+            pendingDiscrete = flushingDiscrete;
+            flushingDiscrete = discrete;
+            Map<Object, Object> latest = pendingLatest;
+            pendingLatest = flushingLatest;
+            flushingLatest = latest;
+        }
+        if (listening) {
+            for (int i = 0; i < flushingDiscrete.size(); i++) {
+                send(flushingDiscrete.get(i));
+            }
+            if (!flushingLatest.isEmpty()) {
+                send(flushingLatest);
+            }
+        }
+        flushingDiscrete.clear();
+        flushingLatest.clear();
+    }
+
+    private void send(Map<Object, Object> event) {
+        for (String channel : channels) {
+            // the codec copies the map into the buffer, so the map can be cleared right after
+            ByteBuffer message = StandardMethodCodec.INSTANCE.encodeSuccessEnvelope(event);
+            messenger.send(channel, message);
+            synchronized (lock) {
+                sentMessages++;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.ivs_broadcaster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-depth pool of direct buffers used to hand camera frames to DeepAR.
+ *
+ * Every {@link Frame} is reference counted: {@link #acquire(int)} hands out a frame holding one
+ * reference and the frame only becomes available again once every holder has called
+ * {@link Frame#release()}. When all frames are still referenced the caller gets {@code null} and
+ * the frame is counted as dropped instead of overwriting a buffer DeepAR may still be reading.
+ */
+final class FramePool {
+    // held outside the queue at the same time: DeepAR's in-flight frame, the frame being
+    // submitted to replace it and the frame the analyzer is filling
+    static final int FRAMES_OUTSIDE_QUEUE = 3;
+
+    private final Frame[] frames;
+    private final AtomicLong acquiredFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong compactedFrames = new AtomicLong();
+
+    /**
+     * @return the depth at which a full drop-oldest queue of {@code queueCapacity} frames still
+     * leaves a free frame for the newest camera image
+     */
+    static int depthForQueue(int queueCapacity) {
+        return queueCapacity + FRAMES_OUTSIDE_QUEUE;
+    }
+
+    FramePool(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1: " + depth);
+        }
+        frames = new Frame[depth];
+        for (int i = 0; i < depth; i++) {
+            frames[i] = new Frame(this);
+        }
+    }
+
+    /**
+     * Acquire a free frame able to hold {@code size} bytes. Buffers are only reallocated when
+     * they are too small, so a pool reused at the same resolution never touches off-heap memory.
+     *
+     * @param size number of bytes the frame must hold
+     * @return the frame with a single reference, or {@code null} if every frame is in use
+     */
+    Frame acquire(int size) {
+        for (Frame frame : frames) {
+            if (frame.refCount.compareAndSet(0, 1)) {
+                frame.prepare(size);
+                acquiredFrames.incrementAndGet();
+                return frame;
+            }
+        }
+        droppedFrames.incrementAndGet();
+        return null;
+    }
+
+    int getDepth() {
+        return frames.length;
+    }
+
+    /**
+     * @return number of frames that are not referenced by anyone
+     */
+    int getFreeCount() {
+        int free = 0;
+        for (Frame frame : frames) {
+            if (frame.refCount.get() == 0) {
+                free++;
+            }
+        }
+        return free;
+    }
+
+    long getAcquiredCount() {
+        return acquiredFrames.get();
+    }
+
+    /**
+     * @return number of frames dropped because no buffer was free
+     */
+    long getDroppedCount() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * @return number of frames whose row padding had to be stripped while copying
+     */
+    long getCompactedCount() {
+        return compactedFrames.get();
+    }
+
+    static final class Frame {
+        private final FramePool pool;
+        private final AtomicInteger refCount = new AtomicInteger();
+        private ByteBuffer buffer;
+
+        // description of the copied image, filled in by the producer
+        IngestMode ingestMode = IngestMode.RGBA;
+        int width;
+        int height;
+        int pixelStride;
+        int rotationDegrees;
+        long timestampNanos;
+        // which camera binding produced the frame, see CapturePipeline#analyzerFor(int)
+        int bindGeneration;
+        // System.nanoTime() of the sensor capture (0 if unknown), analyzer entry and copy end
+        long captureNanos;
+        long analyzedNanos;
+        long copiedNanos;
+
+        private Frame(FramePool pool) {
+            this.pool = pool;
+        }
+
+        private void prepare(int size) {
+            if (buffer == null || buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size);
+                buffer.order(ByteOrder.nativeOrder());
+            }
+            buffer.clear();
+            buffer.limit(size);
+        }
+
+        /**
+         * @return the frame's buffer, positioned at zero and limited to the acquired size
+         */
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * Copy {@code height} rows of {@code rowBytes} bytes from {@code src} into this frame.
+         * When the source rows are tightly packed the whole plane is copied in one bulk put,
+         * otherwise each row is copied on its own and the trailing padding is skipped.
+         *
+         * @param src       source plane, read from its start regardless of its position
+         * @param rowStride distance in bytes between the start of two source rows
+         * @param rowBytes  number of meaningful bytes per row
+         * @param height    number of rows
+         */
+        void copyFrom(ByteBuffer src, int rowStride, int rowBytes, int height) {
+            int srcLimit = src.limit();
+            buffer.clear();
+            if (rowStride == rowBytes) {
+                src.position(0);
+                src.limit(Math.min(srcLimit, rowBytes * height));
+                buffer.put(src);
+            } else {
+                for (int row = 0; row < height; row++) {
+                    int start = row * rowStride;
+                    // the last row of a padded plane is usually not padded
+                    src.limit(Math.min(srcLimit, start + rowBytes));
+                    src.position(start);
+                    buffer.put(src);
+                }
+                pool.compactedFrames.incrementAndGet();
+            }
+            src.limit(srcLimit);
+            buffer.flip();
+        }
+
+        /**
+         * Add a reference, e.g. before handing the frame to another stage.
+         */
+        void retain() {
+            if (refCount.getAndIncrement() <= 0) {
+                refCount.decrementAndGet();
+                throw new IllegalStateException("Frame retained after it was released");
+            }
+        }
+
+        /**
+         * Drop a reference. The frame returns to the pool when the last reference is dropped.
+         */
+        void release() {
+            if (refCount.decrementAndGet() < 0) {
+                refCount.incrementAndGet();
+                throw new IllegalStateException("Frame released more often than acquired");
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.ivs_broadcaster;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded hand-off queue between the capture thread and the DeepAR submission thread.
+ *
+ * The producer never blocks: when the queue is full the oldest pending item is evicted and
+ * passed to the {@link DropListener}, so the consumer always works on the freshest frames.
+ */
+final class FrameQueue<T> {
+
+    interface DropListener<T> {
+        void onDropped(T item);
+    }
+
+    private final int capacity;
+    private final ArrayDeque<T> items;
+    private final DropListener<T> dropListener;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long droppedCount = 0;
+    private boolean closed = false;
+
+    FrameQueue(int capacity, DropListener<T> dropListener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.items = new ArrayDeque<>(capacity);
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * Queue an item, evicting the oldest one if the queue is full.
+     *
+     * @return false if the queue has been closed, in which case the item is dropped as well
+     */
+    boolean offer(T item) {
+        T evicted = null;
+        boolean accepted;
+        lock.lock();
+        try {
+            if (closed) {
+                evicted = item;
+                accepted = false;
+            } else {
+                if (items.size() == capacity) {
+                    evicted = items.pollFirst();
+                }
+                items.addLast(item);
+                notEmpty.signal();
+                accepted = true;
+            }
+            if (evicted != null) {
+                droppedCount++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (evicted != null && dropListener != null) {
+            dropListener.onDropped(evicted);
+        }
+        return accepted;
+    }
+
+    /**
+     * Wait for the next item.
+     *
+     * @return the oldest queued item, or null if the timeout elapsed or the queue was closed
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (items.isEmpty()) {
+                if (closed || nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return items.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the queue and hand every pending item to the {@link DropListener}.
+     */
+    void close() {
+        ArrayDeque<T> pending;
+        lock.lock();
+        try {
+            closed = true;
+            pending = new ArrayDeque<>(items);
+            items.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (dropListener != null) {
+            for (T item : pending) {
+                dropListener.onDropped(item);
+            }
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return items.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of items evicted because the queue was full or closed
+     */
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
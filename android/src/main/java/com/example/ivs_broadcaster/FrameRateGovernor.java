@@ -0,0 +1,130 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Paces frame submission into DeepAR.
+ *
+ * The governor admits frames at the lowest of the requested rate (the encoder's target fps unless
+ * Flutter overrides it), the cap the bitrate controller sets for the network and the rate DeepAR
+ * can actually sustain, estimated from a moving average of its per-frame processing time. It is
+ * consulted before a frame is copied so surplus frames are shed while they are still cheap to drop.
+ * DeepAR takes frames asynchronously, so the processing time comes from the {@link RenderTracker}
+ * as the time from submission until the frame is rendered. Renders can only be observed while
+ * DeepAR draws through the {@link SurfaceFanout}; otherwise only the requested and network rates
+ * apply. Thread-safe.
+ */
+final class FrameRateGovernor {
+    static final int MIN_FPS = 10;
+    static final int DEFAULT_FPS = 30;
+    // keep DeepAR below full load so bursts don't queue up
+    private static final double HEADROOM = 0.85;
+    // admit frames arriving up to this fraction of an interval early to absorb camera jitter
+    private static final double JITTER_TOLERANCE = 0.2;
+    private static final double SMOOTHING = 0.1;
+
+    private int encoderFps = DEFAULT_FPS;
+    private int requestedFps = 0;
+    private int networkFps = 0;
+    private int effectiveFps = DEFAULT_FPS;
+    private double averageProcessingNanos = 0;
+    private long lastAcceptedNanos = Long.MIN_VALUE;
+    private long acceptedCount = 0;
+    private long shedCount = 0;
+
+    /**
+     * Set the encoder's target frame rate; used whenever Flutter has not requested a rate.
+     */
+    synchronized void setEncoderFps(int fps) {
+        encoderFps = Math.max(MIN_FPS, fps);
+        updateEffectiveFps();
+    }
+
+    /**
+     * Request a target rate from Flutter. Zero or less returns control to the encoder rate.
+     */
+    synchronized void setTargetFps(int fps) {
+        requestedFps = fps <= 0 ? 0 : Math.max(MIN_FPS, fps);
+        updateEffectiveFps();
+    }
+
+    /**
+     * Cap the rate for the network's sake, below whatever was requested. Zero or less removes the
+     * cap.
+     */
+    synchronized void setNetworkFps(int fps) {
+        networkFps = fps <= 0 ? 0 : Math.max(MIN_FPS, fps);
+        updateEffectiveFps();
+    }
+
+    /**
+     * @return the rate Flutter asked for, or the encoder rate when nothing was requested
+     */
+    synchronized int getTargetFps() {
+        return requestedFps > 0 ? requestedFps : encoderFps;
+    }
+
+    /**
+     * @return the rate frames are actually admitted at after accounting for DeepAR's load
+     */
+    synchronized int getEffectiveFps() {
+        return effectiveFps;
+    }
+
+    synchronized double getAverageProcessingMs() {
+        return averageProcessingNanos / 1e6;
+    }
+
+    synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    synchronized long getShedCount() {
+        return shedCount;
+    }
+
+    /**
+     * Decide whether a frame arriving at {@code nowNanos} should enter the pipeline.
+     */
+    synchronized boolean shouldAccept(long nowNanos) {
+        long interval = 1_000_000_000L / effectiveFps;
+        long minimumGap = (long) (interval * (1 - JITTER_TOLERANCE));
+        if (lastAcceptedNanos != Long.MIN_VALUE && nowNanos - lastAcceptedNanos < minimumGap) {
+            shedCount++;
+            return false;
+        }
+        lastAcceptedNanos = nowNanos;
+        acceptedCount++;
+        return true;
+    }
+
+    /**
+     * Report how long DeepAR took to process one frame, from submission until it was rendered.
+     */
+    synchronized void onProcessed(long processingNanos) {
+        if (averageProcessingNanos == 0) {
+            averageProcessingNanos = processingNanos;
+        } else {
+            averageProcessingNanos += SMOOTHING * (processingNanos - averageProcessingNanos);
+        }
+        updateEffectiveFps();
+    }
+
+    /**
+     * Forget the processing time estimate, e.g. when renders can no longer be observed.
+     */
+    synchronized void clearProcessing() {
+        averageProcessingNanos = 0;
+        updateEffectiveFps();
+    }
+
+    private void updateEffectiveFps() {
+        int target = getTargetFps();
+        if (networkFps > 0) {
+            target = Math.min(target, networkFps);
+        }
+        if (averageProcessingNanos > 0) {
+            int sustainable = (int) (1e9 / averageProcessingNanos * HEADROOM);
+            target = Math.min(target, Math.max(MIN_FPS, sustainable));
+        }
+        effectiveFps = target;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.ivs_broadcaster;
+
+import java.util.Locale;
+
+/**
+ * A {@link BitrateController} that only moves after a condition has held for a while and moves
+ * up far more reluctantly than down, so a flaky cellular link settles on one setting instead of
+ * oscillating between frozen and blurry.
+ *
+ * The SDK's recommended bitrate is smoothed; when it stays well below the ceiling for
+ * {@link #DOWN_HOLD_MS} (or the round trip time stays high) the ceiling drops to just under it,
+ * and only after it has stayed well above the ceiling for {@link #UP_HOLD_MS}, and not within
+ * {@link #UP_COOLDOWN_MS} of a drop, does the ceiling climb one step. The frame rate follows the
+ * ceiling down a fixed ladder whenever the bits per pixel would get too thin, and only climbs back
+ * with a margin, trading smoothness for sharper frames. The initial bitrate comes from the
+ * profile, or from what the network sustained in recent sessions when known.
+ */
+final class HysteresisBitrateController implements BitrateController {
+    static final long DOWN_HOLD_MS = 2_000;
+    static final long UP_HOLD_MS = 10_000;
+    static final long UP_COOLDOWN_MS = 20_000;
+    // the ceiling drops when the recommendation stays below this share of it
+    static final double DOWN_RATIO = 0.8;
+    // and rises when the recommendation stays above this share of it
+    static final double UP_RATIO = 1.2;
+    static final double HIGH_RTT_MS = 1_000;
+    static final double MIN_BITS_PER_PIXEL = 0.04;
+    static final double FPS_UP_MARGIN = 1.3;
+    private static final int[] FPS_LADDER = {30, 24, 20, 15};
+    private static final double SMOOTHING = 0.3;
+    private static final double DOWN_HEADROOM = 0.9;
+    private static final double UP_STEP = 1.25;
+    // start a little below what past sessions sustained
+    private static final double HISTORY_MARGIN = 0.8;
+    private static final int MIN_SAMPLES_FOR_HISTORY = 10;
+
+    private final int minBitrate;
+    private final int maxBitrate;
+    private final int maxFps;
+    private final long pixelsPerFrame;
+    private final int initialBitrate;
+
+    private volatile Decision current;
+    private double smoothedRecommended = 0;
+    private double smoothedMeasured = 0;
+    private long samples = 0;
+    private long congestedSinceMs = -1;
+    private long headroomSinceMs = -1;
+    private long lastDownMs = Long.MIN_VALUE / 2;
+    private long decisionCount = 0;
+
+    /**
+     * @param historyBitrate what the network sustained recently, 0 if unknown
+     */
+    HysteresisBitrateController(QualityProfile profile, long historyBitrate) {
+        this.minBitrate = profile.getMinBitrate();
+        this.maxBitrate = profile.getMaxBitrate();
+        this.maxFps = profile.getTargetFps();
+        this.pixelsPerFrame = (long) profile.getVideoWidth() * profile.getVideoHeight();
+        String source;
+        if (historyBitrate > 0) {
+            initialBitrate = clamp((long) (historyBitrate * HISTORY_MARGIN));
+            source = "history " + historyBitrate;
+        } else {
+            initialBitrate = profile.getInitialBitrate();
+            source = "profile " + profile.getName();
+        }
+        current = new Decision(initialBitrate, fpsFor(initialBitrate, maxFps), "initial from " + source);
+    }
+
+    @Override
+    public int getInitialBitrate() {
+        return initialBitrate;
+    }
+
+    @Override
+    public Decision getCurrent() {
+        return current;
+    }
+
+    long getDecisionCount() {
+        return decisionCount;
+    }
+
+    @Override
+    public long getSustainedBitrate() {
+        return samples < MIN_SAMPLES_FOR_HISTORY ? 0 : (long) smoothedMeasured;
+    }
+
+    @Override
+    public Decision onTransmissionStats(long nowMs, double measuredBitrate, double recommendedBitrate, double rttMs) {
+        if (recommendedBitrate <= 0) {
+            return null;
+        }
+        if (samples == 0) {
+            smoothedRecommended = recommendedBitrate;
+            smoothedMeasured = measuredBitrate;
+        } else {
+            smoothedRecommended += SMOOTHING * (recommendedBitrate - smoothedRecommended);
+            smoothedMeasured += SMOOTHING * (measuredBitrate - smoothedMeasured);
+        }
+        samples++;
+
+        int ceiling = current.bitrateCeiling;
+        boolean highRtt = rttMs > HIGH_RTT_MS;
+        boolean congested = (smoothedRecommended < ceiling * DOWN_RATIO || highRtt) && ceiling > minBitrate;
+        boolean headroom = !highRtt && smoothedRecommended > ceiling * UP_RATIO && ceiling < maxBitrate;
+        congestedSinceMs = congested ? (congestedSinceMs < 0 ? nowMs : congestedSinceMs) : -1;
+        headroomSinceMs = headroom ? (headroomSinceMs < 0 ? nowMs : headroomSinceMs) : -1;
+
+        if (congested && nowMs - congestedSinceMs >= DOWN_HOLD_MS) {
+            double target = Math.min(smoothedRecommended, ceiling) * DOWN_HEADROOM;
+            String reason = String.format(Locale.US, "down: recommended %.0f%s",
+                    smoothedRecommended, highRtt ? ", rtt " + Math.round(rttMs) + " ms" : "");
+            lastDownMs = nowMs;
+            return decide(clamp((long) target), reason);
+        }
+        if (headroom && nowMs - headroomSinceMs >= UP_HOLD_MS && nowMs - lastDownMs >= UP_COOLDOWN_MS) {
+            long target = Math.min((long) (ceiling * UP_STEP), (long) smoothedRecommended);
+            String reason = String.format(Locale.US, "up: recommended %.0f", smoothedRecommended);
+            return decide(clamp(target), reason);
+        }
+        return null;
+    }
+
+    private Decision decide(int ceiling, String reason) {
+        congestedSinceMs = -1;
+        headroomSinceMs = -1;
+        Decision previous = current;
+        int fps = fpsFor(ceiling, previous.fps);
+        if (ceiling == previous.bitrateCeiling && fps == previous.fps) {
+            return null;
+        }
+        current = new Decision(ceiling, fps, reason);
+        decisionCount++;
+        return current;
+    }
+
+    /**
+     * Step down the ladder while frames would get too few bits, and back up only while the next
+     * rate keeps a margin above that.
+     */
+    private int fpsFor(int bitrate, int fromFps) {
+        int index = ladderIndex(fromFps);
+        while (index < FPS_LADDER.length - 1 && bitsPerPixel(bitrate, FPS_LADDER[index]) < MIN_BITS_PER_PIXEL) {
+            index++;
+        }
+        while (index > 0 && FPS_LADDER[index - 1] <= maxFps
+                && bitsPerPixel(bitrate, FPS_LADDER[index - 1]) >= MIN_BITS_PER_PIXEL * FPS_UP_MARGIN) {
+            index--;
+        }
+        return Math.min(FPS_LADDER[index], maxFps);
+    }
+
+    private int ladderIndex(int fps) {
+        for (int i = 0; i < FPS_LADDER.length; i++) {
+            if (FPS_LADDER[i] <= fps) {
+                return i;
+            }
+        }
+        return FPS_LADDER.length - 1;
+    }
+
+    private double bitsPerPixel(int bitrate, int fps) {
+        return (double) bitrate / (pixelsPerFrame * fps);
+    }
+
+    private int clamp(long bitrate) {
+        return (int) Math.max(minBitrate, Math.min(maxBitrate, bitrate));
+    }
+}
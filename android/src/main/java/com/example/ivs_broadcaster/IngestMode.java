@@ -0,0 +1,30 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Pixel format the CPU camera path asks CameraX for and hands to DeepAR.
+ */
+enum IngestMode {
+    /** CameraX converts every frame to RGBA before it reaches the analyzer. */
+    RGBA("rgba"),
+    /** YUV_420_888 planes are packed into a single NV21 buffer, 12 bits per pixel. */
+    YUV("yuv");
+
+    private final String value;
+
+    IngestMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static IngestMode fromValue(Object value) {
+        for (IngestMode mode : values()) {
+            if (mode.value.equals(value)) {
+                return mode;
+            }
+        }
+        return RGBA;
+    }
+}
@@ -1,24 +1,81 @@
 package com.example.ivs_broadcaster;
 
+import android.content.Context;
+import android.net.Uri;
+
 import androidx.annotation.NonNull;
 
+import com.amazonaws.ivs.player.Player;
+
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.plugin.common.PluginRegistry;
 
 public class IvsBroadcasterPlugin  implements FlutterPlugin {
-
+  private DeepAREngine deepAREngine;
+  private PlayerPool<Player> playerPool;
+  private PlayerTextureManager playerTextures;
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
+    deepAREngine = new DeepAREngine(binding.getApplicationContext());
+    playerPool = new PlayerPool<>(new PooledPlayerLoader(binding.getApplicationContext()));
     binding
         .getPlatformViewRegistry()
         .registerViewFactory(
-            "ivs_broadcaster", new StreamFactory(binding.getBinaryMessenger()));
-    binding.getPlatformViewRegistry().registerViewFactory("ivs_player", new PlayerViewFactory(binding.getBinaryMessenger()));
+            "ivs_broadcaster",
+            new StreamFactory(
+                binding.getBinaryMessenger(), binding.getTextureRegistry(), deepAREngine));
+    binding.getPlatformViewRegistry().registerViewFactory("ivs_player", new PlayerViewFactory(binding.getBinaryMessenger(), playerPool));
+    playerTextures =
+        new PlayerTextureManager(
+            binding.getApplicationContext(),
+            binding.getBinaryMessenger(),
+            binding.getTextureRegistry(),
+            playerPool);
   }
 
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
+    if (deepAREngine != null) {
+      deepAREngine.shutdown();
+      deepAREngine = null;
+    }
+    if (playerTextures != null) {
+      playerTextures.close();
+      playerTextures = null;
+    }
+    if (playerPool != null) {
+      playerPool.clear();
+      playerPool = null;
+    }
+  }
+
+  /** Creates players that start loading immediately, so pooled streams are ready when shown. */
+  private static final class PooledPlayerLoader implements PlayerPool.Loader<Player> {
+    private final Context context;
+
+    PooledPlayerLoader(Context context) {
+      this.context = context;
+    }
+
+    @Override
+    public Player load(String url, PlaybackMode mode) {
+      Player player = Player.Factory.create(context);
+      // buffering settings only apply to streams loaded after them
+      IvsPlayerView.configure(player, mode);
+      player.load(Uri.parse(url));
+      return player;
+    }
+
+    @Override
+    public void park(Player player) {
+      player.pause();
+      player.setSurface(null);
+    }
 
+    @Override
+    public void destroy(Player player) {
+      player.release();
+    }
   }
 }
@@ -3,6 +3,9 @@ package com.example.ivs_broadcaster;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 import android.view.SurfaceHolder;
@@ -15,38 +18,98 @@ import androidx.annotation.Nullable;
 import com.amazonaws.ivs.player.Cue;
 import com.amazonaws.ivs.player.Player;
 import com.amazonaws.ivs.player.PlayerException;
-import com.amazonaws.ivs.player.PlayerView;
 import com.amazonaws.ivs.player.Quality;
+import com.amazonaws.ivs.player.Statistics;
 import com.amazonaws.ivs.player.TextMetadataCue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.platform.PlatformView;
-
-public class IvsPlayerView extends Player.Listener implements PlatformView, SurfaceHolder.Callback, MethodChannel.MethodCallHandler, EventChannel.StreamHandler {
-    private final Player player;
+import io.flutter.view.TextureRegistry;
+
+public class IvsPlayerView extends Player.Listener implements PlatformView, SurfaceHolder.Callback, MethodChannel.MethodCallHandler, ViewChannelRegistry.EventSinkListener {
+    private static final long DEFAULT_PROGRESS_INTERVAL_MS = 250;
+    private static final long MIN_PROGRESS_INTERVAL_MS = 16;
+    private static final long QOE_SAMPLE_INTERVAL_MS = 1000;
+    private static final String TAG = "IvsPlayerView";
+
+    private final PlayerPool<Player> playerPool;
+    // borrowed from the pool between startPlayer and stopPlayer/dispose, null otherwise
+    private Player player;
+    private String playerUrl;
+    // exactly one of the two is set: the platform view's SurfaceView or the Flutter texture
+    @Nullable
     private final SurfaceView surfaceView;
+    @Nullable
+    private final TextureRegistry.SurfaceTextureEntry textureEntry;
     private Surface surface;
-    private EventChannel.EventSink eventSink;
+    // the view's own event channel and, while this is the newest view, the legacy one
+    private final HashMap<String, EventChannel.EventSink> eventSinks = new HashMap<>();
+    private final ViewChannelRegistry channels;
+    private final int viewId;
     private Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private long progressIntervalMs = DEFAULT_PROGRESS_INTERVAL_MS;
+    private boolean progressTicking = false;
+    // no progress is sent while Flutter has detached the view
+    private boolean viewDetached = false;
+    private boolean released = false;
+    // events are encoded as soon as they are sent, so one message and one progress map are reused
+    private final HashMap<String, Object> message = new HashMap<>();
+    private final HashMap<String, Object> progress = new HashMap<>();
+    private final PlaybackQoeRecorder qoeRecorder = new PlaybackQoeRecorder();
+    // timed metadata is decoded on a worker and reaches Flutter in rate limited batches
+    private final CuePipeline cuePipeline = new CuePipeline(new CuePipeline.Listener() {
+        @Override
+        public void onCues(List<Map<String, Object>> cues) {
+            HashMap<String, Object> data = obtainMessage();
+            data.put("cues", cues);
+            sendEvent(data);
+        }
+    });
+    private PlaybackMode playbackMode = PlaybackMode.BALANCED;
+    private LatencyCatchUp latencyCatchUp = new LatencyCatchUp(playbackMode);
+    private float playbackRate = LatencyCatchUp.NORMAL_RATE;
 
-    public IvsPlayerView(Context context, BinaryMessenger messenger, int viewId, Object args) {
-        this.player = new PlayerView(context).getPlayer();
+    public IvsPlayerView(Context context, ViewChannelRegistry channels, PlayerPool<Player> playerPool, int viewId, Object args) {
+        this.playerPool = playerPool;
         this.context = context;
-        this.player.addListener(this);
+        this.channels = channels;
+        this.viewId = viewId;
         this.surfaceView = new SurfaceView(context);
-        MethodChannel methodChannel = new MethodChannel(messenger, "ivs_player");
-        methodChannel.setMethodCallHandler(this);
         this.surfaceView.getHolder().addCallback(this);
-        EventChannel eventChannel = new EventChannel(messenger, "ivs_player_event");
-        eventChannel.setStreamHandler(this);
+        this.textureEntry = null;
+        channels.register(this, viewId, this, this);
+        playerPool.addView();
+    }
+
+    /**
+     * Texture mode: the player renders into {@code textureEntry}, which Flutter draws with a
+     * {@code Texture} widget, so no platform view has to be composited. The channels are keyed by
+     * the texture id and {@link #getView()} returns null.
+     */
+    IvsPlayerView(Context context, ViewChannelRegistry channels, PlayerPool<Player> playerPool,
+                  TextureRegistry.SurfaceTextureEntry textureEntry) {
+        this.playerPool = playerPool;
+        this.context = context;
+        this.channels = channels;
+        this.viewId = (int) textureEntry.id();
+        this.surfaceView = null;
+        this.textureEntry = textureEntry;
+        this.surface = new Surface(textureEntry.surfaceTexture());
+        channels.register(this, viewId, this, this);
+        playerPool.addView();
+    }
+
+    long getTextureId() {
+        return textureEntry != null ? textureEntry.id() : -1;
     }
 
     @Nullable
@@ -56,26 +119,152 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
     }
 
     private void sendEvent(Object data) {
-        if (eventSink != null) {
-            eventSink.success(data);
+        for (EventChannel.EventSink sink : eventSinks.values()) {
+            sink.success(data);
+        }
+    }
+
+    /**
+     * @return the shared event map, cleared. Only valid until the next call; main thread only.
+     */
+    private HashMap<String, Object> obtainMessage() {
+        message.clear();
+        return message;
+    }
+
+    /* -----------------------------
+     * Progress ticker
+     * ----------------------------- */
+    // runs only while the player is playing and Flutter is listening
+    private final Runnable progressTicker = new Runnable() {
+        @Override
+        public void run() {
+            if (!progressTicking) {
+                return;
+            }
+            sendProgress();
+            mainHandler.postDelayed(this, progressIntervalMs);
+        }
+    };
+
+    private void sendProgress() {
+        progress.put("position", player.getPosition());
+        progress.put("buffered", player.getBufferedPosition());
+        progress.put("liveLatency", player.getLiveLatency());
+        progress.put("playbackRate", (double) playbackRate);
+        HashMap<String, Object> data = obtainMessage();
+        data.put("progress", progress);
+        sendEvent(data);
+    }
+
+    private void updateProgressTicker() {
+        boolean shouldTick = !released && !viewDetached && !eventSinks.isEmpty() && player != null
+                && player.getState() == Player.State.PLAYING;
+        if (shouldTick == progressTicking) {
+            return;
+        }
+        progressTicking = shouldTick;
+        mainHandler.removeCallbacks(progressTicker);
+        if (shouldTick) {
+            mainHandler.post(progressTicker);
+        } else if (!released && !eventSinks.isEmpty() && player != null) {
+            // leave Flutter with the position the player stopped at
+            sendProgress();
+        }
+    }
+
+    /* -----------------------------
+     * QoE
+     * ----------------------------- */
+    // samples player statistics and enforces latency catch-up while playing, independent of
+    // whether Flutter listens
+    private final Runnable qoeSampler = new Runnable() {
+        @Override
+        public void run() {
+            Statistics statistics = player.getStatistics();
+            long liveLatency = player.getLiveLatency();
+            qoeRecorder.onStatistics(statistics.getDroppedFrames(), statistics.getDecodedFrames(),
+                    liveLatency, SystemClock.elapsedRealtime());
+            long bufferAhead = player.getBufferedPosition() - player.getPosition();
+            setPlaybackRate(latencyCatchUp.update(liveLatency, bufferAhead));
+            mainHandler.postDelayed(this, QOE_SAMPLE_INTERVAL_MS);
+        }
+    };
+
+    private void setPlaybackRate(float rate) {
+        if (rate != playbackRate) {
+            Log.d(TAG, "Playback rate " + playbackRate + " -> " + rate + " at latency " + player.getLiveLatency());
+            playbackRate = rate;
+            player.setPlaybackRate(rate);
+        }
+    }
+
+    private Map<String, Object> addPlaybackInfo(Map<String, Object> summary) {
+        summary.put("playbackMode", playbackMode.getValue());
+        summary.put("catchUps", latencyCatchUp.getCatchUpCount());
+        return summary;
+    }
+
+    /**
+     * Close the QoE session, log it and hand the summary to Flutter.
+     */
+    private void finishQoeSession() {
+        mainHandler.removeCallbacks(qoeSampler);
+        Map<String, Object> summary = qoeRecorder.finish(SystemClock.elapsedRealtime());
+        if (summary == null) {
+            return;
+        }
+        addPlaybackInfo(summary);
+        Log.i(TAG, "QoE summary: " + summary);
+        HashMap<String, Object> data = obtainMessage();
+        data.put("qoeSummary", summary);
+        sendEvent(data);
+    }
+
+    private void setProgressInterval(long intervalMs) {
+        progressIntervalMs = intervalMs <= 0
+                ? DEFAULT_PROGRESS_INTERVAL_MS
+                : Math.max(MIN_PROGRESS_INTERVAL_MS, intervalMs);
+        if (progressTicking) {
+            mainHandler.removeCallbacks(progressTicker);
+            mainHandler.post(progressTicker);
         }
     }
 
     @Override
     public void onFlutterViewAttached(@NonNull View flutterView) {
         PlatformView.super.onFlutterViewAttached(flutterView);
-        surfaceView.getHolder().addCallback(this);
+        if (surfaceView != null) {
+            surfaceView.getHolder().addCallback(this);
+        }
+        viewDetached = false;
+        updateProgressTicker();
     }
 
     @Override
     public void onFlutterViewDetached() {
         PlatformView.super.onFlutterViewDetached();
+        viewDetached = true;
+        progressTicking = false;
+        mainHandler.removeCallbacks(progressTicker);
     }
 
     @Override
     public void dispose() {
-        player.removeListener(this);
-        player.release();
+        if (released) {
+            return;
+        }
+        released = true;
+        detachPlayer();
+        channels.unregister(this, viewId);
+        cuePipeline.close();
+        eventSinks.clear();
+        playerPool.removeView();
+        if (textureEntry != null) {
+            surface.release();
+            surface = null;
+            textureEntry.release();
+        }
     }
 
     @Override
@@ -100,14 +289,13 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
     }
 
     @Override
-    public void onListen(Object arguments, EventChannel.EventSink events) {
-        this.eventSink = events;
-
-    }
-
-    @Override
-    public void onCancel(Object arguments) {
-        this.eventSink = null;
+    public void onEventSinkChanged(String channel, EventChannel.EventSink sink) {
+        if (sink != null) {
+            eventSinks.put(channel, sink);
+        } else {
+            eventSinks.remove(channel);
+        }
+        updateProgressTicker();
     }
 
     @Override
@@ -119,7 +307,7 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
                 assert args != null;
                 String url = (String) args.get("url");
                 Boolean autoPlay = (Boolean) args.get("autoPlay");
-                startPlayer(url, autoPlay);
+                startPlayer(url, autoPlay, PlaybackMode.fromValue(args.get("playbackMode")));
                 result.success(true);
                 break;
             case "stopPlayer":
@@ -145,7 +333,44 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
                 result.success(true);
                 break;
             case "position":
-                result.success(player.getPosition());
+                result.success(player != null ? player.getPosition() : 0L);
+                break;
+            case "preload":
+                List<String> urls = call.argument("urls");
+                if (urls != null) {
+                    playerPool.preload(urls, PlaybackMode.fromValue(call.argument("playbackMode")));
+                }
+                result.success(playerPool.getMetrics());
+                break;
+            case "createPlayer":
+                String playerId = call.argument("playerId");
+                if (playerId != null) {
+                    playerPool.preload(Collections.singletonList(playerId),
+                            PlaybackMode.fromValue(call.argument("playbackMode")));
+                }
+                result.success(true);
+                break;
+            case "dispose":
+                detachPlayer();
+                playerPool.evictIdle();
+                result.success(true);
+                break;
+            case "qoeSummary":
+                result.success(addPlaybackInfo(qoeRecorder.summary(SystemClock.elapsedRealtime())));
+                break;
+            case "cueMetrics":
+                result.success(cuePipeline.getMetrics());
+                break;
+            case "setCueInterval":
+                Number cueIntervalMs = call.argument("intervalMs");
+                cuePipeline.setDeliveryInterval(cueIntervalMs == null
+                        ? CuePipeline.DEFAULT_DELIVERY_INTERVAL_MS : cueIntervalMs.longValue());
+                result.success(true);
+                break;
+            case "setProgressInterval":
+                Number intervalMs = call.argument("intervalMs");
+                setProgressInterval(intervalMs == null ? 0 : intervalMs.longValue());
+                result.success(progressIntervalMs);
                 break;
             case "qualities":
                 List<String> qualities = getQualities();
@@ -197,25 +422,87 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
     }
 
     private void stopPlayer() {
-        this.dispose();
+        detachPlayer();
     }
 
-    private void startPlayer(String url, Boolean autoPlay) {
-        if (player != null) {
-            player.load(Uri.parse(url));
-            if (autoPlay) {
-                player.play();
-            }
+    private void startPlayer(String url, Boolean autoPlay, PlaybackMode mode) {
+        if (url == null || released) {
+            return;
+        }
+        finishQoeSession();
+        boolean pooled = playerPool.contains(url, mode);
+        attachPlayer(url, mode);
+        applyPlaybackMode(mode);
+        qoeRecorder.onLoadStarted(SystemClock.elapsedRealtime());
+        if (pooled) {
+            // the player was loaded before this view asked for it, replay what was missed
+            Log.d(TAG, "Reusing pooled player for " + url);
+            onDurationChanged(player.getDuration());
+            onStateChanged(player.getState());
+            onQualityChanged(player.getQuality());
+        }
+        if (autoPlay) {
+            player.play();
+        }
+    }
+
+    /**
+     * Borrow the pooled player for {@code url} in {@code mode} and show it on this view's surface.
+     */
+    private void attachPlayer(String url, PlaybackMode mode) {
+        if (player != null && url.equals(playerUrl) && mode == playbackMode) {
+            return;
+        }
+        detachPlayer();
+        playerUrl = url;
+        player = playerPool.acquire(url, mode);
+        player.addListener(this);
+        if (surface != null) {
+            player.setSurface(surface);
+        }
+    }
+
+    /**
+     * Hand the player back to the pool, loaded, so the stream can be shown again without a reload.
+     */
+    private void detachPlayer() {
+        progressTicking = false;
+        mainHandler.removeCallbacks(progressTicker);
+        finishQoeSession();
+        if (player == null) {
+            return;
         }
+        player.removeListener(this);
+        player = null;
+        playerPool.release(playerUrl, playbackMode);
+        playerUrl = null;
+    }
+
+    private void applyPlaybackMode(PlaybackMode mode) {
+        playbackMode = mode;
+        latencyCatchUp = new LatencyCatchUp(mode);
+        // the pool configured the player for the mode before loading, only undo a previous catch-up
+        playbackRate = LatencyCatchUp.NORMAL_RATE;
+        player.setPlaybackRate(playbackRate);
+    }
+
+    /**
+     * Apply the buffering settings of {@code mode}; must happen before the stream is loaded.
+     */
+    static void configure(Player player, PlaybackMode mode) {
+        player.setLiveLowLatencyEnabled(mode.isLiveLowLatency());
+        player.setRebufferToLive(mode.isRebufferToLive());
+        player.setInitialBufferDuration(mode.getInitialBufferMs());
     }
 
     private void toggleAutoQuality() {
-        final boolean auto = isAuto();
-        player.setAutoQualityMode(!auto);
+        if (player != null) {
+            player.setAutoQualityMode(!isAuto());
+        }
     }
 
     private boolean isAuto() {
-        return player.isAutoQualityMode();
+        return player != null && player.isAutoQualityMode();
     }
 
     private void setQuality(String quality) {
@@ -242,18 +529,13 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
     @Override
     public void onCue(@NonNull Cue cue) {
         if (cue instanceof TextMetadataCue) {
-            Log.i("Timed Metadata: ", ((TextMetadataCue) cue).text);
-            HashMap<String, Object> data = new HashMap<>();
-            data.put("metadata", ((TextMetadataCue) cue).text);
-            data.put("startTime", cue.startTime);
-            data.put("endTime", cue.endTime);
-            sendEvent(data);
+            cuePipeline.submit(((TextMetadataCue) cue).text, cue.startTime, cue.endTime);
         }
     }
 
     @Override
     public void onDurationChanged(long l) {
-        HashMap<String, Object> data = new HashMap<>();
+        HashMap<String, Object> data = obtainMessage();
         data.put("duration", l);
         sendEvent(data);
     }
@@ -261,39 +543,75 @@ public class IvsPlayerView extends Player.Listener implements PlatformView, Surf
     @Override
     public void onStateChanged(@NonNull Player.State state) {
 
-        HashMap<String, Object> data = new HashMap<>();
+        HashMap<String, Object> data = obtainMessage();
         data.put("state", state.ordinal());
         sendEvent(data);
+        updateProgressTicker();
+        updateQoe(state);
+    }
+
+    private void updateQoe(Player.State state) {
+        long now = SystemClock.elapsedRealtime();
+        mainHandler.removeCallbacks(qoeSampler);
+        switch (state) {
+            case PLAYING:
+                qoeRecorder.onPlaying(now);
+                mainHandler.postDelayed(qoeSampler, QOE_SAMPLE_INTERVAL_MS);
+                break;
+            case BUFFERING:
+                qoeRecorder.onBuffering(now);
+                // never chase latency out of an empty buffer
+                setPlaybackRate(LatencyCatchUp.NORMAL_RATE);
+                break;
+            case ENDED:
+                finishQoeSession();
+                break;
+            default:
+                qoeRecorder.onStopped(now);
+                break;
+        }
     }
 
     @Override
     public void onError(@NonNull PlayerException e) {
-        HashMap<String, Object> data = new HashMap<>();
+        HashMap<String, Object> data = obtainMessage();
         data.put("error", e.getMessage());
         sendEvent(data);
+        qoeRecorder.onError(SystemClock.elapsedRealtime());
     }
 
     @Override
     public void onRebuffering() {
-
+        HashMap<String, Object> data = obtainMessage();
+        data.put("rebuffering", player.getPosition());
+        sendEvent(data);
+        qoeRecorder.onBuffering(SystemClock.elapsedRealtime());
     }
 
     @Override
     public void onSeekCompleted(long l) {
-        HashMap<String, Object> data = new HashMap<>();
+        HashMap<String, Object> data = obtainMessage();
         data.put("seekedtotime", l);
         sendEvent(data);
     }
 
     @Override
-    public void onVideoSizeChanged(int i, int i1) {
-
+    public void onVideoSizeChanged(int width, int height) {
+        if (textureEntry != null && width > 0 && height > 0) {
+            // the texture is sized like the video; the Texture widget scales it
+            textureEntry.surfaceTexture().setDefaultBufferSize(width, height);
+        }
+        HashMap<String, Object> data = obtainMessage();
+        data.put("videoWidth", width);
+        data.put("videoHeight", height);
+        sendEvent(data);
     }
 
     @Override
     public void onQualityChanged(@NonNull Quality quality) {
-        HashMap<String, Object> data = new HashMap<>();
+        HashMap<String, Object> data = obtainMessage();
         data.put("quality", quality.getName());
         sendEvent(data);
+        qoeRecorder.onQualityChanged(quality.getName(), quality.getBitrate(), SystemClock.elapsedRealtime());
     }
 }
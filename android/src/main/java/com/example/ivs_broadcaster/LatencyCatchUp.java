@@ -0,0 +1,58 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Chooses the playback rate that pulls live latency back to a mode's target.
+ *
+ * Playback speeds up once latency exceeds the target by {@link #START_MARGIN_MS} and returns to
+ * normal speed when the target is reached, so the rate does not flap around the threshold.
+ * Catching up is abandoned while less than {@link #MIN_BUFFER_AHEAD_MS} is buffered, since
+ * playing faster than the stream arrives would only trade latency for a stall.
+ */
+final class LatencyCatchUp {
+    static final float NORMAL_RATE = 1.0f;
+    static final long START_MARGIN_MS = 500;
+    static final long MIN_BUFFER_AHEAD_MS = 500;
+
+    private final long targetLatencyMs;
+    private final float catchUpRate;
+    private boolean catchingUp = false;
+    private long catchUpCount = 0;
+
+    LatencyCatchUp(PlaybackMode mode) {
+        this(mode.getTargetLatencyMs(), mode.getCatchUpRate());
+    }
+
+    LatencyCatchUp(long targetLatencyMs, float catchUpRate) {
+        this.targetLatencyMs = targetLatencyMs;
+        this.catchUpRate = catchUpRate;
+    }
+
+    /**
+     * @param liveLatencyMs current live latency, not positive for VOD
+     * @param bufferAheadMs buffered position minus playback position
+     * @return the playback rate to apply
+     */
+    float update(long liveLatencyMs, long bufferAheadMs) {
+        if (targetLatencyMs <= 0 || catchUpRate <= NORMAL_RATE || liveLatencyMs <= 0
+                || bufferAheadMs < MIN_BUFFER_AHEAD_MS) {
+            catchingUp = false;
+        } else if (catchingUp) {
+            catchingUp = liveLatencyMs > targetLatencyMs;
+        } else if (liveLatencyMs > targetLatencyMs + START_MARGIN_MS) {
+            catchingUp = true;
+            catchUpCount++;
+        }
+        return catchingUp ? catchUpRate : NORMAL_RATE;
+    }
+
+    boolean isCatchingUp() {
+        return catchingUp;
+    }
+
+    /**
+     * @return how many times playback had to speed up
+     */
+    long getCatchUpCount() {
+        return catchUpCount;
+    }
+}
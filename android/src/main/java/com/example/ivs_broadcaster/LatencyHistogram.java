@@ -0,0 +1,118 @@
+package com.example.ivs_broadcaster;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free histogram of latencies in microseconds.
+ *
+ * Values are counted in log-linear buckets: exact below 8 us, then eight buckets per power of
+ * two, which keeps every reported percentile within 12.5% of the true value. Recording is a
+ * couple of atomic increments so it can be called from the camera threads on every frame.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // up to 2^31 us (~36 minutes), anything larger lands in the last bucket
+    private static final int MAX_EXPONENT = 31;
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) ((micros >> shift) & (SUB_BUCKETS - 1));
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls into the given bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long currentMax;
+        while (micros > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, micros)) {
+                break;
+            }
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    long getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+
+    /**
+     * Copy the bucket counts into {@code scratch}, optionally resetting them, so percentiles can
+     * be computed from a consistent view without allocating.
+     *
+     * @return number of values in the snapshot
+     */
+    long snapshot(long[] scratch, boolean reset) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            scratch[i] = reset ? buckets.getAndSet(i, 0) : buckets.get(i);
+            total += scratch[i];
+        }
+        if (reset) {
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+        return total;
+    }
+
+    /**
+     * @param scratch bucket counts produced by {@link #snapshot(long[], boolean)}
+     * @param total   number of values in the snapshot
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, 0 for an empty snapshot
+     */
+    static long percentile(long[] scratch, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += scratch[i];
+            if (seen >= rank && scratch[i] > 0) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(BUCKET_COUNT - 1);
+    }
+}
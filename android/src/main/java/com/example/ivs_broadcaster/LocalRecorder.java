@@ -0,0 +1,263 @@
+package com.example.ivs_broadcaster;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the broadcast's processed video to an MP4 file next to the live stream.
+ *
+ * The recorder is an extra output of the {@link SurfaceFanout}, so it encodes exactly the frames
+ * that are sent to IVS without a second camera or DeepAR pass. It owns a hardware H.264 encoder
+ * with an input surface, drained asynchronously on its own thread into a {@link MediaMuxer}.
+ * The encoder runs at the broadcast's size and frame rate with non-realtime priority so the live
+ * encoder wins when the hardware is contended. Only video is recorded: the microphone belongs to
+ * the broadcast session. Encode time is measured per frame from the moment the fanout drew it
+ * until the encoder produced it.
+ */
+final class LocalRecorder implements SurfaceFanout.FrameListener {
+    private static final String TAG = "LocalRecorder";
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final int I_FRAME_INTERVAL_S = 1;
+    private static final int MAX_BITRATE = 6_000_000;
+    // frames drawn but not yet encoded whose draw time is remembered
+    private static final int PENDING_FRAMES = 32;
+
+    /** Called on the main thread once the file is complete, or with a null path if it failed. */
+    interface Listener {
+        void onRecordingFinished(@Nullable String path, Map<String, Object> metrics);
+    }
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final Listener listener;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MediaCodec encoder;
+    private final MediaMuxer muxer;
+    private final Surface inputSurface;
+    private final LatencyHistogram encodeTime = new LatencyHistogram();
+
+    private final Object lock = new Object();
+    private final long[] pendingPtsUs = new long[PENDING_FRAMES];
+    private final long[] pendingDrawnAtNs = new long[PENDING_FRAMES];
+    private int pendingIndex = 0;
+
+    // encoder thread only
+    private int trackIndex = -1;
+    private boolean muxerStarted = false;
+    private long firstPtsUs = -1;
+    private long lastPtsUs = -1;
+    private long frames = 0;
+    private long bytes = 0;
+    private boolean failed = false;
+
+    private final long startedAtMs = SystemClock.elapsedRealtime();
+    private volatile boolean stopping = false;
+    private volatile boolean finished = false;
+
+    LocalRecorder(File file, int width, int height, int fps, int bitrate, Listener listener) throws IOException {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.listener = listener;
+        thread = new HandlerThread("IvsLocalRecorder", Process.THREAD_PRIORITY_VIDEO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, Math.min(bitrate, MAX_BITRATE));
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, fps);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_S);
+        // 1 = best effort, the live encoder keeps realtime priority
+        format.setInteger(MediaFormat.KEY_PRIORITY, 1);
+
+        encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+        try {
+            encoder.setCallback(callback, handler);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+            muxer = new MediaMuxer(file.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        } catch (IOException | RuntimeException e) {
+            encoder.release();
+            thread.quitSafely();
+            throw e;
+        }
+        encoder.start();
+        Log.d(TAG, "Recording " + width + "x" + height + "@" + fps + " to " + file);
+    }
+
+    Surface getInputSurface() {
+        return inputSurface;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    boolean isStopping() {
+        return stopping;
+    }
+
+    /**
+     * Finish the file. The fanout must no longer draw into {@link #getInputSurface()}.
+     */
+    void stop() {
+        if (stopping) {
+            return;
+        }
+        stopping = true;
+        handler.post(() -> {
+            try {
+                encoder.signalEndOfInputStream();
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Could not signal end of stream", e);
+                finish();
+            }
+        });
+    }
+
+    @Override
+    public void onFrameDrawn(long timestampNs) {
+        synchronized (lock) {
+            pendingPtsUs[pendingIndex] = timestampNs / 1000;
+            pendingDrawnAtNs[pendingIndex] = System.nanoTime();
+            pendingIndex = (pendingIndex + 1) % PENDING_FRAMES;
+        }
+    }
+
+    private void recordEncodeTime(long ptsUs) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            for (int i = 0; i < PENDING_FRAMES; i++) {
+                if (pendingPtsUs[i] == ptsUs && pendingDrawnAtNs[i] != 0) {
+                    encodeTime.record((now - pendingDrawnAtNs[i]) / 1000);
+                    pendingDrawnAtNs[i] = 0;
+                    return;
+                }
+            }
+        }
+    }
+
+    private final MediaCodec.Callback callback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            // fed through the input surface
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index, @NonNull MediaCodec.BufferInfo info) {
+            if (finished) {
+                return;
+            }
+            ByteBuffer buffer = codec.getOutputBuffer(index);
+            boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+            if (buffer != null && info.size > 0 && !config && muxerStarted) {
+                buffer.position(info.offset);
+                buffer.limit(info.offset + info.size);
+                muxer.writeSampleData(trackIndex, buffer, info);
+                recordEncodeTime(info.presentationTimeUs);
+                if (firstPtsUs < 0) {
+                    firstPtsUs = info.presentationTimeUs;
+                }
+                lastPtsUs = info.presentationTimeUs;
+                frames++;
+                bytes += info.size;
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                finish();
+            }
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, "Encoder error", e);
+            failed = true;
+            finish();
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            if (muxerStarted) {
+                Log.w(TAG, "Output format changed twice, ignoring: " + format);
+                return;
+            }
+            trackIndex = muxer.addTrack(format);
+            muxer.start();
+            muxerStarted = true;
+        }
+    };
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            encoder.stop();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Encoder stop failed", e);
+        }
+        encoder.release();
+        inputSurface.release();
+        if (muxerStarted) {
+            try {
+                muxer.stop();
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Muxer stop failed", e);
+                failed = true;
+            }
+        } else {
+            failed = true;
+        }
+        muxer.release();
+        if (failed || frames == 0) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+        Map<String, Object> metrics = getMetrics();
+        String path = failed || frames == 0 ? null : file.getAbsolutePath();
+        Log.d(TAG, "Recording finished: " + path + " " + metrics);
+        thread.quitSafely();
+        mainHandler.post(() -> listener.onRecordingFinished(path, metrics));
+    }
+
+    private Map<String, Object> getMetrics() {
+        long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+        long total = encodeTime.snapshot(scratch, false);
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("frames", frames);
+        metrics.put("bytes", bytes);
+        metrics.put("durationMs", frames == 0 ? 0 : (lastPtsUs - firstPtsUs) / 1000);
+        metrics.put("wallMs", SystemClock.elapsedRealtime() - startedAtMs);
+        metrics.put("encodeMsP50", LatencyHistogram.percentile(scratch, total, 50) / 1000.0);
+        metrics.put("encodeMsP95", LatencyHistogram.percentile(scratch, total, 95) / 1000.0);
+        metrics.put("encodeMsMax", encodeTime.getMax() / 1000.0);
+        return metrics;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.ivs_broadcaster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Paces timed metadata to IVS's limits instead of handing every message to the session.
+ *
+ * IVS accepts at most {@link #DEFAULT_MAX_PER_SECOND} timed metadata messages per second of at
+ * most {@link #MAX_PAYLOAD_BYTES} bytes each and drops the rest. Messages are queued and sent by
+ * {@link #poll(long)} no faster than that, one message per payload. With batching enabled a send
+ * packs as many queued messages as fit into one payload instead: a lone message is sent as is,
+ * several are framed as an RFC 7464 JSON text sequence, each record starting with
+ * {@link #RECORD_SEPARATOR} and ending with a line feed. Batching is off by default because only
+ * viewers that split such payloads, like this plugin's Android player, see the individual
+ * messages; every other player gets the framed text as a single cue. A message
+ * offered with a key replaces the pending message with the same key, keeping its place in the
+ * queue. When the queue is full the oldest message is dropped. All timestamps are caller
+ * supplied in milliseconds from a monotonic clock. Thread-safe.
+ */
+final class MetadataQueue {
+    static final int MAX_PAYLOAD_BYTES = 1024;
+    static final int DEFAULT_MAX_PER_SECOND = 5;
+    static final int DEFAULT_CAPACITY = 256;
+    static final char RECORD_SEPARATOR = '\u001E';
+    private static final long WINDOW_MS = 1000;
+    private static final long MICROS_PER_MS = 1000;
+    // RS and LF around every record of a batch
+    private static final int FRAMING_BYTES = 2;
+
+    /** Hands a payload to the broadcast session. */
+    interface Sender {
+        /**
+         * @return false if the session did not accept the payload; it is not retried
+         */
+        boolean send(String payload);
+    }
+
+    enum Result {
+        QUEUED("queued"),
+        /** Replaced a pending message with the same key. */
+        COALESCED("coalesced"),
+        /** Queued, but the queue was full and the oldest message was dropped for it. */
+        QUEUED_DROPPED_OLDEST("queuedDroppedOldest"),
+        REJECTED_EMPTY("rejectedEmpty"),
+        REJECTED_TOO_LARGE("rejectedTooLarge");
+
+        private final String value;
+
+        Result(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        String message;
+        int bytes;
+        final long queuedAtMs;
+
+        Entry(String key, String message, int bytes, long queuedAtMs) {
+            this.key = key;
+            this.message = message;
+            this.bytes = bytes;
+            this.queuedAtMs = queuedAtMs;
+        }
+    }
+
+    private final Sender sender;
+    private final int capacity;
+    private final int maxPerSecond;
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private final Map<String, Entry> pendingByKey = new HashMap<>();
+    // times of the last maxPerSecond sends, oldest at sendIndex
+    private final long[] sendTimes;
+    private int sendIndex = 0;
+    private boolean batching = false;
+    private final StringBuilder batch = new StringBuilder(MAX_PAYLOAD_BYTES);
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+
+    private long queuedMessages = 0;
+    private long coalescedMessages = 0;
+    private long droppedMessages = 0;
+    private long rejectedMessages = 0;
+    private long sentMessages = 0;
+    private long sentPayloads = 0;
+    private long failedPayloads = 0;
+
+    MetadataQueue(Sender sender) {
+        this(sender, DEFAULT_CAPACITY, DEFAULT_MAX_PER_SECOND);
+    }
+
+    MetadataQueue(Sender sender, int capacity, int maxPerSecond) {
+        if (capacity < 1 || maxPerSecond < 1) {
+            throw new IllegalArgumentException("capacity and rate must be at least 1");
+        }
+        this.sender = sender;
+        this.capacity = capacity;
+        this.maxPerSecond = maxPerSecond;
+        this.sendTimes = new long[maxPerSecond];
+        Arrays.fill(sendTimes, Long.MIN_VALUE / 2);
+    }
+
+    /**
+     * Pack several pending messages into one payload from the next send on. Only enable this
+     * when every viewer splits JSON text sequences.
+     */
+    synchronized void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Queue {@code message} for sending.
+     *
+     * @param key optional key; a pending message with the same key is replaced
+     */
+    synchronized Result offer(String message, String key, long nowMs) {
+        if (message == null || message.isEmpty()) {
+            rejectedMessages++;
+            return Result.REJECTED_EMPTY;
+        }
+        int bytes = message.getBytes(StandardCharsets.UTF_8).length;
+        if (bytes > MAX_PAYLOAD_BYTES) {
+            rejectedMessages++;
+            return Result.REJECTED_TOO_LARGE;
+        }
+        if (key != null) {
+            Entry existing = pendingByKey.get(key);
+            if (existing != null) {
+                existing.message = message;
+                existing.bytes = bytes;
+                coalescedMessages++;
+                return Result.COALESCED;
+            }
+        }
+        Result result = Result.QUEUED;
+        if (pending.size() >= capacity) {
+            remove(pending.pollFirst());
+            droppedMessages++;
+            result = Result.QUEUED_DROPPED_OLDEST;
+        }
+        Entry entry = new Entry(key, message, bytes, nowMs);
+        pending.addLast(entry);
+        if (key != null) {
+            pendingByKey.put(key, entry);
+        }
+        queuedMessages++;
+        return result;
+    }
+
+    /**
+     * Send as many payloads as the rate limit allows.
+     *
+     * @return the number of payloads handed to the sender
+     */
+    synchronized int poll(long nowMs) {
+        int sent = 0;
+        while (!pending.isEmpty() && nowMs - sendTimes[sendIndex] >= WINDOW_MS) {
+            int count = fillBatch();
+            sendTimes[sendIndex] = nowMs;
+            sendIndex = (sendIndex + 1) % maxPerSecond;
+            for (int i = 0; i < count; i++) {
+                Entry entry = pending.pollFirst();
+                remove(entry);
+                sendLatency.record(Math.max(0, nowMs - entry.queuedAtMs) * MICROS_PER_MS);
+            }
+            if (sender.send(batch.toString())) {
+                sentMessages += count;
+                sentPayloads++;
+            } else {
+                failedPayloads++;
+            }
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * @return milliseconds until {@link #poll(long)} can send again, 0 if it can now, or -1 if
+     * nothing is pending
+     */
+    synchronized long nextSendDelayMs(long nowMs) {
+        if (pending.isEmpty()) {
+            return -1;
+        }
+        return Math.max(0, sendTimes[sendIndex] + WINDOW_MS - nowMs);
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Drop everything pending, e.g. when the broadcast stops.
+     */
+    synchronized void clear() {
+        droppedMessages += pending.size();
+        pending.clear();
+        pendingByKey.clear();
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("depth", pending.size());
+        metrics.put("queued", queuedMessages);
+        metrics.put("coalesced", coalescedMessages);
+        metrics.put("dropped", droppedMessages);
+        metrics.put("rejected", rejectedMessages);
+        metrics.put("sentMessages", sentMessages);
+        metrics.put("sentPayloads", sentPayloads);
+        metrics.put("failedPayloads", failedPayloads);
+        long total = sendLatency.snapshot(scratch, false);
+        Map<String, Object> latency = new HashMap<>();
+        latency.put("p50", LatencyHistogram.percentile(scratch, total, 50) / MICROS_PER_MS);
+        latency.put("p95", LatencyHistogram.percentile(scratch, total, 95) / MICROS_PER_MS);
+        latency.put("max", sendLatency.getMax() / MICROS_PER_MS);
+        metrics.put("sendLatencyMs", latency);
+        return metrics;
+    }
+
+    /**
+     * Build the next payload from the head of the queue into {@link #batch}.
+     *
+     * @return how many messages it holds
+     */
+    private int fillBatch() {
+        batch.setLength(0);
+        Iterator<Entry> iterator = pending.iterator();
+        Entry first = iterator.next();
+        if (!batching || !iterator.hasNext() || first.bytes + FRAMING_BYTES > MAX_PAYLOAD_BYTES) {
+            batch.append(first.message);
+            return 1;
+        }
+        int bytes = 0;
+        int count = 0;
+        Entry entry = first;
+        while (true) {
+            bytes += entry.bytes + FRAMING_BYTES;
+            batch.append(RECORD_SEPARATOR).append(entry.message).append('\n');
+            count++;
+            if (!iterator.hasNext()) {
+                break;
+            }
+            entry = iterator.next();
+            if (bytes + entry.bytes + FRAMING_BYTES > MAX_PAYLOAD_BYTES) {
+                break;
+            }
+        }
+        if (count == 1) {
+            // the second message did not fit next to the first, send it unframed
+            batch.setLength(0);
+            batch.append(first.message);
+        }
+        return count;
+    }
+
+    private void remove(Entry entry) {
+        if (entry != null && entry.key != null && pendingByKey.get(entry.key) == entry) {
+            pendingByKey.remove(entry.key);
+        }
+    }
+}
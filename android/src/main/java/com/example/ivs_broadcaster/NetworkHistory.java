@@ -0,0 +1,62 @@
+package com.example.ivs_broadcaster;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Remembers the bitrate recent broadcasts sustained so the next one can start close to it.
+ *
+ * Each session's sustained bitrate is blended into a running estimate kept in
+ * {@link SharedPreferences}. An estimate older than {@link #MAX_AGE_MS} is ignored, as the device
+ * has likely moved to another network since.
+ */
+final class NetworkHistory {
+    static final long MAX_AGE_MS = 6 * 60 * 60 * 1000L;
+    private static final String PREFERENCES = "ivs_broadcaster_network";
+    private static final String KEY_BITRATE = "sustainedBitrate";
+    private static final String KEY_UPDATED_AT = "updatedAtMs";
+    // weight of the latest session against the running estimate
+    private static final double LATEST_WEIGHT = 0.5;
+
+    private final SharedPreferences preferences;
+
+    NetworkHistory(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the recent sustained bitrate, or 0 if none is known
+     */
+    long getRecentBitrate() {
+        long updatedAt = preferences.getLong(KEY_UPDATED_AT, 0);
+        if (System.currentTimeMillis() - updatedAt > MAX_AGE_MS) {
+            return 0;
+        }
+        return preferences.getLong(KEY_BITRATE, 0);
+    }
+
+    void record(long sustainedBitrate) {
+        if (sustainedBitrate <= 0) {
+            return;
+        }
+        long estimate = blend(getRecentBitrate(), sustainedBitrate);
+        preferences.edit()
+                .putLong(KEY_BITRATE, estimate)
+                .putLong(KEY_UPDATED_AT, System.currentTimeMillis())
+                .apply();
+    }
+
+    /**
+     * @param estimate         the running estimate, 0 if none is known
+     * @param sustainedBitrate the bitrate the latest session sustained
+     * @return the new running estimate
+     */
+    static long blend(long estimate, long sustainedBitrate) {
+        if (sustainedBitrate <= 0) {
+            return estimate;
+        }
+        return estimate == 0
+                ? sustainedBitrate
+                : (long) (estimate + LATEST_WEIGHT * (sustainedBitrate - estimate));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ivs_broadcaster;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free single-producer, single-consumer ring of 16-bit PCM samples.
+ *
+ * One thread writes (the Flutter platform thread pushing app audio) and one thread reads (the
+ * audio capture thread mixing it in). Each side owns one monotonically increasing position; the
+ * other side only reads it, so a release store after copying and an acquire load before copying
+ * are all the synchronization needed. The capacity is rounded up to a power of two so positions
+ * map to slots with a mask. A writer that outruns the reader drops what does not fit rather than
+ * overwrite samples the reader may be copying.
+ */
+final class PcmRingBuffer {
+    private final short[] samples;
+    private final int mask;
+    // written by the producer only
+    private final AtomicLong writePosition = new AtomicLong();
+    // written by the consumer only
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong droppedSamples = new AtomicLong();
+
+    PcmRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.samples = new short[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return samples.length;
+    }
+
+    /** Samples ready to read. Exact for the consumer, a lower bound of free space for the producer. */
+    int available() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    /**
+     * Producer only: append up to {@code length} samples.
+     *
+     * @return how many were written; the rest did not fit and are counted as dropped
+     */
+    int write(short[] source, int offset, int length) {
+        long write = writePosition.get();
+        int free = samples.length - (int) (write - readPosition.get());
+        int count = Math.min(length, free);
+        int start = (int) (write & mask);
+        int firstPart = Math.min(count, samples.length - start);
+        System.arraycopy(source, offset, samples, start, firstPart);
+        System.arraycopy(source, offset + firstPart, samples, 0, count - firstPart);
+        writePosition.lazySet(write + count);
+        if (count < length) {
+            droppedSamples.addAndGet(length - count);
+        }
+        return count;
+    }
+
+    /**
+     * Consumer only: take up to {@code length} samples.
+     *
+     * @return how many were read
+     */
+    int read(short[] target, int offset, int length) {
+        long read = readPosition.get();
+        int count = Math.min(length, (int) (writePosition.get() - read));
+        int start = (int) (read & mask);
+        int firstPart = Math.min(count, samples.length - start);
+        System.arraycopy(samples, start, target, offset, firstPart);
+        System.arraycopy(samples, 0, target, offset + firstPart, count - firstPart);
+        readPosition.lazySet(read + count);
+        return count;
+    }
+
+    /** Consumer only: discard everything buffered. */
+    void clear() {
+        readPosition.lazySet(writePosition.get());
+    }
+
+    long getDroppedCount() {
+        return droppedSamples.get();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.ivs_broadcaster;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage latency histograms for the AR broadcast pipeline, plus dropped and late frame
+ * counters. Recording never locks or allocates; only building a snapshot does.
+ */
+final class PipelineMetrics {
+
+    enum Stage {
+        /** Sensor timestamp to analyzer entry: time spent inside CameraX. */
+        CAPTURE("capture"),
+        /** Analyzer entry until the frame has been copied into the pool. */
+        COPY("copy"),
+        /** Copy done until the submission thread picks the frame up. */
+        QUEUE("queue"),
+        /** Time the receiveFrame call takes; DeepAR processes the frame asynchronously after it. */
+        SUBMIT("submit"),
+        /**
+         * Handed to DeepAR until DeepAR finished rendering it into the output surface. Only
+         * observable, like {@link #TOTAL}, while DeepAR renders through the surface fanout.
+         */
+        RENDER("render"),
+        /** Sensor timestamp until DeepAR finished rendering the frame. */
+        TOTAL("total");
+
+        final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+    }
+
+    static final long DEFAULT_LATE_THRESHOLD_MICROS = 100_000;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong lateFrames = new AtomicLong();
+    private final long lateThresholdMicros;
+    // only used while building a snapshot, guarded by this
+    private final long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+
+    PipelineMetrics() {
+        this(DEFAULT_LATE_THRESHOLD_MICROS);
+    }
+
+    PipelineMetrics(long lateThresholdMicros) {
+        this.lateThresholdMicros = lateThresholdMicros;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(Stage stage, long micros) {
+        histograms[stage.ordinal()].record(micros);
+        if (stage == Stage.TOTAL && micros > lateThresholdMicros) {
+            lateFrames.incrementAndGet();
+        }
+    }
+
+    void recordDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    long getDroppedCount() {
+        return droppedFrames.get();
+    }
+
+    long getLateCount() {
+        return lateFrames.get();
+    }
+
+    /**
+     * Build a map of p50/p95/p99/max/mean/count per stage in microseconds, ready for the
+     * platform channel.
+     *
+     * @param reset start a new measurement window after taking the snapshot
+     */
+    synchronized Map<String, Object> snapshot(boolean reset) {
+        Map<String, Object> result = new HashMap<>();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            long max = histogram.getMax();
+            long mean = histogram.getMean();
+            long total = histogram.snapshot(scratch, reset);
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("count", total);
+            stats.put("p50", LatencyHistogram.percentile(scratch, total, 50));
+            stats.put("p95", LatencyHistogram.percentile(scratch, total, 95));
+            stats.put("p99", LatencyHistogram.percentile(scratch, total, 99));
+            stats.put("max", max);
+            stats.put("mean", mean);
+            result.put(stage.key, stats);
+        }
+        result.put("dropped", reset ? droppedFrames.getAndSet(0) : droppedFrames.get());
+        result.put("late", reset ? lateFrames.getAndSet(0) : lateFrames.get());
+        return result;
+    }
+}
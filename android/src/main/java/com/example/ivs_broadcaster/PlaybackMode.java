@@ -0,0 +1,67 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Latency versus smoothness trade-off for live playback, chosen by Flutter when starting the
+ * player.
+ */
+enum PlaybackMode {
+    /** Lowest latency: jump back to live after a stall and catch up whenever latency drifts. */
+    INTERACTIVE("interactive", true, true, 1_000, 2_000, 1.10f),
+    /** Low-latency stream, but stalls resume where they stopped and catch-up is gentler. */
+    BALANCED("balanced", true, false, 2_000, 4_000, 1.05f),
+    /** Regular latency with a deep initial buffer; latency is never chased. */
+    SMOOTH("smooth", false, false, 4_000, 0, 1.0f);
+
+    private final String value;
+    private final boolean liveLowLatency;
+    private final boolean rebufferToLive;
+    private final long initialBufferMs;
+    private final long targetLatencyMs;
+    private final float catchUpRate;
+
+    PlaybackMode(String value, boolean liveLowLatency, boolean rebufferToLive, long initialBufferMs,
+                 long targetLatencyMs, float catchUpRate) {
+        this.value = value;
+        this.liveLowLatency = liveLowLatency;
+        this.rebufferToLive = rebufferToLive;
+        this.initialBufferMs = initialBufferMs;
+        this.targetLatencyMs = targetLatencyMs;
+        this.catchUpRate = catchUpRate;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    boolean isLiveLowLatency() {
+        return liveLowLatency;
+    }
+
+    boolean isRebufferToLive() {
+        return rebufferToLive;
+    }
+
+    long getInitialBufferMs() {
+        return initialBufferMs;
+    }
+
+    /**
+     * @return live latency the player is pulled back to, 0 when latency is not chased
+     */
+    long getTargetLatencyMs() {
+        return targetLatencyMs;
+    }
+
+    float getCatchUpRate() {
+        return catchUpRate;
+    }
+
+    public static PlaybackMode fromValue(Object value) {
+        for (PlaybackMode mode : values()) {
+            if (mode.value.equals(value)) {
+                return mode;
+            }
+        }
+        return BALANCED;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.ivs_broadcaster;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aggregates quality-of-experience metrics for one playback session on the native side, so
+ * Flutter only ever receives a compact summary instead of the raw player events.
+ *
+ * The session starts with {@link #onLoadStarted(long)}. Time is attributed to playing,
+ * stalled or neither depending on the last reported state, and playing time is further split
+ * per rendition. A stall only counts as a rebuffer once the first frame has been shown, so
+ * startup buffering shows up in time-to-first-frame instead. All timestamps are caller supplied
+ * in milliseconds from a monotonic clock. Thread-safe.
+ */
+final class PlaybackQoeRecorder {
+    private static final long MICROS_PER_MS = 1000;
+
+    private long loadStartedMs = -1;
+    private long timeToFirstFrameMs = -1;
+    private long lastEventMs;
+    private boolean playing = false;
+    private boolean stalled = false;
+
+    private long playingMs = 0;
+    private long stalledMs = 0;
+    private int rebufferCount = 0;
+    private int errorCount = 0;
+
+    private String rendition;
+    private int renditionBitrate = -1;
+    private final Map<String, Long> renditionMs = new LinkedHashMap<>();
+    private int bitrateSwitches = 0;
+    private int upSwitches = 0;
+    private int downSwitches = 0;
+
+    private long droppedFrames = 0;
+    private long decodedFrames = 0;
+    private final LatencyHistogram liveLatency = new LatencyHistogram();
+    private final long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+
+    /**
+     * Start a new session, discarding everything recorded so far.
+     */
+    synchronized void onLoadStarted(long nowMs) {
+        reset();
+        loadStartedMs = nowMs;
+        lastEventMs = nowMs;
+    }
+
+    synchronized boolean isActive() {
+        return loadStartedMs >= 0;
+    }
+
+    synchronized void onPlaying(long nowMs) {
+        if (!isActive()) {
+            return;
+        }
+        account(nowMs);
+        if (timeToFirstFrameMs < 0) {
+            timeToFirstFrameMs = nowMs - loadStartedMs;
+        }
+        playing = true;
+        stalled = false;
+    }
+
+    /**
+     * The player ran out of data. Both the buffering state and the rebuffering callback end up
+     * here; consecutive reports for the same stall are only counted once.
+     */
+    synchronized void onBuffering(long nowMs) {
+        if (!isActive()) {
+            return;
+        }
+        account(nowMs);
+        playing = false;
+        if (timeToFirstFrameMs >= 0 && !stalled) {
+            stalled = true;
+            rebufferCount++;
+        }
+    }
+
+    /**
+     * Paused, idle or ended: time stops counting towards playing or stalling.
+     */
+    synchronized void onStopped(long nowMs) {
+        if (!isActive()) {
+            return;
+        }
+        account(nowMs);
+        playing = false;
+        stalled = false;
+    }
+
+    synchronized void onQualityChanged(String name, int bitrate, long nowMs) {
+        if (!isActive()) {
+            return;
+        }
+        account(nowMs);
+        if (renditionBitrate >= 0 && bitrate != renditionBitrate) {
+            bitrateSwitches++;
+            if (bitrate > renditionBitrate) {
+                upSwitches++;
+            } else {
+                downSwitches++;
+            }
+        }
+        rendition = name;
+        renditionBitrate = bitrate;
+    }
+
+    synchronized void onError(long nowMs) {
+        if (!isActive()) {
+            return;
+        }
+        account(nowMs);
+        errorCount++;
+    }
+
+    /**
+     * Feed a periodic sample of the player's statistics.
+     *
+     * @param droppedFrames  cumulative dropped frames reported by the player
+     * @param decodedFrames  cumulative decoded frames reported by the player
+     * @param liveLatencyMs  current live latency, ignored when not positive (VOD)
+     */
+    synchronized void onStatistics(long droppedFrames, long decodedFrames, long liveLatencyMs, long nowMs) {
+        if (!isActive()) {
+            return;
+        }
+        account(nowMs);
+        this.droppedFrames = Math.max(this.droppedFrames, droppedFrames);
+        this.decodedFrames = Math.max(this.decodedFrames, decodedFrames);
+        if (liveLatencyMs > 0) {
+            liveLatency.record(liveLatencyMs * MICROS_PER_MS);
+        }
+    }
+
+    synchronized int getRebufferCount() {
+        return rebufferCount;
+    }
+
+    /**
+     * @return stalled time as a fraction of playing plus stalled time
+     */
+    synchronized double getRebufferRatio() {
+        long total = playingMs + stalledMs;
+        return total == 0 ? 0 : (double) stalledMs / total;
+    }
+
+    synchronized long getTimeToFirstFrameMs() {
+        return timeToFirstFrameMs;
+    }
+
+    /**
+     * Build the summary, attributing time up to {@code nowMs} first. Latencies are in
+     * milliseconds.
+     */
+    synchronized Map<String, Object> summary(long nowMs) {
+        if (isActive()) {
+            account(nowMs);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("ttffMs", timeToFirstFrameMs);
+        result.put("playingMs", playingMs);
+        result.put("rebufferCount", rebufferCount);
+        result.put("rebufferMs", stalledMs);
+        result.put("rebufferRatio", getRebufferRatio());
+        result.put("renditionMs", new HashMap<>(renditionMs));
+        result.put("bitrateSwitches", bitrateSwitches);
+        result.put("upSwitches", upSwitches);
+        result.put("downSwitches", downSwitches);
+        result.put("droppedFrames", droppedFrames);
+        result.put("decodedFrames", decodedFrames);
+        result.put("errors", errorCount);
+
+        long total = liveLatency.snapshot(scratch, false);
+        Map<String, Object> latency = new HashMap<>();
+        latency.put("count", total);
+        latency.put("p50", LatencyHistogram.percentile(scratch, total, 50) / MICROS_PER_MS);
+        latency.put("p95", LatencyHistogram.percentile(scratch, total, 95) / MICROS_PER_MS);
+        latency.put("p99", LatencyHistogram.percentile(scratch, total, 99) / MICROS_PER_MS);
+        latency.put("max", liveLatency.getMax() / MICROS_PER_MS);
+        result.put("liveLatency", latency);
+        return result;
+    }
+
+    /**
+     * End the session and return its final summary. Later events are ignored until the next
+     * {@link #onLoadStarted(long)}; the summary stays available.
+     *
+     * @return the summary, or null if no session was active
+     */
+    synchronized Map<String, Object> finish(long nowMs) {
+        if (!isActive()) {
+            return null;
+        }
+        Map<String, Object> result = summary(nowMs);
+        loadStartedMs = -1;
+        return result;
+    }
+
+    private void account(long nowMs) {
+        long elapsed = Math.max(0, nowMs - lastEventMs);
+        lastEventMs = nowMs;
+        if (playing) {
+            playingMs += elapsed;
+            if (rendition != null) {
+                Long spent = renditionMs.get(rendition);
+                renditionMs.put(rendition, (spent == null ? 0 : spent) + elapsed);
+            }
+        } else if (stalled) {
+            stalledMs += elapsed;
+        }
+    }
+
+    private void reset() {
+        loadStartedMs = -1;
+        timeToFirstFrameMs = -1;
+        playing = false;
+        stalled = false;
+        playingMs = 0;
+        stalledMs = 0;
+        rebufferCount = 0;
+        errorCount = 0;
+        rendition = null;
+        renditionBitrate = -1;
+        renditionMs.clear();
+        bitrateSwitches = 0;
+        upSwitches = 0;
+        downSwitches = 0;
+        droppedFrames = 0;
+        decodedFrames = 0;
+        liveLatency.snapshot(scratch, true);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.ivs_broadcaster;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plugin-owned, bounded pool of loaded players keyed by URL and playback mode.
+ *
+ * Views acquire the player for their URL instead of creating one, and hand it back when they
+ * are disposed or switch streams; the player stays loaded so a view scrolled back into sight
+ * only needs to attach its surface. URLs can be preloaded before any view shows them. When the
+ * pool holds more than its capacity, idle players are evicted least recently used first;
+ * players held by a view are never evicted, so the pool may temporarily exceed its capacity.
+ * Every live view, platform view or texture alike, adds one to the capacity, so its player
+ * never crowds out a preloaded one. The playback mode is part of the key as its buffering
+ * settings only take effect when they are applied before the stream is loaded.
+ * Must be used from the main thread.
+ *
+ * @param <P> player type, abstracted so the eviction policy can be tested without the SDK
+ */
+final class PlayerPool<P> {
+    static final int DEFAULT_CAPACITY = 3;
+
+    interface Loader<P> {
+        /** Create a player configured for {@code mode} and start loading {@code url} without playing it. */
+        P load(String url, PlaybackMode mode);
+
+        /** Called when a player is handed back so it stops playing and drops its surface. */
+        void park(P player);
+
+        void destroy(P player);
+    }
+
+    private static final class Entry<P> {
+        final P player;
+        int holders = 0;
+
+        Entry(P player) {
+            this.player = player;
+        }
+    }
+
+    private final Loader<P> loader;
+    private int capacity;
+    private int views = 0;
+    // access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry<P>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    PlayerPool(Loader<P> loader) {
+        this(loader, DEFAULT_CAPACITY);
+    }
+
+    PlayerPool(Loader<P> loader, int capacity) {
+        this.loader = loader;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Hand out the player for {@code url} in {@code mode}, loading it if it is not pooled yet.
+     */
+    P acquire(String url, PlaybackMode mode) {
+        String key = key(url, mode);
+        Entry<P> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            entry = new Entry<>(loader.load(url, mode));
+            entries.put(key, entry);
+        } else {
+            hits++;
+        }
+        entry.holders++;
+        trim();
+        return entry.player;
+    }
+
+    /**
+     * Give the player for {@code url} in {@code mode} back. It stays loaded until it is evicted.
+     */
+    void release(String url, PlaybackMode mode) {
+        Entry<P> entry = entries.get(key(url, mode));
+        if (entry == null || entry.holders == 0) {
+            return;
+        }
+        entry.holders--;
+        if (entry.holders == 0) {
+            loader.park(entry.player);
+        }
+        trim();
+    }
+
+    /**
+     * Start loading {@code urls} in {@code mode} so their views can show them without waiting.
+     * The first URLs are considered the most likely to be shown next and are the last to be
+     * evicted.
+     */
+    void preload(List<String> urls, PlaybackMode mode) {
+        int count = Math.min(urls.size(), capacity);
+        for (int i = count - 1; i >= 0; i--) {
+            String url = urls.get(i);
+            if (url == null) {
+                continue;
+            }
+            String key = key(url, mode);
+            if (entries.get(key) == null) {
+                misses++;
+                entries.put(key, new Entry<>(loader.load(url, mode)));
+            }
+        }
+        trim();
+    }
+
+    /**
+     * Change how many players are kept, evicting idle ones if the pool shrinks.
+     */
+    void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        trim();
+    }
+
+    /**
+     * A view that shows one player was created, make room for its player.
+     */
+    void addView() {
+        views++;
+    }
+
+    /**
+     * A view was disposed, shrink back and evict idle players beyond the capacity.
+     */
+    void removeView() {
+        if (views > 0) {
+            views--;
+        }
+        trim();
+    }
+
+    int getCapacity() {
+        return capacity + views;
+    }
+
+    boolean contains(String url, PlaybackMode mode) {
+        return entries.containsKey(key(url, mode));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int getHeldCount() {
+        int held = 0;
+        for (Entry<P> entry : entries.values()) {
+            if (entry.holders > 0) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", entries.size());
+        metrics.put("capacity", getCapacity());
+        metrics.put("held", getHeldCount());
+        metrics.put("hits", hits);
+        metrics.put("misses", misses);
+        metrics.put("evictions", evictions);
+        return metrics;
+    }
+
+    /**
+     * Destroy every idle player, e.g. when Flutter asks to dispose all players.
+     */
+    void evictIdle() {
+        evict(0);
+    }
+
+    /**
+     * Destroy every player, including held ones. Only for plugin shutdown.
+     */
+    void clear() {
+        List<Entry<P>> all = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry<P> entry : all) {
+            loader.destroy(entry.player);
+        }
+    }
+
+    private static String key(String url, PlaybackMode mode) {
+        return mode.getValue() + " " + url;
+    }
+
+    private void trim() {
+        evict(getCapacity());
+    }
+
+    private void evict(int limit) {
+        Iterator<Entry<P>> iterator = entries.values().iterator();
+        while (entries.size() > limit && iterator.hasNext()) {
+            Entry<P> entry = iterator.next();
+            if (entry.holders == 0) {
+                iterator.remove();
+                evictions++;
+                loader.destroy(entry.player);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.ivs_broadcaster;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.amazonaws.ivs.player.Player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.view.TextureRegistry;
+
+/**
+ * Creates and disposes players that render into Flutter textures instead of platform views.
+ *
+ * Flutter calls {@code create} on {@code "ivs_player_textures"} and gets back a texture id. It
+ * draws that id with a {@code Texture} widget and controls the player on
+ * {@code "ivs_player_texture/<id>"} and {@code "ivs_player_texture_event/<id>"}, which accept the
+ * same methods and send the same events as a platform view's channels. Players come from the same
+ * pool as the platform views. Must be used from the main thread.
+ */
+final class PlayerTextureManager implements MethodChannel.MethodCallHandler {
+    private static final String TAG = "PlayerTextureManager";
+
+    private final Context context;
+    private final TextureRegistry textureRegistry;
+    private final PlayerPool<Player> playerPool;
+    private final MethodChannel methodChannel;
+    private final ViewChannelRegistry channels;
+    private final Map<Long, IvsPlayerView> views = new HashMap<>();
+
+    PlayerTextureManager(Context context, BinaryMessenger messenger, TextureRegistry textureRegistry,
+                         PlayerPool<Player> playerPool) {
+        this.context = context;
+        this.textureRegistry = textureRegistry;
+        this.playerPool = playerPool;
+        this.channels = new ViewChannelRegistry(messenger, "ivs_player_texture");
+        this.methodChannel = new MethodChannel(messenger, "ivs_player_textures");
+        this.methodChannel.setMethodCallHandler(this);
+    }
+
+    @Override
+    public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        switch (call.method) {
+            case "create":
+                result.success(create());
+                break;
+            case "dispose":
+                Number textureId = call.argument("textureId");
+                if (textureId == null) {
+                    result.error("INVALID_ARGUMENT", "textureId is required", null);
+                    return;
+                }
+                dispose(textureId.longValue());
+                result.success(true);
+                break;
+            default:
+                result.notImplemented();
+        }
+    }
+
+    private long create() {
+        TextureRegistry.SurfaceTextureEntry entry = textureRegistry.createSurfaceTexture();
+        IvsPlayerView view = new IvsPlayerView(context, channels, playerPool, entry);
+        views.put(entry.id(), view);
+        Log.d(TAG, "Created player texture " + entry.id() + ", textures: " + views.size());
+        return entry.id();
+    }
+
+    private void dispose(long textureId) {
+        IvsPlayerView view = views.remove(textureId);
+        if (view != null) {
+            view.dispose();
+            Log.d(TAG, "Disposed player texture " + textureId + ", textures: " + views.size());
+        }
+    }
+
+    /**
+     * Dispose every texture and stop answering Flutter. Only for plugin shutdown.
+     */
+    void close() {
+        methodChannel.setMethodCallHandler(null);
+        for (IvsPlayerView view : new ArrayList<>(views.values())) {
+            view.dispose();
+        }
+        views.clear();
+    }
+}
@@ -5,6 +5,8 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.amazonaws.ivs.player.Player;
+
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MessageCodec;
 import io.flutter.plugin.common.StandardMessageCodec;
@@ -13,15 +15,19 @@ import io.flutter.plugin.platform.PlatformViewFactory;
 
 public class PlayerViewFactory extends PlatformViewFactory {
     private  BinaryMessenger messenger;
+    private final PlayerPool<Player> playerPool;
+    private final ViewChannelRegistry channels;
 
-    public PlayerViewFactory(BinaryMessenger messenger) {
+    public PlayerViewFactory(BinaryMessenger messenger, PlayerPool<Player> playerPool) {
         super(StandardMessageCodec.INSTANCE);
         this.messenger = messenger;
+        this.playerPool = playerPool;
+        this.channels = new ViewChannelRegistry(messenger, "ivs_player");
     }
 
     @NonNull
     @Override
     public PlatformView create(Context context, int viewId, @Nullable Object args) {
-        return new IvsPlayerView(context, messenger, viewId, args);
+        return new IvsPlayerView(context, channels, playerPool, viewId, args);
     }
 }
@@ -0,0 +1,116 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Consistent capture, render and encode settings derived from the quality requested by Flutter.
+ *
+ * Every stage is sized from the same profile so the camera never delivers more pixels than the
+ * encoder will keep: CameraX is bound at {@link #getCaptureWidth()} x {@link #getCaptureHeight()}
+ * (landscape, as the sensor reports it), DeepAR renders at the portrait render size and the
+ * broadcast session encodes at the portrait video size within the bitrate bounds.
+ */
+final class QualityProfile {
+    static final String QUALITY_360 = "360";
+    static final String QUALITY_720 = "720";
+    static final String QUALITY_1080 = "1080";
+    static final String QUALITY_AUTO = "auto";
+
+    static final QualityProfile P360 = new QualityProfile(QUALITY_360,
+            640, 360, 30, 200_000, 600_000, 1_000_000);
+    static final QualityProfile P720 = new QualityProfile(QUALITY_720,
+            1280, 720, 30, 500_000, 1_500_000, 2_500_000);
+    static final QualityProfile P1080 = new QualityProfile(QUALITY_1080,
+            1920, 1080, 30, 1_000_000, 3_000_000, 6_000_000);
+    // auto captures at 720p and lets the encoder roam across the whole bitrate range
+    static final QualityProfile AUTO = new QualityProfile(QUALITY_AUTO,
+            1280, 720, 30, P360.minBitrate, P720.initialBitrate, P1080.maxBitrate);
+
+    private final String name;
+    private final int longSide;
+    private final int shortSide;
+    private final int targetFps;
+    private final int minBitrate;
+    private final int initialBitrate;
+    private final int maxBitrate;
+
+    private QualityProfile(String name, int longSide, int shortSide, int targetFps,
+                           int minBitrate, int initialBitrate, int maxBitrate) {
+        this.name = name;
+        this.longSide = longSide;
+        this.shortSide = shortSide;
+        this.targetFps = targetFps;
+        this.minBitrate = minBitrate;
+        this.initialBitrate = initialBitrate;
+        this.maxBitrate = maxBitrate;
+    }
+
+    /**
+     * @param quality "360", "720", "1080" or "auto"; anything else falls back to 720
+     */
+    static QualityProfile forQuality(String quality) {
+        if (quality == null) {
+            return P720;
+        }
+        switch (quality) {
+            case QUALITY_360:
+                return P360;
+            case QUALITY_1080:
+                return P1080;
+            case QUALITY_AUTO:
+                return AUTO;
+            default:
+                return P720;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getCaptureWidth() {
+        return longSide;
+    }
+
+    int getCaptureHeight() {
+        return shortSide;
+    }
+
+    int getRenderWidth() {
+        return shortSide;
+    }
+
+    int getRenderHeight() {
+        return longSide;
+    }
+
+    int getVideoWidth() {
+        return shortSide;
+    }
+
+    int getVideoHeight() {
+        return longSide;
+    }
+
+    int getTargetFps() {
+        return targetFps;
+    }
+
+    int getMinBitrate() {
+        return minBitrate;
+    }
+
+    int getInitialBitrate() {
+        return initialBitrate;
+    }
+
+    int getMaxBitrate() {
+        return maxBitrate;
+    }
+
+    @Override
+    public String toString() {
+        return "QualityProfile{" + name
+                + ", capture=" + longSide + "x" + shortSide
+                + ", fps=" + targetFps
+                + ", bitrate=" + minBitrate + ".." + maxBitrate + "}";
+    }
+}
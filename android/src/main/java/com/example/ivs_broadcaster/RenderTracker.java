@@ -0,0 +1,78 @@
+package com.example.ivs_broadcaster;
+
+/**
+ * Matches frames handed to DeepAR with the renders that come out of it.
+ *
+ * DeepAR takes frames asynchronously and only the surface it renders into tells when a frame is
+ * done, without saying which one. Each render is therefore matched with the oldest submission
+ * still pending; only {@link #MAX_PENDING} are kept, as DeepAR replaces a waiting frame rather
+ * than queueing it. A match records the {@link PipelineMetrics.Stage#RENDER} stage and, unless
+ * the frame was a repeat, the end to end {@link PipelineMetrics.Stage#TOTAL}, and feeds the
+ * render time to the {@link FrameRateGovernor}. Thread-safe.
+ */
+final class RenderTracker {
+    static final int MAX_PENDING = 2;
+
+    private final PipelineMetrics metrics;
+    private final FrameRateGovernor governor;
+    // oldest first, origin 0 for frames that must not count towards the total
+    private final long[] submitted = new long[MAX_PENDING];
+    private final long[] origins = new long[MAX_PENDING];
+    private int pendingCount = 0;
+
+    RenderTracker(PipelineMetrics metrics, FrameRateGovernor governor) {
+        this.metrics = metrics;
+        this.governor = governor;
+    }
+
+    /**
+     * Note that a frame was handed to DeepAR at {@code nowNanos}.
+     *
+     * @param originNanos when the frame was captured, or 0 to leave it out of the total, e.g. for
+     *                    a repeated frame
+     */
+    synchronized void onSubmitted(long nowNanos, long originNanos) {
+        if (pendingCount == MAX_PENDING) {
+            // the oldest was overtaken and will never be rendered
+            shift();
+        }
+        submitted[pendingCount] = nowNanos;
+        origins[pendingCount] = originNanos;
+        pendingCount++;
+    }
+
+    /**
+     * Note that DeepAR finished rendering a frame at {@code nowNanos}.
+     */
+    void onRendered(long nowNanos) {
+        long submittedAt;
+        long origin;
+        synchronized (this) {
+            if (pendingCount == 0) {
+                return;
+            }
+            submittedAt = submitted[0];
+            origin = origins[0];
+            shift();
+        }
+        long renderNanos = nowNanos - submittedAt;
+        metrics.record(PipelineMetrics.Stage.RENDER, renderNanos / 1000);
+        if (origin != 0) {
+            metrics.record(PipelineMetrics.Stage.TOTAL, (nowNanos - origin) / 1000);
+        }
+        governor.onProcessed(renderNanos);
+    }
+
+    /**
+     * Forget pending submissions, e.g. when DeepAR stops rendering to the observed surface.
+     */
+    synchronized void clear() {
+        pendingCount = 0;
+    }
+
+    private void shift() {
+        System.arraycopy(submitted, 1, submitted, 0, pendingCount - 1);
+        System.arraycopy(origins, 1, origins, 0, pendingCount - 1);
+        pendingCount--;
+    }
+}
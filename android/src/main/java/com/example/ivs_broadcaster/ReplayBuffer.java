@@ -0,0 +1,335 @@
+package com.example.ivs_broadcaster;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps the last seconds of the broadcast's video encoded in memory so they can be saved as a
+ * clip on demand.
+ *
+ * Like {@link LocalRecorder} it is an output of the {@link SurfaceFanout} with its own best
+ * effort H.264 encoder, but the encoded samples go into an {@link EncodedRing} instead of a file.
+ * The ring is sized from the bitrate and window and allocated off-heap once, which is why the
+ * window is capped at {@link #MAX_WINDOW_SECONDS}. {@link #save} muxes on a separate writer
+ * thread and copies the ring out a bounded chunk at a time on the encoder thread, so neither the
+ * live stream nor the buffering stop while a clip is written, and the ring is never duplicated.
+ */
+final class ReplayBuffer {
+    private static final String TAG = "ReplayBuffer";
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final int I_FRAME_INTERVAL_S = 1;
+    private static final int MAX_BITRATE = 6_000_000;
+    // room for the group of pictures that straddles the start of the window and bitrate overshoot
+    private static final int EXTRA_SECONDS = 2;
+    private static final double BYTES_HEADROOM = 1.5;
+    // copied out of the ring at a time while a clip is written
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int CHUNK_SAMPLES = 64;
+
+    /** Longest window that can be buffered; at the maximum bitrate the ring takes about 70 MB. */
+    static final int MAX_WINDOW_SECONDS = 60;
+
+    /** Called on the main thread with the clip's path, or null and why it failed. */
+    interface SaveListener {
+        void onReplaySaved(@Nullable String path, @Nullable String error, Map<String, Object> metrics);
+    }
+
+    private final int width;
+    private final int height;
+    private final int windowSeconds;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService writer;
+    private final MediaCodec encoder;
+    private final Surface inputSurface;
+    // encoder thread only
+    private final EncodedRing ring;
+    private MediaFormat outputFormat;
+    private boolean released = false;
+    private boolean failed = false;
+
+    /**
+     * @throws IllegalArgumentException if {@code windowSeconds} is not between 1 and
+     *                                  {@link #MAX_WINDOW_SECONDS}
+     * @throws IOException if the encoder or the ring cannot be created
+     */
+    ReplayBuffer(int width, int height, int fps, int bitrate, int windowSeconds) throws IOException {
+        if (windowSeconds <= 0 || windowSeconds > MAX_WINDOW_SECONDS) {
+            throw new IllegalArgumentException("Replay window must be 1 to " + MAX_WINDOW_SECONDS + " seconds");
+        }
+        this.width = width;
+        this.height = height;
+        this.windowSeconds = windowSeconds;
+        int cappedBitrate = Math.min(bitrate, MAX_BITRATE);
+        long bufferSeconds = windowSeconds + EXTRA_SECONDS;
+        try {
+            ring = new EncodedRing((int) (cappedBitrate / 8 * bufferSeconds * BYTES_HEADROOM),
+                    (int) (fps * bufferSeconds), windowSeconds * 1_000_000L);
+        } catch (OutOfMemoryError e) {
+            throw new IOException("Not enough memory to buffer " + windowSeconds + " seconds", e);
+        }
+
+        thread = new HandlerThread("IvsReplayBuffer", Process.THREAD_PRIORITY_VIDEO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread writerThread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "IvsReplayWriter");
+            writerThread.setDaemon(true);
+            return writerThread;
+        });
+
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, cappedBitrate);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, fps);
+        // short groups of pictures keep the clip close to the requested window
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_S);
+        // 1 = best effort, the live encoder keeps realtime priority
+        format.setInteger(MediaFormat.KEY_PRIORITY, 1);
+
+        encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+        try {
+            encoder.setCallback(callback, handler);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+        } catch (RuntimeException e) {
+            encoder.release();
+            thread.quitSafely();
+            writer.shutdownNow();
+            throw e;
+        }
+        encoder.start();
+        Log.d(TAG, "Buffering " + windowSeconds + "s of " + width + "x" + height + "@" + fps);
+    }
+
+    Surface getInputSurface() {
+        return inputSurface;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * Write what is buffered to {@code file}. Buffering continues while the file is written.
+     */
+    void save(File file, SaveListener listener) {
+        handler.post(() -> {
+            if (released || failed || outputFormat == null || ring.size() == 0) {
+                Map<String, Object> metrics = new HashMap<>();
+                mainHandler.post(() -> listener.onReplaySaved(null, "Nothing buffered yet", metrics));
+                return;
+            }
+            EncodedRing.Chunk chunk;
+            try {
+                chunk = new EncodedRing.Chunk(Math.max(CHUNK_BYTES, ring.getLargestSampleBytes()), CHUNK_SAMPLES);
+            } catch (OutOfMemoryError e) {
+                Map<String, Object> metrics = new HashMap<>();
+                mainHandler.post(() -> listener.onReplaySaved(null, "Not enough memory to save the replay", metrics));
+                return;
+            }
+            // the clip ends with what is buffered now, later samples are left out
+            long fromSequence = ring.getFirstSequence();
+            long endSequence = ring.getEndSequence();
+            MediaFormat format = outputFormat;
+            writer.execute(() -> write(file, format, fromSequence, endSequence, chunk, listener));
+        });
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        // read off the encoder thread, good enough for reporting
+        metrics.put("windowSeconds", windowSeconds);
+        metrics.put("bufferedMs", ring.getDurationUs() / 1000);
+        metrics.put("bufferedBytes", ring.getUsedBytes());
+        metrics.put("samples", ring.getAddedCount());
+        metrics.put("evicted", ring.getEvictedCount());
+        metrics.put("rejected", ring.getRejectedCount());
+        return metrics;
+    }
+
+    /**
+     * Stop encoding. The fanout must no longer draw into {@link #getInputSurface()}; clips being
+     * written are finished.
+     */
+    void release() {
+        handler.post(() -> {
+            if (released) {
+                return;
+            }
+            released = true;
+            Log.d(TAG, "Replay buffer: " + getMetrics());
+            try {
+                encoder.stop();
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Encoder stop failed", e);
+            }
+            encoder.release();
+            inputSurface.release();
+            // the ring is left intact for clips still being written, they copy from it directly now
+            writer.shutdown();
+            thread.quitSafely();
+        });
+    }
+
+    private void write(File file, MediaFormat format, long fromSequence, long endSequence,
+                       EncodedRing.Chunk chunk, SaveListener listener) {
+        long startedAtMs = SystemClock.elapsedRealtime();
+        String error = null;
+        MediaMuxer muxer = null;
+        int frames = 0;
+        long bytes = 0;
+        long copyNs = 0;
+        long firstPtsUs = 0;
+        long lastPtsUs = 0;
+        try {
+            muxer = new MediaMuxer(file.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            int track = muxer.addTrack(format);
+            muxer.start();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            long next = fromSequence;
+            while (next < endSequence) {
+                long copyStartNs = System.nanoTime();
+                int copied = copyChunk(next, endSequence, chunk);
+                copyNs += System.nanoTime() - copyStartNs;
+                if (copied < 0) {
+                    error = "Replay was overwritten while saving";
+                    break;
+                }
+                if (frames == 0) {
+                    firstPtsUs = chunk.ptsUs[0];
+                }
+                for (int i = 0; i < copied; i++) {
+                    info.set(0, chunk.sizes[i], chunk.ptsUs[i] - firstPtsUs,
+                            chunk.keyFrames[i] ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+                    muxer.writeSampleData(track, chunk.sample(i), info);
+                    bytes += chunk.sizes[i];
+                }
+                lastPtsUs = chunk.ptsUs[copied - 1];
+                frames += copied;
+                next += copied;
+            }
+            if (error == null) {
+                muxer.stop();
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not write replay", e);
+            error = "Could not write replay: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted while writing replay";
+        } finally {
+            if (muxer != null) {
+                try {
+                    muxer.release();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Muxer release failed", e);
+                }
+            }
+        }
+        if (error != null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("frames", frames);
+        metrics.put("bytes", bytes);
+        metrics.put("durationMs", (lastPtsUs - firstPtsUs) / 1000);
+        metrics.put("copyMs", copyNs / 1_000_000.0);
+        metrics.put("writeMs", SystemClock.elapsedRealtime() - startedAtMs);
+        String path = error == null ? file.getAbsolutePath() : null;
+        String failure = error;
+        Log.d(TAG, "Replay saved: " + path + " " + metrics);
+        mainHandler.post(() -> listener.onReplaySaved(path, failure, metrics));
+    }
+
+    /**
+     * Copy the next samples into {@code chunk} on the encoder thread, which owns the ring.
+     *
+     * @return how many samples were copied, -1 if they were evicted before they could be
+     */
+    private int copyChunk(long fromSequence, long endSequence, EncodedRing.Chunk chunk)
+            throws InterruptedException {
+        FutureTask<Integer> task = new FutureTask<>(() -> ring.copyTo(fromSequence, endSequence, chunk));
+        if (!handler.post(task)) {
+            // released: the encoder thread is gone and nothing writes to the ring anymore
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private final MediaCodec.Callback callback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            // fed through the input surface
+        }
+
+        @Override
+        public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index, @NonNull MediaCodec.BufferInfo info) {
+            if (released || failed) {
+                return;
+            }
+            ByteBuffer buffer = codec.getOutputBuffer(index);
+            boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+            if (buffer != null && info.size > 0 && !config) {
+                buffer.position(info.offset);
+                buffer.limit(info.offset + info.size);
+                ring.add(buffer, info.presentationTimeUs, (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0);
+            }
+            codec.releaseOutputBuffer(index, false);
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, "Encoder error, replay buffering stopped", e);
+            failed = true;
+            ring.clear();
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+            // carries the parameter sets every clip needs
+            outputFormat = format;
+            ring.clear();
+        }
+    };
+}
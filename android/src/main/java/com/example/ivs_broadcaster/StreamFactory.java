@@ -8,18 +8,25 @@ import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.StandardMessageCodec;
 import io.flutter.plugin.platform.PlatformView;
 import io.flutter.plugin.platform.PlatformViewFactory;
+import io.flutter.view.TextureRegistry;
 
 public class StreamFactory extends PlatformViewFactory {
     private final BinaryMessenger messenger;
+    private final TextureRegistry textureRegistry;
+    private final DeepAREngine deepAREngine;
+    private final ViewChannelRegistry channels;
 
-    public StreamFactory(BinaryMessenger messenger) {
+    public StreamFactory(BinaryMessenger messenger, TextureRegistry textureRegistry, DeepAREngine deepAREngine) {
         super(StandardMessageCodec.INSTANCE);
         this.messenger = messenger;
+        this.textureRegistry = textureRegistry;
+        this.deepAREngine = deepAREngine;
+        this.channels = new ViewChannelRegistry(messenger, "ivs_broadcaster");
     }
 
     @NonNull
     @Override
     public PlatformView create(Context context, int id, Object o) {
-        return (PlatformView) new StreamView(context, messenger);
+        return (PlatformView) new StreamView(context, messenger, textureRegistry, channels, id, deepAREngine, o);
     }
 }
\ No newline at end of file
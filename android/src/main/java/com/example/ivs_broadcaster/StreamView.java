@@ -6,8 +6,11 @@ import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.graphics.Bitmap;
 import android.media.Image;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.Size;
@@ -21,8 +24,8 @@ import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.UseCase;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.content.ContextCompat;
 import androidx.lifecycle.Lifecycle;
@@ -30,6 +33,7 @@ import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LifecycleRegistry;
 
 import com.amazonaws.ivs.broadcast.AudioDevice;
+import com.amazonaws.ivs.broadcast.CustomAudioSource;
 import com.amazonaws.ivs.broadcast.BroadcastConfiguration;
 import com.amazonaws.ivs.broadcast.BroadcastException;
 import com.amazonaws.ivs.broadcast.BroadcastSession;
@@ -37,20 +41,20 @@ import com.amazonaws.ivs.broadcast.Device;
 import com.amazonaws.ivs.broadcast.ImageDevice;
 import com.amazonaws.ivs.broadcast.Presets;
 import com.amazonaws.ivs.broadcast.SurfaceSource;
+import com.amazonaws.ivs.broadcast.TransmissionStats;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.gson.Gson;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import ai.deepar.ar.ARErrorType;
-import ai.deepar.ar.AREventListener;
-import ai.deepar.ar.CameraResolutionPreset;
 import ai.deepar.ar.DeepAR;
 import ai.deepar.ar.DeepARImageFormat;
 import io.flutter.plugin.common.EventChannel;
@@ -58,14 +62,17 @@ import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.platform.PlatformView;
+import io.flutter.view.TextureRegistry;
 
-public class StreamView implements PlatformView, MethodChannel.MethodCallHandler, EventChannel.StreamHandler, AREventListener, LifecycleOwner {
+public class StreamView implements PlatformView, MethodChannel.MethodCallHandler, ViewChannelRegistry.EventSinkListener, DeepAREngine.Holder, LifecycleOwner {
 
     private static final String TAG = "StreamView";
 
     // Constants
-    private static final int NUMBER_OF_BUFFERS = 2;
     private static final boolean useExternalCameraTexture = false;
+    private static final long METRICS_INTERVAL_MS = 5000;
+    private static final long DEFAULT_STATS_INTERVAL_MS = 1000;
+    private static final long MIN_STATS_INTERVAL_MS = 100;
 
     // Lifecycle
     private LifecycleRegistry lifecycleRegistry;
@@ -86,6 +93,20 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
     private static final String METHOD_STOP_VIDEO_CAPTURE = "stopVideoCapture";
     private static final String METHOD_SEND_TIME_METADATA = "sendTimeMetaData";
     private static final String METHOD_SWITCH_EFFECT = "switchEffect"; // New for Flutter control
+    private static final String METHOD_GET_AVAILABLE_EFFECTS = "getAvailableEffects";
+    private static final String METHOD_GET_EFFECT_METRICS = "getEffectMetrics";
+    private static final String METHOD_SET_TARGET_FPS = "setTargetFps";
+    private static final String METHOD_GET_TARGET_FPS = "getTargetFps";
+    private static final String METHOD_GET_PIPELINE_METRICS = "getPipelineMetrics";
+    private static final String METHOD_SET_STATS_INTERVAL = "setStatsInterval";
+    private static final String METHOD_GET_PREVIEW_TEXTURE = "getPreviewTexture";
+    private static final String METHOD_GET_METADATA_METRICS = "getMetadataMetrics";
+    private static final String METHOD_SET_METADATA_BATCHING = "setMetadataBatching";
+    private static final String METHOD_SET_REPLAY_WINDOW = "setReplayWindow";
+    private static final String METHOD_SAVE_REPLAY = "saveReplay";
+    private static final String METHOD_PUSH_AUDIO = "pushAudio";
+    private static final String METHOD_SET_APP_AUDIO_GAIN = "setAppAudioGain";
+    private static final String METHOD_GET_AUDIO_METRICS = "getAudioMetrics";
 
     // Argument keys
     private static final String ARG_IMGSET = "imgset";
@@ -97,43 +118,119 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
     private static final String ARG_TYPE = "type";
     private static final String ARG_SECONDS = "seconds";
     private static final String ARG_EFFECT = "effect"; // New for Flutter effect switching
+    private static final String ARG_INGEST_MODE = "ingestMode";
+    private static final String ARG_EXTRACT_EFFECTS = "extractEffects";
+    private static final String ARG_FPS = "fps";
+    private static final String ARG_INTERVAL_MS = "intervalMs";
+    private static final String ARG_PREVIEW_MODE = "previewMode";
+    private static final String ARG_METADATA = "metadata";
+    private static final String ARG_KEY = "key";
+    private static final String ARG_ENABLED = "enabled";
+    private static final String ARG_CUSTOM_AUDIO = "customAudio";
+    private static final String ARG_PCM = "pcm";
+    private static final String ARG_GAIN = "gain";
+    private static final String PREVIEW_MODE_TEXTURE = "texture";
 
     // UI & context
     private final LinearLayout layout;
     private final Context context;
     private final Handler mainHandler;
+    // texture preview mode: Flutter draws this texture and the layout stays empty
+    private final TextureRegistry.SurfaceTextureEntry previewTexture;
+    private Surface previewSurface;
 
     // DeepAR
+    private final DeepAREngine deepAREngine;
     private DeepAR deepAR;
-    private ArrayList<String> effects;
+    private final EffectManager effectManager;
+    private String currentEffect = EffectManager.NONE;
+    private boolean deepARSurfaceAttached = false;
 
     // Camera
+    // the bypass path hands the camera's unmirrored buffers straight to the broadcast, so DeepAR
+    // gets them unmirrored too; otherwise toggling an effect would flip the image viewers see
+    private static final boolean MIRROR_DEEPAR_INPUT = false;
     private CameraType defaultCameraType = CameraType.FRONT;
     private ARSurfaceProvider surfaceProvider = null;
+    // set while the camera feeds the broadcast surface directly because no effect is active
+    private boolean bypassActive = false;
+    private boolean bypassSurfaceInUse = false;
+    // elapsedRealtime of a pending camera switch, 0 when none is in progress
+    private volatile long cameraSwitchStartedAt = 0;
+    // bumped for every ImageAnalysis binding, the switch ends on the first frame of a later one
+    private volatile int cameraBindGeneration = 0;
+    private volatile int cameraSwitchFromGeneration = 0;
     private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
-    private ByteBuffer[] buffers;
-    private int currentBuffer = 0;
+    // only this view's use cases, other views bind their own to the same provider
+    private UseCase[] boundUseCases = new UseCase[0];
+    private final IngestMode ingestMode;
+    private final FramePool framePool = new FramePool(FramePool.depthForQueue(CapturePipeline.DEFAULT_QUEUE_CAPACITY));
+    private final FrameRateGovernor frameRateGovernor = new FrameRateGovernor();
+    // replaced per session, read by getFrameRateInfo from the main thread
+    private volatile BitrateController bitrateController;
+    private final NetworkHistory networkHistory;
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private final RenderTracker renderTracker = new RenderTracker(pipelineMetrics, frameRateGovernor);
+    private CapturePipeline capturePipeline;
+    // only touched on the capture pipeline's submission thread while it runs
+    private FramePool.Frame inFlightFrame;
 
     // Broadcast
     private BroadcastSession broadcastSession;
     private AudioDevice audioDevice;
+    // set instead of audioDevice when the preview was started with custom audio
+    private AudioPipeline audioPipeline;
     private boolean isMuted = false;
     private SurfaceSource surfaceSource;
     private Surface surface;
+    // in texture preview mode everything rendered for the broadcast goes through here first
+    private SurfaceFanout fanout;
     private String streamUrl;
     private String streamKey;
     private String quality;
+    private QualityProfile profile = QualityProfile.P720;
+    private QualityProfile boundProfile;
     private Boolean autoReconnect;
     private Device.Descriptor currentCamera;
     private int width;
     private int height;
 
     // Event handling
-    private EventChannel.EventSink eventSink;
+    private final ViewChannelRegistry channels;
+    private final int viewId;
+    private final EventDispatcher eventDispatcher;
+    private final BroadcastStatsAggregator statsAggregator = new BroadcastStatsAggregator();
+    private final AtomicBoolean statsFlushScheduled = new AtomicBoolean(false);
+    private volatile long statsIntervalMs = DEFAULT_STATS_INTERVAL_MS;
+
+    // Timed metadata, sent from the main thread at the rate IVS accepts
+    private final MetadataQueue metadataQueue = new MetadataQueue(
+            payload -> broadcastSession != null && broadcastSession.sendTimedMetadata(payload));
+    private boolean metadataSendScheduled = false;
+
+    // Local recording
+    private LocalRecorder recorder;
+    private final Runnable recordingTimeout = this::stopVideoCapture;
+    private ReplayBuffer replayBuffer;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
 
     @SuppressLint("ClickableViewAccessibility")
-    StreamView(Context context, BinaryMessenger messenger) {
+    StreamView(Context context, BinaryMessenger messenger, TextureRegistry textureRegistry,
+               ViewChannelRegistry channels, int viewId, DeepAREngine deepAREngine, Object args) {
         this.context = context;
+        this.channels = channels;
+        this.viewId = viewId;
+        this.deepAREngine = deepAREngine;
+        Map<?, ?> params = args instanceof Map ? (Map<?, ?>) args : Collections.emptyMap();
+        this.ingestMode = IngestMode.fromValue(params.get(ARG_INGEST_MODE));
+        this.effectManager = new EffectManager(context, Boolean.TRUE.equals(params.get(ARG_EXTRACT_EFFECTS)));
+        this.networkHistory = new NetworkHistory(context);
+        if (PREVIEW_MODE_TEXTURE.equals(params.get(ARG_PREVIEW_MODE))) {
+            previewTexture = textureRegistry.createSurfaceTexture();
+            previewSurface = new Surface(previewTexture.surfaceTexture());
+        } else {
+            previewTexture = null;
+        }
         layout = new LinearLayout(context);
         mainHandler = new Handler(Looper.getMainLooper());
 
@@ -141,11 +238,8 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
         lifecycleRegistry = new LifecycleRegistry(this);
         lifecycleRegistry.setCurrentState(Lifecycle.State.CREATED);
 
-        MethodChannel methodChannel = new MethodChannel(messenger, "ivs_broadcaster");
-        EventChannel eventChannel = new EventChannel(messenger, "ivs_broadcaster_event");
-
-        methodChannel.setMethodCallHandler(this);
-        eventChannel.setStreamHandler(this);
+        eventDispatcher = new EventDispatcher(messenger);
+        channels.register(this, viewId, this, this);
 
         layout.setOnTouchListener((v, event) -> {
 //            if (event.getAction() == MotionEvent.ACTION_DOWN) {
@@ -154,7 +248,6 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
             return true;
         });
 
-        initializeFilters();
         initializeDeepAR();
         
         // Set lifecycle to STARTED
@@ -165,45 +258,128 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
      * DeepAR & Filters
      * ----------------------------- */
     private void initializeDeepAR() {
-        deepAR = new DeepAR(context);
-        deepAR.setLicenseKey("eb7b033f1a6d9db5256545fdfdf319e32735116df5f7b7040b939486d018ac6c209f074ebe1afdf4");
-        deepAR.initialize(context, this);
+        deepAR = deepAREngine.acquire(this);
         setupCamera();
     }
 
-    private void initializeFilters() {
-        effects = new ArrayList<>();
-        effects.add("none");
-        effects.add("aviators.deepar");
-        effects.add("bigmouth.deepar");
-        effects.add("dalmatian.deepar");
-        effects.add("flowers.deepar");
-        effects.add("koala.deepar");
-        effects.add("lion.deepar");
-        effects.add("smallface.deepar");
-        effects.add("teddycigar.deepar");
-        effects.add("background_segmentation.deepar");
-        effects.add("tripleface.deepar");
-        effects.add("sleepingmask.deepar");
-        effects.add("fatify.deepar");
-        effects.add("mudmask.deepar");
-        effects.add("pug.deepar");
-        effects.add("twistedface.deepar");
-        effects.add("grumpycat.deepar");
-        effects.add("Helmet_PBR_V1.deepar");
-    }
-
-    private String getFilterPath(String filterName) {
-        if (filterName.equals("none")) {
-            return null;
+    @Override
+    public void onEngineRevoked() {
+        Log.d(TAG, "DeepAR taken over by another view");
+        detachDeepARSurface();
+        deepAR = null;
+        if (surfaceProvider != null) {
+            // it still feeds the engine's external texture
+            surfaceProvider.stop();
+            surfaceProvider = null;
+        }
+        if (!bypassActive) {
+            // nothing consumes the camera's frames now, leave it to the view that took over
+            rebindCamera();
+        }
+    }
+
+    @Override
+    public void onEngineRestored(DeepAR engine) {
+        Log.d(TAG, "DeepAR handed back");
+        deepAR = engine;
+        if (isEffectActive()) {
+            deepAR.switchEffect("effect", effectManager.beginSwitch(currentEffect));
+        }
+        if (!bypassActive) {
+            rebindCamera();
+            if (!bypassSurfaceInUse) {
+                attachDeepARSurface();
+            }
         }
-        return "file:///android_asset/" + filterName;
+    }
+
+    private boolean isEffectActive() {
+        return !EffectManager.NONE.equals(currentEffect) && effectManager.isAvailable(currentEffect);
     }
 
     private void switchEffect(String effectName) {
         if (deepAR != null) {
-            deepAR.switchEffect("effect", getFilterPath(effectName));
+            currentEffect = effectName;
+            deepAR.switchEffect("effect", effectManager.beginSwitch(effectName));
             Log.d(TAG, "Switched effect to: " + effectName);
+            updateBypass();
+        }
+    }
+
+    /* -----------------------------
+     * Effect Bypass
+     * ----------------------------- */
+    private boolean shouldBypass() {
+        return surfaceSource != null && !isEffectActive();
+    }
+
+    /**
+     * Route the camera either straight into the broadcast surface (no effect) or through the
+     * CPU copy and DeepAR (any effect). Only one producer may be connected to the surface at a
+     * time, so DeepAR is detached before the camera takes it over and re-attached only once
+     * the camera has released it.
+     */
+    private void updateBypass() {
+        boolean bypass = shouldBypass();
+        if (bypass == bypassActive) {
+            return;
+        }
+        bypassActive = bypass;
+        Log.d(TAG, bypass ? "No effect active, bypassing DeepAR" : "Effect active, routing through DeepAR");
+        if (bypass) {
+            detachDeepARSurface();
+        }
+        rebindCamera();
+        if (!bypass && !bypassSurfaceInUse) {
+            attachDeepARSurface();
+        }
+    }
+
+    /**
+     * @return the surface DeepAR or the bypassed camera draws into
+     */
+    private Surface getRenderSurface() {
+        return fanout != null ? fanout.getInputSurface() : surface;
+    }
+
+    private void attachDeepARSurface() {
+        if (deepAR != null && surface != null && !deepARSurfaceAttached) {
+            deepAR.setRenderSurface(getRenderSurface(), profile.getRenderWidth(), profile.getRenderHeight());
+            if (fanout != null) {
+                // DeepAR has no render callback, the fanout's input tells when a frame left it
+                fanout.setInputListener(deepARRenderListener);
+            } else {
+                // rendering straight into the broadcast surface goes unobserved, so drop an
+                // estimate that could no longer be corrected
+                frameRateGovernor.clearProcessing();
+            }
+            deepARSurfaceAttached = true;
+        }
+    }
+
+    private void detachDeepARSurface() {
+        if (deepAR != null && deepARSurfaceAttached) {
+            if (fanout != null) {
+                fanout.setInputListener(null);
+            }
+            renderTracker.clear();
+            deepAR.setRenderSurface(null, 0, 0);
+            deepARSurfaceAttached = false;
+        }
+    }
+
+    private final SurfaceFanout.InputListener deepARRenderListener =
+            () -> renderTracker.onRendered(System.nanoTime());
+
+    private void onBypassSurfaceReleased(Surface released) {
+        if (fanout != null && released == surface) {
+            // the camera moved on to the fanout, which can now draw into the broadcast surface
+            fanout.addOutput(surface, profile.getRenderWidth(), profile.getRenderHeight());
+            return;
+        }
+        bypassSurfaceInUse = false;
+        if (!bypassActive) {
+            attachDeepARSurface();
         }
     }
 
@@ -212,12 +388,16 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
      * ----------------------------- */
     private void setupCamera() {
         cameraProviderFuture = ProcessCameraProvider.getInstance(context);
+        rebindCamera();
+    }
+
+    private void rebindCamera() {
         cameraProviderFuture.addListener(new Runnable() {
             @Override
             public void run() {
                 try {
                     ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-                    bindImageAnalysis(cameraProvider);
+                    bindCamera(cameraProvider);
                 } catch (ExecutionException | InterruptedException e) {
                     Log.e(TAG, "Use case binding failed", e);
                 }
@@ -280,20 +460,61 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
         return orientation;
     }
 
-    private void bindImageAnalysis(@NonNull ProcessCameraProvider cameraProvider) {
-        CameraResolutionPreset cameraResolutionPreset = CameraResolutionPreset.P1920x1080;
-        int width;
-        int height;
+    private void bindCamera(@NonNull ProcessCameraProvider cameraProvider) {
+        if (bypassActive) {
+            bindBypassPreview(cameraProvider);
+        } else if (deepAR == null) {
+            Log.d(TAG, "DeepAR is held by another view, camera stays unbound until it is handed back");
+            unbindUseCases(cameraProvider);
+        } else {
+            bindImageAnalysis(cameraProvider);
+        }
+    }
+
+    private void bindUseCases(@NonNull ProcessCameraProvider cameraProvider, CameraSelector cameraSelector,
+                              UseCase... useCases) {
+        unbindUseCases(cameraProvider);
+        cameraProvider.bindToLifecycle(this, cameraSelector, useCases);
+        boundUseCases = useCases;
+    }
+
+    private void unbindUseCases(@NonNull ProcessCameraProvider cameraProvider) {
+        if (boundUseCases.length > 0) {
+            cameraProvider.unbind(boundUseCases);
+            boundUseCases = new UseCase[0];
+        }
+    }
+
+    private Size getTargetResolution() {
         int orientation = getScreenOrientation();
         if (orientation == ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE || orientation ==ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE){
-            width = cameraResolutionPreset.getWidth();
-            height =  cameraResolutionPreset.getHeight();
+            return new Size(profile.getCaptureWidth(), profile.getCaptureHeight());
+        }
+        return new Size(profile.getCaptureHeight(), profile.getCaptureWidth());
+    }
+
+    private void bindBypassPreview(@NonNull ProcessCameraProvider cameraProvider) {
+        boundProfile = profile;
+        CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(CameraType.fromValue(defaultCameraType)).build();
+        Preview preview = new Preview.Builder()
+                .setTargetResolution(getTargetResolution())
+                .build();
+        bypassSurfaceInUse = true;
+        if (fanout != null) {
+            Surface input = fanout.getInputSurface();
+            preview.setSurfaceProvider(new BypassSurfaceProvider(context, input,
+                    fanout::setRotation, () -> onBypassSurfaceReleased(input)));
         } else {
-            width = cameraResolutionPreset.getHeight();
-            height = cameraResolutionPreset.getWidth();
+            Surface broadcastSurface = surface;
+            preview.setSurfaceProvider(new BypassSurfaceProvider(context, surfaceSource,
+                    () -> onBypassSurfaceReleased(broadcastSurface)));
         }
+        bindUseCases(cameraProvider, cameraSelector, preview);
+    }
 
-        Size cameraResolution = new Size(width, height);
+    private void bindImageAnalysis(@NonNull ProcessCameraProvider cameraProvider) {
+        boundProfile = profile;
+        Size cameraResolution = getTargetResolution();
         CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(CameraType.fromValue(defaultCameraType)).build();
 
         if(useExternalCameraTexture) {
@@ -301,84 +522,382 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
                     .setTargetResolution(cameraResolution)
                     .build();
 
-            cameraProvider.unbindAll();
-            cameraProvider.bindToLifecycle(this, cameraSelector, preview);
+            bindUseCases(cameraProvider, cameraSelector, preview);
             if(surfaceProvider == null) {
                 surfaceProvider = new ARSurfaceProvider(context, deepAR);
             }
             preview.setSurfaceProvider(surfaceProvider);
-            surfaceProvider.setMirror(defaultCameraType == CameraType.FRONT);
+            surfaceProvider.setMirror(MIRROR_DEEPAR_INPUT);
         } else {
-            buffers = new ByteBuffer[NUMBER_OF_BUFFERS];
-            for (int i = 0; i < NUMBER_OF_BUFFERS; i++) {
-                buffers[i] = ByteBuffer.allocateDirect(width * height * 4);
-                buffers[i].order(ByteOrder.nativeOrder());
-                buffers[i].position(0);
+            if (capturePipeline == null) {
+                capturePipeline = new CapturePipeline(framePool, frameRateGovernor, pipelineMetrics, ingestMode, deepARSink);
             }
-
             ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                    .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888)
+                    .setOutputImageFormat(capturePipeline.getOutputImageFormat())
                     .setTargetResolution(cameraResolution)
                     .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                     .build();
-            imageAnalysis.setAnalyzer(ContextCompat.getMainExecutor(context), imageAnalyzer);
-            cameraProvider.unbindAll();
-            cameraProvider.bindToLifecycle(this, cameraSelector, imageAnalysis);
+            imageAnalysis.setAnalyzer(capturePipeline.getAnalyzerExecutor(),
+                    capturePipeline.analyzerFor(++cameraBindGeneration));
+            bindUseCases(cameraProvider, cameraSelector, imageAnalysis);
         }
     }
 
-    private ImageAnalysis.Analyzer imageAnalyzer = new ImageAnalysis.Analyzer() {
+    private final CapturePipeline.FrameSink deepARSink = new CapturePipeline.FrameSink() {
+        @Override
+        public void onFrame(@NonNull FramePool.Frame frame) {
+            DeepAR engine = deepAR;
+            if (engine == null) {
+                return;
+            }
+            // frames of the old camera may still be queued, only a later binding ends the switch
+            if (cameraSwitchStartedAt != 0 && frame.bindGeneration > cameraSwitchFromGeneration) {
+                onCameraSwitched();
+            }
+            frame.retain();
+            submitToDeepAR(engine, frame, false);
+            // DeepAR reads the buffer asynchronously, so the previous frame is only
+            // returned to the pool once the next one has been submitted
+            releaseInFlightFrame();
+            inFlightFrame = frame;
+        }
+
         @Override
-        public void analyze(@NonNull ImageProxy image) {
-            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
-            buffer.rewind();
-            buffers[currentBuffer].put(buffer);
-            buffers[currentBuffer].position(0);
-            if (deepAR != null) {
-                deepAR.receiveFrame(buffers[currentBuffer],
-                        image.getWidth(), image.getHeight(),
-                        image.getImageInfo().getRotationDegrees(),
-                        true,
-                        DeepARImageFormat.RGBA_8888,
-                        image.getPlanes()[0].getPixelStride()
-                );
+        public void onIdle() {
+            // keep the broadcast fed with the last good frame while the camera is switching
+            DeepAR engine = deepAR;
+            if (engine != null && inFlightFrame != null) {
+                submitToDeepAR(engine, inFlightFrame, true);
             }
-            currentBuffer = (currentBuffer + 1) % NUMBER_OF_BUFFERS;
-            image.close();
         }
     };
 
+    private void submitToDeepAR(DeepAR engine, FramePool.Frame frame, boolean repeat) {
+        frame.getBuffer().rewind();
+        // a repeated frame is as old as the camera switch, keep it out of the total
+        long origin = repeat ? 0 : (frame.captureNanos != 0 ? frame.captureNanos : frame.analyzedNanos);
+        renderTracker.onSubmitted(System.nanoTime(), origin);
+        engine.receiveFrame(frame.getBuffer(),
+                frame.width, frame.height,
+                frame.rotationDegrees,
+                MIRROR_DEEPAR_INPUT,
+                frame.ingestMode == IngestMode.YUV ? DeepARImageFormat.YUV_NV21 : DeepARImageFormat.RGBA_8888,
+                frame.pixelStride
+        );
+    }
+
+    private void releaseInFlightFrame() {
+        if (inFlightFrame != null) {
+            inFlightFrame.release();
+            inFlightFrame = null;
+        }
+    }
+
     /* -----------------------------
      * Broadcast Management
      * ----------------------------- */
-    private void startPreview(String url, String key, String quality, Boolean autoReconnect) {
+    private void startPreview(String url, String key, String quality, Boolean autoReconnect, Boolean customAudio) {
         this.streamUrl = url;
         this.streamKey = key;
         this.autoReconnect = autoReconnect;
         this.quality = quality;
-        BroadcastConfiguration config = Presets.Configuration.STANDARD_PORTRAIT;
-        config.mixer.slots =  new BroadcastConfiguration.Mixer.Slot[] {
-                BroadcastConfiguration.Mixer.Slot.with(slot -> {
-                    slot.setPreferredAudioInput(Device.Descriptor.DeviceType.MICROPHONE);
-                    slot.setPreferredVideoInput(Device.Descriptor.DeviceType.USER_IMAGE);
-                    slot.setName("custom");
-                    return slot;
-                }),
-        };
-        config.autoReconnect.setEnabled(autoReconnect);
-        broadcastSession = new BroadcastSession(context, broadcastListener, config, Presets.Devices.MICROPHONE(context));
-        for (Device device : broadcastSession.listAttachedDevices()) {
-            if (device.getDescriptor().type == Device.Descriptor.DeviceType.MICROPHONE) {
-                audioDevice = (AudioDevice) device;
+        this.profile = QualityProfile.forQuality(quality);
+        Log.d(TAG, "startPreview: " + profile);
+        frameRateGovernor.setEncoderFps(profile.getTargetFps());
+        BitrateController controller = new HysteresisBitrateController(profile, networkHistory.getRecentBitrate());
+        bitrateController = controller;
+        Log.i(TAG, "ABR " + controller.getCurrent());
+        // a history low enough to start below the profile's rate already caps the frame rate
+        applyNetworkFps(controller.getCurrent());
+        boolean useCustomAudio = Boolean.TRUE.equals(customAudio);
+        BroadcastConfiguration config = createConfiguration(profile, controller.getInitialBitrate(),
+                autoReconnect, useCustomAudio);
+        if (useCustomAudio) {
+            broadcastSession = new BroadcastSession(context, broadcastListener, config, null);
+            CustomAudioSource audioSource = broadcastSession.createAudioInputSource(AudioPipeline.CHANNELS,
+                    BroadcastConfiguration.AudioSampleRate.RATE_48000, AudioDevice.Format.INT16);
+            broadcastSession.getMixer().bind(audioSource, "custom");
+            if (audioPipeline != null) {
+                // the microphone can only be captured once
+                audioPipeline.release();
+            }
+            audioPipeline = new AudioPipeline(audioSource);
+            audioPipeline.setMuted(isMuted);
+        } else {
+            broadcastSession = new BroadcastSession(context, broadcastListener, config, Presets.Devices.MICROPHONE(context));
+            for (Device device : broadcastSession.listAttachedDevices()) {
+                if (device.getDescriptor().type == Device.Descriptor.DeviceType.MICROPHONE) {
+                    audioDevice = (AudioDevice) device;
+                }
             }
         }
         surfaceSource = broadcastSession.createImageInputSource();
         surfaceSource.setRotation(ImageDevice.Rotation.ROTATION_0);
         surface = surfaceSource.getInputSurface();
         broadcastSession.getMixer().bind(surfaceSource, "custom");
-        deepAR.setRenderSurface(surface, 720, 1280);
-        TextureView view = broadcastSession.getPreviewView(BroadcastConfiguration.AspectMode.FILL);
-        setImagePreviewView(view);
+        if (previewTexture != null) {
+            startFanout();
+        }
+        if (shouldBypass()) {
+            // rebinds the camera at the profile's size as well
+            updateBypass();
+        } else {
+            if (boundProfile != null && boundProfile != profile) {
+                // capture at the size the encoder keeps instead of scaling down later
+                rebindCamera();
+            }
+            attachDeepARSurface();
+        }
+        if (previewTexture == null) {
+            TextureView view = broadcastSession.getPreviewView(BroadcastConfiguration.AspectMode.FILL);
+            setImagePreviewView(view);
+        }
+    }
+
+    /* -----------------------------
+     * Texture Preview
+     * ----------------------------- */
+    /**
+     * Render into a {@link SurfaceFanout} that copies each frame to the broadcast surface and,
+     * in texture preview mode, to the Flutter preview texture. It is only started when there is
+     * more than the broadcast to feed, as it costs a full-frame copy plus its own GL thread; while
+     * it runs, its input also tells when DeepAR finished a frame.
+     */
+    private void startFanout() {
+        int renderWidth = profile.getRenderWidth();
+        int renderHeight = profile.getRenderHeight();
+        fanout = new SurfaceFanout(renderWidth, renderHeight);
+        if (!bypassSurfaceInUse) {
+            // otherwise the camera still draws into it and it is added once released
+            fanout.addOutput(surface, renderWidth, renderHeight);
+        }
+        if (previewTexture != null) {
+            previewTexture.surfaceTexture().setDefaultBufferSize(renderWidth, renderHeight);
+            fanout.addOutput(previewSurface, renderWidth, renderHeight);
+            Log.d(TAG, "Texture preview " + previewTexture.id() + " at " + renderWidth + "x" + renderHeight);
+        }
+    }
+
+    /**
+     * Move a running broadcast onto the fanout so more outputs can be fed from the same frames.
+     * It stays in place until the broadcast stops.
+     */
+    private void routeThroughFanout() {
+        if (fanout != null || surface == null) {
+            return;
+        }
+        detachDeepARSurface();
+        startFanout();
+        if (bypassActive) {
+            // the camera switches to the fanout input and then lets go of the broadcast surface
+            rebindCamera();
+        } else {
+            attachDeepARSurface();
+        }
+    }
+
+    private void releaseFanout() {
+        if (fanout != null) {
+            Log.d(TAG, "Fanout: " + fanout.getMetrics());
+            fanout.release();
+            fanout = null;
+        }
+    }
+
+    /* -----------------------------
+     * Local Recording
+     * ----------------------------- */
+    /**
+     * Record what is broadcast to a local MP4 for {@code seconds}, or until stopped if not
+     * positive.
+     *
+     * @return null once recording, otherwise why it could not start
+     */
+    private String captureVideo(Integer seconds) {
+        if (recorder != null) {
+            return "Already recording";
+        }
+        if (surface == null) {
+            return "Preview not started";
+        }
+        if (isThermallySevere()) {
+            return "Device is too hot to record";
+        }
+        File directory = new File(context.getCacheDir(), "recordings");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        File file = new File(directory, "ivs_" + System.currentTimeMillis() + ".mp4");
+        try {
+            recorder = new LocalRecorder(file, profile.getRenderWidth(), profile.getRenderHeight(),
+                    profile.getTargetFps(), profile.getInitialBitrate(), this::onRecordingFinished);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not start recording", e);
+            return "Could not start recording: " + e.getMessage();
+        }
+        routeThroughFanout();
+        fanout.addOutput(recorder.getInputSurface(), recorder.getWidth(), recorder.getHeight(), recorder);
+        if (seconds != null && seconds > 0) {
+            mainHandler.postDelayed(recordingTimeout, seconds * 1000L);
+        }
+        watchThermalStatus(true);
+        Map<Object, Object> event = new HashMap<>();
+        event.put("isRecording", true);
+        sendEvent(event);
+        return null;
+    }
+
+    private void stopVideoCapture() {
+        mainHandler.removeCallbacks(recordingTimeout);
+        if (recorder == null || recorder.isStopping()) {
+            return;
+        }
+        if (fanout != null) {
+            fanout.removeOutput(recorder.getInputSurface());
+        }
+        recorder.stop();
+    }
+
+    private void onRecordingFinished(String path, Map<String, Object> metrics) {
+        recorder = null;
+        watchThermalStatus(false);
+        Map<Object, Object> event = new HashMap<>();
+        event.put("isRecording", false);
+        event.put("videoPath", path);
+        event.put("recordingMetrics", metrics);
+        sendEvent(event);
+    }
+
+    private boolean isThermallySevere() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return false;
+        }
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null
+                && powerManager.getCurrentThermalStatus() >= PowerManager.THERMAL_STATUS_SEVERE;
+    }
+
+    // the live stream matters more than the local copy, so recording stops when the device overheats
+    private void watchThermalStatus(boolean watch) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) {
+            return;
+        }
+        if (watch && thermalListener == null) {
+            thermalListener = status -> {
+                if (status >= PowerManager.THERMAL_STATUS_SEVERE) {
+                    Log.w(TAG, "Thermal status " + status + ", stopping local recording");
+                    stopVideoCapture();
+                }
+            };
+            powerManager.addThermalStatusListener(thermalListener);
+        } else if (!watch && thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
+    }
+
+    /* -----------------------------
+     * Instant Replay
+     * ----------------------------- */
+    /**
+     * Keep the last {@code seconds} of the broadcast's video encoded in memory, or stop doing so
+     * if not positive. At most {@link ReplayBuffer#MAX_WINDOW_SECONDS} can be kept.
+     *
+     * @return null on success, otherwise why it could not start
+     */
+    private String setReplayWindow(Integer seconds) {
+        if (seconds == null || seconds <= 0) {
+            stopReplayBuffer();
+            return null;
+        }
+        if (seconds > ReplayBuffer.MAX_WINDOW_SECONDS) {
+            return "Replay window is limited to " + ReplayBuffer.MAX_WINDOW_SECONDS + " seconds";
+        }
+        if (surface == null) {
+            return "Preview not started";
+        }
+        if (replayBuffer != null && replayBuffer.getWindowSeconds() == seconds) {
+            return null;
+        }
+        stopReplayBuffer();
+        try {
+            replayBuffer = new ReplayBuffer(profile.getRenderWidth(), profile.getRenderHeight(),
+                    profile.getTargetFps(), profile.getInitialBitrate(), seconds);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not start replay buffer", e);
+            return "Could not start replay buffer: " + e.getMessage();
+        }
+        routeThroughFanout();
+        fanout.addOutput(replayBuffer.getInputSurface(), replayBuffer.getWidth(), replayBuffer.getHeight());
+        return null;
+    }
+
+    private void stopReplayBuffer() {
+        if (replayBuffer == null) {
+            return;
+        }
+        if (fanout != null) {
+            fanout.removeOutput(replayBuffer.getInputSurface());
+        }
+        replayBuffer.release();
+        replayBuffer = null;
+    }
+
+    private void saveReplay(MethodChannel.Result result) {
+        if (replayBuffer == null) {
+            result.error("REPLAY_FAILED", "Replay buffer not enabled", null);
+            return;
+        }
+        File directory = new File(context.getCacheDir(), "replays");
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        File file = new File(directory, "ivs_replay_" + System.currentTimeMillis() + ".mp4");
+        replayBuffer.save(file, (path, error, metrics) -> {
+            if (path == null) {
+                result.error("REPLAY_FAILED", error, metrics);
+                return;
+            }
+            Map<String, Object> reply = new HashMap<>(metrics);
+            reply.put("path", path);
+            result.success(reply);
+        });
+    }
+
+    private Map<String, Object> getPreviewTextureInfo() {
+        if (previewTexture == null) {
+            return null;
+        }
+        Map<String, Object> info = new HashMap<>();
+        info.put("textureId", previewTexture.id());
+        info.put("width", profile.getRenderWidth());
+        info.put("height", profile.getRenderHeight());
+        return info;
+    }
+
+    private static BroadcastConfiguration createConfiguration(QualityProfile profile, int initialBitrate,
+                                                              Boolean autoReconnect, boolean customAudio) {
+        return BroadcastConfiguration.with(config -> {
+            config.video.setSize(profile.getVideoWidth(), profile.getVideoHeight());
+            config.video.setTargetFramerate(profile.getTargetFps());
+            config.video.setInitialBitrate(initialBitrate);
+            config.video.setMinBitrate(profile.getMinBitrate());
+            config.video.setMaxBitrate(profile.getMaxBitrate());
+            config.mixer.slots = new BroadcastConfiguration.Mixer.Slot[] {
+                    BroadcastConfiguration.Mixer.Slot.with(slot -> {
+                        slot.setPreferredAudioInput(customAudio
+                                ? Device.Descriptor.DeviceType.USER_AUDIO
+                                : Device.Descriptor.DeviceType.MICROPHONE);
+                        slot.setPreferredVideoInput(Device.Descriptor.DeviceType.USER_IMAGE);
+                        slot.setName("custom");
+                        return slot;
+                    }),
+            };
+            config.autoReconnect.setEnabled(Boolean.TRUE.equals(autoReconnect));
+            return config;
+        });
     }
 
     private void startBroadcast() {
@@ -391,6 +910,24 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
 
     private void stopBroadcast() {
         if (broadcastSession != null) {
+            // the recorder and replay buffer leave the fanout before it is released
+            stopVideoCapture();
+            stopReplayBuffer();
+            detachDeepARSurface();
+            surfaceSource = null;
+            surface = null;
+            updateBypass();
+            releaseFanout();
+            mainHandler.removeCallbacks(metadataSender);
+            metadataSendScheduled = false;
+            Log.d(TAG, "Timed metadata: " + metadataQueue.getMetrics());
+            metadataQueue.clear();
+            if (audioPipeline != null) {
+                audioPipeline.release();
+                audioPipeline = null;
+            }
+            audioDevice = null;
+            recordNetworkHistory();
             broadcastSession.stop();
             broadcastSession.release();
             broadcastSession = null;
@@ -414,12 +951,25 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
     }
 
     private void toggleMute() {
-        if (audioDevice != null) {
+        if (audioPipeline != null) {
+            // stops capturing instead of encoding silence from a live microphone
+            isMuted = !isMuted;
+            audioPipeline.setMuted(isMuted);
+        } else if (audioDevice != null) {
             isMuted = !isMuted;
             audioDevice.setGain(isMuted ? 0.0f : 1.0f);
         }
     }
 
+    private Map<String, Object> getAudioMetrics() {
+        if (audioPipeline != null) {
+            return audioPipeline.getMetrics();
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("muted", isMuted);
+        return metrics;
+    }
+
     /* -----------------------------
      * TODO: To Be Implemented
      * ----------------------------- */
@@ -436,26 +986,136 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
 
     }
 
-    private void sendMetaData(String metadata) {
-        broadcastSession.sendTimedMetadata(metadata);
+    /* -----------------------------
+     * Timed Metadata
+     * ----------------------------- */
+    private MetadataQueue.Result sendMetaData(String metadata, String key) {
+        MetadataQueue.Result result = metadataQueue.offer(metadata, key, SystemClock.elapsedRealtime());
+        if (result == MetadataQueue.Result.REJECTED_EMPTY || result == MetadataQueue.Result.REJECTED_TOO_LARGE) {
+            Log.w(TAG, "Timed metadata rejected: " + result);
+        }
+        scheduleMetadataSend();
+        return result;
+    }
+
+    private void scheduleMetadataSend() {
+        if (metadataSendScheduled) {
+            return;
+        }
+        long delayMs = metadataQueue.nextSendDelayMs(SystemClock.elapsedRealtime());
+        if (delayMs >= 0) {
+            metadataSendScheduled = true;
+            mainHandler.postDelayed(metadataSender, delayMs);
+        }
     }
 
-    private  void changeCamera(String type) {
-        defaultCameraType = CameraType.fromValue(type);
+    private final Runnable metadataSender = new Runnable() {
+        @Override
+        public void run() {
+            metadataSendScheduled = false;
+            if (broadcastSession == null) {
+                metadataQueue.clear();
+                return;
+            }
+            metadataQueue.poll(SystemClock.elapsedRealtime());
+            scheduleMetadataSend();
+        }
+    };
+
+    /**
+     * Switch cameras without blocking the caller. The existing capture pipeline and frame pool
+     * are reused, so buffers are only reallocated if the new camera delivers larger frames, and
+     * the last frame of the old camera is repeated until the new one delivers.
+     */
+    private void changeCamera(String type) {
         CameraType cameraType = CameraType.fromValue(type);
         Log.d(TAG, "changeCamera: " + cameraType);
-        if (cameraType != null  ) {
-            ProcessCameraProvider cameraProvider = null;
-            try {
-                cameraProvider = cameraProviderFuture.get();
-                cameraProvider.unbindAll();
-                bindImageAnalysis(cameraProvider);
-            } catch (ExecutionException | InterruptedException e) {
-                Log.e(TAG, "Error changing camera", e);
-            }
-        } else {
-            Log.w(TAG, "Invalid camera type: " + type);
+        if (cameraType == defaultCameraType) {
+            return;
+        }
+        defaultCameraType = cameraType;
+        cameraSwitchFromGeneration = cameraBindGeneration;
+        cameraSwitchStartedAt = SystemClock.elapsedRealtime();
+        if (capturePipeline != null && !bypassActive) {
+            capturePipeline.setRepeatLastFrame(true);
+        }
+        rebindCamera();
+        if (bypassActive) {
+            // the camera draws straight into the broadcast surface, there is no first frame to wait for
+            onCameraSwitched();
+        }
+    }
+
+    private void onCameraSwitched() {
+        long startedAt = cameraSwitchStartedAt;
+        cameraSwitchStartedAt = 0;
+        if (capturePipeline != null) {
+            capturePipeline.setRepeatLastFrame(false);
+        }
+        long latency = SystemClock.elapsedRealtime() - startedAt;
+        Log.d(TAG, "Camera switched in " + latency + " ms");
+        Map<Object, Object> event = new HashMap<>();
+        event.put("cameraSwitchMs", latency);
+        sendEvent(event);
+    }
+
+    /* -----------------------------
+     * Adaptive Bitrate
+     * ----------------------------- */
+    /**
+     * The session's bitrate bounds are fixed once it is configured, so a decision's bitrate is
+     * advisory and only takes effect through the next session's initial bitrate. Its frame rate
+     * caps the frames fed to DeepAR right away; while effects are bypassed the camera feeds the
+     * encoder directly and nothing is capped until an effect is applied again.
+     */
+    private void onNetworkStats(TransmissionStats stats) {
+        BitrateController controller = bitrateController;
+        if (controller == null) {
+            return;
         }
+        BitrateController.Decision decision = controller.onTransmissionStats(SystemClock.elapsedRealtime(),
+                stats.measuredBitrate, stats.recommendedBitrate, stats.rtt);
+        if (decision != null) {
+            Log.i(TAG, "ABR " + decision + ", measured " + Math.round(stats.measuredBitrate)
+                    + ", rtt " + Math.round(stats.rtt) + " ms, health " + stats.networkHealth);
+            applyNetworkFps(decision);
+        }
+    }
+
+    private void applyNetworkFps(BitrateController.Decision decision) {
+        frameRateGovernor.setNetworkFps(decision.fps < profile.getTargetFps() ? decision.fps : 0);
+    }
+
+    private void recordNetworkHistory() {
+        BitrateController controller = bitrateController;
+        if (controller == null) {
+            return;
+        }
+        // what the network carried, not the ceiling: the ceiling starts below the history, so
+        // recording it would lower the estimate a little with every session
+        long sustained = controller.getSustainedBitrate();
+        Log.i(TAG, "ABR session ended at " + controller.getCurrent() + ", sustained " + sustained);
+        networkHistory.record(sustained);
+        bitrateController = null;
+        frameRateGovernor.setNetworkFps(0);
+    }
+
+    private Map<String, Object> getFrameRateInfo() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("targetFps", frameRateGovernor.getTargetFps());
+        info.put("effectiveFps", frameRateGovernor.getEffectiveFps());
+        info.put("processingMs", frameRateGovernor.getAverageProcessingMs());
+        info.put("shedFrames", frameRateGovernor.getShedCount());
+        BitrateController controller = bitrateController;
+        if (controller != null) {
+            BitrateController.Decision decision = controller.getCurrent();
+            info.put("bitrateCeiling", decision.bitrateCeiling);
+            info.put("networkFps", decision.fps);
+            // the cap only reaches the AR path, the bypassed camera runs at the encoder rate
+            info.put("networkFpsApplied", !bypassActive && decision.fps < profile.getTargetFps());
+            info.put("abrReason", decision.reason);
+        }
+        return info;
     }
 
     /* -----------------------------
@@ -465,7 +1125,7 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
     public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
         switch (call.method) {
             case METHOD_START_PREVIEW:
-                startPreview(call.argument(ARG_IMGSET), call.argument(ARG_STREAM_KEY), call.argument(ARG_QUALITY), call.argument(ARG_AUTO_RECONNECT));
+                startPreview(call.argument(ARG_IMGSET), call.argument(ARG_STREAM_KEY), call.argument(ARG_QUALITY), call.argument(ARG_AUTO_RECONNECT), call.argument(ARG_CUSTOM_AUDIO));
                 result.success(true);
                 break;
             case METHOD_START_BROADCAST:
@@ -484,8 +1144,14 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
                 result.success(isMuted);
                 break;
             case METHOD_SEND_TIME_METADATA:
-                sendMetaData(call.argument("metadata"));
-                result.success(true);
+                result.success(sendMetaData(call.argument(ARG_METADATA), call.argument(ARG_KEY)).getValue());
+                break;
+            case METHOD_GET_METADATA_METRICS:
+                result.success(metadataQueue.getMetrics());
+                break;
+            case METHOD_SET_METADATA_BATCHING:
+                metadataQueue.setBatching(Boolean.TRUE.equals(call.argument(ARG_ENABLED)));
+                result.success(null);
                 break;
             case METHOD_GET_CAMERA_ZOOM_FACTOR:
                 result.success(getCameraZoomFactor());
@@ -506,6 +1172,76 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
                 switchEffect(call.argument(ARG_EFFECT));
                 result.success("Effect Switched");
                 break;
+            case METHOD_GET_AVAILABLE_EFFECTS:
+                result.success(new ArrayList<>(effectManager.getEffects()));
+                break;
+            case METHOD_GET_EFFECT_METRICS:
+                result.success(effectManager.getMetrics());
+                break;
+            case METHOD_SET_TARGET_FPS:
+                Integer fps = call.argument(ARG_FPS);
+                frameRateGovernor.setTargetFps(fps == null ? 0 : fps);
+                result.success(getFrameRateInfo());
+                break;
+            case METHOD_GET_TARGET_FPS:
+                result.success(getFrameRateInfo());
+                break;
+            case METHOD_GET_PIPELINE_METRICS:
+                result.success(pipelineMetrics.snapshot(false));
+                break;
+            case METHOD_SET_STATS_INTERVAL:
+                Number intervalMs = call.argument(ARG_INTERVAL_MS);
+                statsIntervalMs = intervalMs == null
+                        ? DEFAULT_STATS_INTERVAL_MS
+                        : Math.max(MIN_STATS_INTERVAL_MS, intervalMs.longValue());
+                result.success(statsIntervalMs);
+                break;
+            case METHOD_CAPTURE_VIDEO:
+                String error = captureVideo(call.argument(ARG_SECONDS));
+                if (error == null) {
+                    result.success(null);
+                } else {
+                    result.error("RECORDING_FAILED", error, null);
+                }
+                break;
+            case METHOD_STOP_VIDEO_CAPTURE:
+                stopVideoCapture();
+                result.success(null);
+                break;
+            case METHOD_SET_REPLAY_WINDOW:
+                String replayError = setReplayWindow(call.argument(ARG_SECONDS));
+                if (replayError == null) {
+                    result.success(null);
+                } else {
+                    result.error("REPLAY_FAILED", replayError, null);
+                }
+                break;
+            case METHOD_PUSH_AUDIO:
+                byte[] pcm = call.argument(ARG_PCM);
+                if (audioPipeline == null) {
+                    result.error("NO_CUSTOM_AUDIO", "Start the preview with customAudio to push audio", null);
+                } else if (pcm == null) {
+                    result.error("INVALID_ARGUMENT", "pcm is required", null);
+                } else {
+                    result.success(audioPipeline.push(pcm));
+                }
+                break;
+            case METHOD_SET_APP_AUDIO_GAIN:
+                Number gain = call.argument(ARG_GAIN);
+                if (audioPipeline != null && gain != null) {
+                    audioPipeline.setAppGain(gain.floatValue());
+                }
+                result.success(null);
+                break;
+            case METHOD_GET_AUDIO_METRICS:
+                result.success(getAudioMetrics());
+                break;
+            case METHOD_SAVE_REPLAY:
+                saveReplay(result);
+                break;
+            case METHOD_GET_PREVIEW_TEXTURE:
+                result.success(getPreviewTextureInfo());
+                break;
             default:
                 result.notImplemented();
                 break;
@@ -516,22 +1252,61 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
      * Event Handling
      * ----------------------------- */
     private void sendEvent(Map<Object, Object> event) {
-        if (eventSink != null) {
-            Log.d(TAG, "Sending Event: " + event.toString());
-            mainHandler.post(() -> eventSink.success(new Gson().toJson(event)));
-        }
+        eventDispatcher.post(event);
     }
 
     @Override
-    public void onListen(Object arguments, EventChannel.EventSink events) {
-        this.eventSink = events;
+    public void onEventSinkChanged(String channel, EventChannel.EventSink sink) {
+        // events go straight through the messenger, the sink only tells us whether to send
+        boolean wasListening = eventDispatcher.isListening();
+        eventDispatcher.setListening(channel, sink != null);
+        if (eventDispatcher.isListening() == wasListening) {
+            return;
+        }
+        mainHandler.removeCallbacks(metricsReporter);
+        if (eventDispatcher.isListening()) {
+            mainHandler.postDelayed(metricsReporter, METRICS_INTERVAL_MS);
+            if (statsAggregator.isDirty()) {
+                scheduleStatsFlush();
+            }
+        } else {
+            mainHandler.removeCallbacks(statsFlush);
+            statsFlushScheduled.set(false);
+        }
     }
 
-    @Override
-    public void onCancel(Object arguments) {
-        this.eventSink = null;
+    // the SDK reports stats up to 30 times a second; only the latest values are sent per interval
+    private void scheduleStatsFlush() {
+        if (eventDispatcher.isListening() && statsFlushScheduled.compareAndSet(false, true)) {
+            mainHandler.postDelayed(statsFlush, statsIntervalMs);
+        }
     }
 
+    private final Runnable statsFlush = new Runnable() {
+        @Override
+        public void run() {
+            statsFlushScheduled.set(false);
+            Map<Object, Object> event = statsAggregator.drain();
+            if (event != null) {
+                eventDispatcher.postLatest(event);
+            }
+        }
+    };
+
+    // pushes a per-stage latency snapshot for the last interval while Flutter is listening
+    private final Runnable metricsReporter = new Runnable() {
+        @Override
+        public void run() {
+            if (!eventDispatcher.isListening()) {
+                return;
+            }
+            if (capturePipeline != null && !bypassActive) {
+                eventDispatcher.postLatest("pipelineMetrics", pipelineMetrics.snapshot(true));
+            }
+            mainHandler.postDelayed(this, METRICS_INTERVAL_MS);
+        }
+    };
+
     /* -----------------------------
      * View Lifecycle
      * ----------------------------- */
@@ -544,12 +1319,18 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
     public void dispose() {
         // Set lifecycle to DESTROYED
         lifecycleRegistry.setCurrentState(Lifecycle.State.DESTROYED);
+        mainHandler.removeCallbacks(metricsReporter);
+        mainHandler.removeCallbacks(statsFlush);
+        eventDispatcher.close();
+        channels.unregister(this, viewId);
+        Log.d(TAG, "Events: sent=" + eventDispatcher.getSentCount()
+                + " coalesced=" + eventDispatcher.getCoalescedCount());
         
         stopBroadcast();
         ProcessCameraProvider cameraProvider = null;
         try {
             cameraProvider = cameraProviderFuture.get();
-            cameraProvider.unbindAll();
+            unbindUseCases(cameraProvider);
         } catch (ExecutionException | InterruptedException e) {
             Log.e(TAG, "Use case binding failed", e);
         }
@@ -557,8 +1338,23 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
             surfaceProvider.stop();
             surfaceProvider = null;
         }
-        deepAR.release();
+        if (capturePipeline != null) {
+            capturePipeline.shutdown();
+            Log.d(TAG, "Capture queue dropped " + capturePipeline.getQueueDroppedCount() + " frames");
+            capturePipeline = null;
+        }
+        releaseInFlightFrame();
+        Log.d(TAG, "Frame pool: acquired=" + framePool.getAcquiredCount()
+                + " dropped=" + framePool.getDroppedCount()
+                + " compacted=" + framePool.getCompactedCount());
+        detachDeepARSurface();
         deepAR = null;
+        deepAREngine.release(this);
+        if (previewTexture != null) {
+            previewSurface.release();
+            previewSurface = null;
+            previewTexture.release();
+        }
     }
 
     /* -----------------------------
@@ -584,7 +1380,9 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
     @Override public void imageVisibilityChanged(String s, boolean b) {}
     @Override public void frameAvailable(Image image) {}
     @Override public void error(ARErrorType arErrorType, String s) {}
-    @Override public void effectSwitched(String s) {}
+    @Override public void effectSwitched(String s) {
+        effectManager.onEffectSwitched();
+    }
 
     /* -----------------------------
      * Broadcast Listener
@@ -603,6 +1401,27 @@ public class StreamView implements PlatformView, MethodChannel.MethodCallHandler
             event.put("error", exception.getError().name() + ": " + exception.getDetail());
             sendEvent(event);
         }
+
+        @Override
+        public void onTransmissionStatsChanged(@NonNull TransmissionStats stats) {
+            statsAggregator.onTransmissionStats(stats.measuredBitrate, stats.recommendedBitrate, stats.rtt,
+                    stats.broadcastQuality.ordinal(), stats.networkHealth.ordinal());
+            onNetworkStats(stats);
+            scheduleStatsFlush();
+        }
+
+        @Override
+        public void onAudioStatsUpdated(double peak, double rms) {
+            statsAggregator.onAudioStats(peak, rms);
+            scheduleStatsFlush();
+        }
+
+        @Override
+        public void onRetryStateChanged(@NonNull BroadcastSession.RetryState state) {
+            Log.d(TAG, "Retry state: " + state);
+            statsAggregator.onRetryState(state.ordinal());
+            scheduleStatsFlush();
+        }
     };
 }
 
@@ -0,0 +1,447 @@
+package com.example.ivs_broadcaster;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Copies every frame drawn into one input surface to any number of output surfaces on the GPU.
+ *
+ * DeepAR, or the camera while effects are bypassed, renders into {@link #getInputSurface()},
+ * which is backed by an external texture owned by a dedicated EGL thread. Each new frame is drawn
+ * once per output as a textured quad, keeping the producer's timestamp, so the broadcast surface,
+ * a Flutter texture and a recorder can all be fed from one render pass without reading pixels
+ * back. The EGL config is recordable so encoder input surfaces can be outputs too.
+ * Outputs can be added and removed from any thread; removal waits until the GL thread no longer
+ * draws into the surface, so the caller may release it right after.
+ */
+final class SurfaceFanout implements SurfaceTexture.OnFrameAvailableListener {
+    private static final String TAG = "SurfaceFanout";
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 uTexMatrix;\n" +
+            "attribute vec4 aPosition;\n" +
+            "attribute vec4 aTexCoord;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_Position = aPosition;\n" +
+            "    vTexCoord = (uTexMatrix * aTexCoord).xy;\n" +
+            "}\n";
+    private static final String FRAGMENT_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n" +
+            "precision mediump float;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "uniform samplerExternalOES sTexture;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+            "}\n";
+    // full screen triangle strip, position and texture coordinate per vertex
+    private static final float[] QUAD = {
+            -1f, -1f, 0f, 0f,
+            1f, -1f, 1f, 0f,
+            -1f, 1f, 0f, 1f,
+            1f, 1f, 1f, 1f,
+    };
+
+    /**
+     * Notified on the GL thread right after a frame was drawn into the output's surface.
+     */
+    interface FrameListener {
+        void onFrameDrawn(long timestampNs);
+    }
+
+    /**
+     * Notified on the GL thread whenever the producer has finished a frame, before it is drawn.
+     */
+    interface InputListener {
+        void onInputFrame();
+    }
+
+    private static final class Output {
+        final Surface surface;
+        final int width;
+        final int height;
+        final FrameListener listener;
+        EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+        long frames = 0;
+        long drawNanos = 0;
+
+        Output(Surface surface, int width, int height, FrameListener listener) {
+            this.surface = surface;
+            this.width = width;
+            this.height = height;
+            this.listener = listener;
+        }
+    }
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    // only touched on the GL thread
+    private final List<Output> outputs = new ArrayList<>();
+    private final float[] textureMatrix = new float[16];
+    private final float[] rotationMatrix = new float[16];
+    private final float[] drawMatrix = new float[16];
+    private final FloatBuffer quad;
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLConfig config;
+    private EGLSurface pbuffer = EGL14.EGL_NO_SURFACE;
+    private int program;
+    private int textureMatrixLocation;
+    private int positionLocation;
+    private int texCoordLocation;
+    private int textureId;
+    private SurfaceTexture surfaceTexture;
+    private Surface inputSurface;
+
+    private volatile InputListener inputListener;
+    private volatile int outputCount = 0;
+    private volatile long inputFrames = 0;
+    private volatile boolean released = false;
+
+    SurfaceFanout(int width, int height) {
+        quad = ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        quad.put(QUAD).position(0);
+        Matrix.setIdentityM(rotationMatrix, 0);
+        thread = new HandlerThread("IvsSurfaceFanout", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        runSync(() -> setUp(width, height));
+    }
+
+    /**
+     * @return the surface producers render into
+     */
+    Surface getInputSurface() {
+        return inputSurface;
+    }
+
+    void setInputSize(int width, int height) {
+        handler.post(() -> {
+            if (surfaceTexture != null) {
+                surfaceTexture.setDefaultBufferSize(width, height);
+            }
+        });
+    }
+
+    /**
+     * Rotate the input clockwise by {@code degrees} before drawing it, for producers that write
+     * sensor oriented buffers such as the camera.
+     */
+    void setRotation(int degrees) {
+        handler.post(() -> {
+            Matrix.setIdentityM(rotationMatrix, 0);
+            Matrix.translateM(rotationMatrix, 0, 0.5f, 0.5f, 0f);
+            Matrix.rotateM(rotationMatrix, 0, degrees, 0f, 0f, 1f);
+            Matrix.translateM(rotationMatrix, 0, -0.5f, -0.5f, 0f);
+        });
+    }
+
+    void setInputListener(InputListener listener) {
+        inputListener = listener;
+    }
+
+    void addOutput(Surface surface, int width, int height) {
+        addOutput(surface, width, height, null);
+    }
+
+    void addOutput(Surface surface, int width, int height, FrameListener listener) {
+        handler.post(() -> {
+            if (released || find(surface) != null) {
+                return;
+            }
+            Output output = new Output(surface, width, height, listener);
+            output.eglSurface = EGL14.eglCreateWindowSurface(display, config, surface,
+                    new int[]{EGL14.EGL_NONE}, 0);
+            if (output.eglSurface == EGL14.EGL_NO_SURFACE) {
+                Log.e(TAG, "Could not create an EGL surface for output: " + EGL14.eglGetError());
+                return;
+            }
+            outputs.add(output);
+            outputCount = outputs.size();
+            Log.d(TAG, "Output added " + width + "x" + height + ", outputs: " + outputCount);
+        });
+    }
+
+    /**
+     * Stop drawing into {@code surface}. Returns once the GL thread has let go of it.
+     */
+    void removeOutput(Surface surface) {
+        runSync(() -> {
+            Output output = find(surface);
+            if (output != null) {
+                destroy(output);
+            }
+        });
+    }
+
+    int getOutputCount() {
+        return outputCount;
+    }
+
+    long getInputFrameCount() {
+        return inputFrames;
+    }
+
+    /**
+     * @return per output frame counts and average draw time, for diagnostics
+     */
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        runSync(() -> {
+            metrics.put("inputFrames", inputFrames);
+            List<Map<String, Object>> perOutput = new ArrayList<>();
+            for (Output output : outputs) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("width", output.width);
+                entry.put("height", output.height);
+                entry.put("frames", output.frames);
+                entry.put("drawMs", output.frames == 0 ? 0.0 : output.drawNanos / 1e6 / output.frames);
+                perOutput.add(entry);
+            }
+            metrics.put("outputs", perOutput);
+        });
+        return metrics;
+    }
+
+    /**
+     * Destroy every output and the input surface and stop the GL thread.
+     */
+    void release() {
+        if (released) {
+            return;
+        }
+        runSync(this::tearDown);
+        released = true;
+        thread.quitSafely();
+    }
+
+    @Override
+    public void onFrameAvailable(SurfaceTexture texture) {
+        if (released || surfaceTexture == null) {
+            return;
+        }
+        // the texture has to be consumed even without outputs so the producer is not stalled
+        EGL14.eglMakeCurrent(display, pbuffer, pbuffer, context);
+        surfaceTexture.updateTexImage();
+        inputFrames++;
+        InputListener listener = inputListener;
+        if (listener != null) {
+            listener.onInputFrame();
+        }
+        if (outputs.isEmpty()) {
+            return;
+        }
+        surfaceTexture.getTransformMatrix(textureMatrix);
+        Matrix.multiplyMM(drawMatrix, 0, textureMatrix, 0, rotationMatrix, 0);
+        long timestampNs = surfaceTexture.getTimestamp();
+        for (int i = outputs.size() - 1; i >= 0; i--) {
+            Output output = outputs.get(i);
+            long startedAt = System.nanoTime();
+            if (!draw(output, timestampNs)) {
+                Log.w(TAG, "Dropping output " + output.width + "x" + output.height
+                        + ", swap failed: " + EGL14.eglGetError());
+                destroy(output);
+                continue;
+            }
+            output.frames++;
+            output.drawNanos += System.nanoTime() - startedAt;
+            if (output.listener != null) {
+                output.listener.onFrameDrawn(timestampNs);
+            }
+        }
+    }
+
+    private boolean draw(Output output, long timestampNs) {
+        if (!EGL14.eglMakeCurrent(display, output.eglSurface, output.eglSurface, context)) {
+            return false;
+        }
+        GLES20.glViewport(0, 0, output.width, output.height);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glUniformMatrix4fv(textureMatrixLocation, 1, false, drawMatrix, 0);
+        quad.position(0);
+        GLES20.glVertexAttribPointer(positionLocation, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(positionLocation);
+        quad.position(2);
+        GLES20.glVertexAttribPointer(texCoordLocation, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(texCoordLocation);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        EGLExt.eglPresentationTimeANDROID(display, output.eglSurface, timestampNs);
+        return EGL14.eglSwapBuffers(display, output.eglSurface);
+    }
+
+    private Output find(Surface surface) {
+        for (Output output : outputs) {
+            if (output.surface == surface) {
+                return output;
+            }
+        }
+        return null;
+    }
+
+    private void destroy(Output output) {
+        outputs.remove(output);
+        outputCount = outputs.size();
+        EGL14.eglMakeCurrent(display, pbuffer, pbuffer, context);
+        if (output.eglSurface != EGL14.EGL_NO_SURFACE) {
+            EGL14.eglDestroySurface(display, output.eglSurface);
+            output.eglSurface = EGL14.EGL_NO_SURFACE;
+        }
+        Log.d(TAG, "Output removed after " + output.frames + " frames, outputs: " + outputCount);
+    }
+
+    private void setUp(int width, int height) {
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(display, version, 0, version, 1)) {
+            throw new IllegalStateException("eglInitialize failed: " + EGL14.eglGetError());
+        }
+        int[] configAttributes = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL_RECORDABLE_ANDROID, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        if (!EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, configCount, 0)
+                || configCount[0] == 0) {
+            throw new IllegalStateException("No recordable EGL config: " + EGL14.eglGetError());
+        }
+        config = configs[0];
+        context = EGL14.eglCreateContext(display, config, EGL14.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE}, 0);
+        pbuffer = EGL14.eglCreatePbufferSurface(display, config,
+                new int[]{EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE}, 0);
+        EGL14.eglMakeCurrent(display, pbuffer, pbuffer, context);
+
+        program = createProgram();
+        textureMatrixLocation = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        positionLocation = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordLocation = GLES20.glGetAttribLocation(program, "aTexCoord");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        surfaceTexture = new SurfaceTexture(textureId);
+        surfaceTexture.setDefaultBufferSize(width, height);
+        surfaceTexture.setOnFrameAvailableListener(this, handler);
+        inputSurface = new Surface(surfaceTexture);
+        Log.d(TAG, "EGL " + version[0] + "." + version[1] + ", input " + width + "x" + height);
+    }
+
+    private void tearDown() {
+        for (int i = outputs.size() - 1; i >= 0; i--) {
+            destroy(outputs.get(i));
+        }
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+            surfaceTexture = null;
+        }
+        if (display != EGL14.EGL_NO_DISPLAY) {
+            GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+            GLES20.glDeleteProgram(program);
+            EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            EGL14.eglDestroySurface(display, pbuffer);
+            EGL14.eglDestroyContext(display, context);
+            EGL14.eglReleaseThread();
+            EGL14.eglTerminate(display);
+            display = EGL14.EGL_NO_DISPLAY;
+        }
+        Log.d(TAG, "Released after " + inputFrames + " frames");
+    }
+
+    private static int createProgram() {
+        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new IllegalStateException("Could not link program: " + log);
+        }
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new IllegalStateException("Could not compile shader: " + log);
+        }
+        return shader;
+    }
+
+    private void runSync(Runnable task) {
+        if (Looper.myLooper() == handler.getLooper()) {
+            task.run();
+            return;
+        }
+        if (released) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        handler.post(() -> {
+            try {
+                task.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.ivs_broadcaster;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Gives every platform view of one type its own method and event channels.
+ *
+ * View {@code id} talks on {@code "<name>/<id>"} and {@code "<name>_event/<id>"}, so any number
+ * of views can run side by side. The unsuffixed legacy channels, which older Dart code still
+ * uses, follow the most recently created view: a new view takes them over from the previous
+ * owner, whose legacy event sink is closed, and they are released when their owner is disposed.
+ * One registry exists per view factory. Must be used from the main thread.
+ */
+final class ViewChannelRegistry {
+    private static final String TAG = "ViewChannelRegistry";
+
+    /** Receives the event sinks Flutter opens and closes on a view's channels. */
+    interface EventSinkListener {
+        /**
+         * @param channel name of the event channel
+         * @param sink    the sink to send events to, or null once Flutter stopped listening
+         */
+        void onEventSinkChanged(String channel, @Nullable EventChannel.EventSink sink);
+    }
+
+    private final BinaryMessenger messenger;
+    private final String methodName;
+    private final String eventName;
+    private final MethodChannel legacyMethodChannel;
+    private final EventChannel legacyEventChannel;
+    private Object legacyOwner;
+    private EventSinkListener legacyListener;
+    private int activeViews = 0;
+
+    ViewChannelRegistry(BinaryMessenger messenger, String methodName) {
+        this.messenger = messenger;
+        this.methodName = methodName;
+        this.eventName = methodName + "_event";
+        this.legacyMethodChannel = new MethodChannel(messenger, methodName);
+        this.legacyEventChannel = new EventChannel(messenger, eventName);
+    }
+
+    String methodChannelName(int viewId) {
+        return methodName + "/" + viewId;
+    }
+
+    String eventChannelName(int viewId) {
+        return eventName + "/" + viewId;
+    }
+
+    String legacyEventChannelName() {
+        return eventName;
+    }
+
+    /**
+     * Open the view's own channels and hand it the legacy channels.
+     */
+    void register(Object owner, int viewId, MethodChannel.MethodCallHandler handler,
+                  EventSinkListener listener) {
+        new MethodChannel(messenger, methodChannelName(viewId)).setMethodCallHandler(handler);
+        new EventChannel(messenger, eventChannelName(viewId))
+                .setStreamHandler(new SinkForwarder(eventChannelName(viewId), listener));
+
+        if (legacyListener != null) {
+            legacyListener.onEventSinkChanged(eventName, null);
+        }
+        legacyOwner = owner;
+        legacyListener = listener;
+        legacyMethodChannel.setMethodCallHandler(handler);
+        legacyEventChannel.setStreamHandler(new SinkForwarder(eventName, listener));
+
+        activeViews++;
+        Log.d(TAG, methodName + ": view " + viewId + " registered, active views: " + activeViews);
+    }
+
+    /**
+     * Close the view's channels, and the legacy ones if it still owns them.
+     */
+    void unregister(Object owner, int viewId) {
+        new MethodChannel(messenger, methodChannelName(viewId)).setMethodCallHandler(null);
+        new EventChannel(messenger, eventChannelName(viewId)).setStreamHandler(null);
+        if (legacyOwner == owner) {
+            legacyMethodChannel.setMethodCallHandler(null);
+            legacyEventChannel.setStreamHandler(null);
+            legacyOwner = null;
+            legacyListener = null;
+        }
+        activeViews = Math.max(0, activeViews - 1);
+        Log.d(TAG, methodName + ": view " + viewId + " unregistered, active views: " + activeViews);
+    }
+
+    private static final class SinkForwarder implements EventChannel.StreamHandler {
+        private final String channel;
+        private final EventSinkListener listener;
+
+        SinkForwarder(String channel, EventSinkListener listener) {
+            this.channel = channel;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onListen(Object arguments, EventChannel.EventSink events) {
+            listener.onEventSinkChanged(channel, events);
+        }
+
+        @Override
+        public void onCancel(Object arguments) {
+            listener.onEventSinkChanged(channel, null);
+        }
+    }
+}
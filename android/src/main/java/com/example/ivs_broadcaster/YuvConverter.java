@@ -0,0 +1,107 @@
+package com.example.ivs_broadcaster;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs the three planes of a YUV_420_888 image into a single NV21 buffer: the full resolution
+ * Y plane followed by the quarter resolution chroma samples interleaved as V, U, V, U...
+ *
+ * The converter keeps its row scratch arrays between calls, so once it has seen the largest
+ * frame size it converts without allocating. An instance must only be used by one thread.
+ */
+final class YuvConverter {
+    private byte[] uRow = new byte[0];
+    private byte[] vRow = new byte[0];
+    private byte[] vuRow = new byte[0];
+
+    /**
+     * @return number of bytes an NV21 image of the given size occupies
+     */
+    static int nv21Size(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * Write the NV21 representation of the given planes into {@code out}, starting at its
+     * current position. The position of the source buffers is left untouched.
+     *
+     * @param y             luma plane
+     * @param yRowStride    row stride of the luma plane
+     * @param u             Cb plane
+     * @param v             Cr plane
+     * @param uvRowStride   row stride shared by both chroma planes
+     * @param uvPixelStride pixel stride shared by both chroma planes, 1 (planar) or 2 (semi-planar)
+     * @param width         image width in pixels
+     * @param height        image height in pixels
+     * @param out           destination with at least {@link #nv21Size(int, int)} bytes remaining
+     */
+    void packNv21(ByteBuffer y, int yRowStride,
+                  ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                  int width, int height, ByteBuffer out) {
+        if (out.remaining() < nv21Size(width, height)) {
+            throw new IllegalArgumentException("Output buffer too small for " + width + "x" + height);
+        }
+        copyLuma(y, yRowStride, width, height, out);
+
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int chromaRowBytes = (chromaWidth - 1) * uvPixelStride + 1;
+        ensureScratch(chromaRowBytes, chromaWidth * 2);
+
+        int uPosition = u.position();
+        int uLimit = u.limit();
+        int vPosition = v.position();
+        int vLimit = v.limit();
+        for (int row = 0; row < chromaHeight; row++) {
+            int start = row * uvRowStride;
+            readRow(v, vLimit, start, vRow, chromaRowBytes);
+            readRow(u, uLimit, start, uRow, chromaRowBytes);
+            for (int col = 0, src = 0, dst = 0; col < chromaWidth; col++, src += uvPixelStride) {
+                vuRow[dst++] = vRow[src];
+                vuRow[dst++] = uRow[src];
+            }
+            out.put(vuRow, 0, chromaWidth * 2);
+        }
+        u.limit(uLimit);
+        u.position(uPosition);
+        v.limit(vLimit);
+        v.position(vPosition);
+    }
+
+    private static void copyLuma(ByteBuffer y, int rowStride, int width, int height, ByteBuffer out) {
+        int position = y.position();
+        int limit = y.limit();
+        if (rowStride == width) {
+            y.limit(Math.min(limit, width * height));
+            y.position(0);
+            out.put(y);
+        } else {
+            for (int row = 0; row < height; row++) {
+                int start = row * rowStride;
+                y.limit(Math.min(limit, start + width));
+                y.position(start);
+                out.put(y);
+            }
+        }
+        y.limit(limit);
+        y.position(position);
+    }
+
+    private static void readRow(ByteBuffer plane, int planeLimit, int start, byte[] row, int length) {
+        // the last chroma row of a semi-planar image usually stops one byte short of the stride
+        int available = Math.min(length, planeLimit - start);
+        plane.limit(start + available);
+        plane.position(start);
+        plane.get(row, 0, available);
+    }
+
+    private void ensureScratch(int rowBytes, int interleavedBytes) {
+        if (uRow.length < rowBytes) {
+            uRow = new byte[rowBytes];
+            vRow = new byte[rowBytes];
+        }
+        if (vuRow.length < interleavedBytes) {
+            vuRow = new byte[interleavedBytes];
+        }
+    }
+}
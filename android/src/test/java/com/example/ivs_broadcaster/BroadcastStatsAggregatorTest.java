@@ -0,0 +1,69 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class BroadcastStatsAggregatorTest {
+  @Test
+  public void drain_coalescesToLatestValues() {
+    BroadcastStatsAggregator aggregator = new BroadcastStatsAggregator();
+    aggregator.onTransmissionStats(1_000_000, 2_000_000, 300, 2, 3);
+    aggregator.onTransmissionStats(1_500_000, 2_000_000, 150, 1, 1);
+    aggregator.onAudioStats(-6, -20);
+
+    Map<Object, Object> event = aggregator.drain();
+
+    assertEquals(1, event.get("quality"));
+    assertEquals(1, event.get("network"));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> stats = (Map<String, Object>) event.get("stats");
+    assertEquals(1_500_000.0, stats.get("measuredBitrate"));
+    assertEquals(-6.0, stats.get("audioPeak"));
+    assertFalse(event.containsKey("retrystate"));
+  }
+
+  @Test
+  public void drain_returnsNullWhenNothingChanged() {
+    BroadcastStatsAggregator aggregator = new BroadcastStatsAggregator();
+    assertNull(aggregator.drain());
+
+    aggregator.onRetryState(3);
+    assertTrue(aggregator.isDirty());
+    assertEquals(3, aggregator.drain().get("retrystate"));
+    assertNull(aggregator.drain());
+  }
+
+  @Test
+  public void drain_includesRetryStateOnlyAfterItChanged() {
+    BroadcastStatsAggregator aggregator = new BroadcastStatsAggregator();
+    aggregator.onRetryState(1);
+    assertEquals(1, aggregator.drain().get("retrystate"));
+
+    aggregator.onTransmissionStats(1_000_000, 2_000_000, 300, 2, 3);
+    assertFalse(aggregator.drain().containsKey("retrystate"));
+
+    // repeating the current state is not a change
+    aggregator.onRetryState(1);
+    assertNull(aggregator.drain());
+
+    aggregator.onRetryState(2);
+    aggregator.onTransmissionStats(1_000_000, 2_000_000, 300, 2, 3);
+    assertEquals(2, aggregator.drain().get("retrystate"));
+  }
+
+  @Test
+  public void healthScore_isSmoothed() {
+    BroadcastStatsAggregator aggregator = new BroadcastStatsAggregator();
+    aggregator.onTransmissionStats(2_000_000, 2_000_000, 50, 0, 0);
+    assertEquals(100.0, aggregator.getHealthScore(), 0.001);
+
+    // a single terrible sample only moves the score part of the way
+    aggregator.onTransmissionStats(0, 2_000_000, 2000, 4, 4);
+    assertEquals(70.0, aggregator.getHealthScore(), 0.001);
+  }
+}
@@ -0,0 +1,79 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class CueDecoderTest {
+  @Test
+  public void decode_parsesJsonAndKeepsText() {
+    CueDecoder decoder = new CueDecoder();
+    List<Map<String, Object>> out = new ArrayList<>();
+
+    assertEquals(1, decoder.decode("{\"answer\":2}", 1000, 2000, 0, out));
+
+    Map<String, Object> cue = out.get(0);
+    assertEquals("{\"answer\":2}", cue.get("text"));
+    assertEquals(1000L, cue.get("startTime"));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> data = (Map<String, Object>) cue.get("data");
+    assertEquals(2.0, data.get("answer"));
+  }
+
+  @Test
+  public void decode_keepsPlainTextWithoutData() {
+    CueDecoder decoder = new CueDecoder();
+    List<Map<String, Object>> out = new ArrayList<>();
+
+    decoder.decode("hello", 0, 0, 0, out);
+    decoder.decode("{broken", 1, 1, 0, out);
+
+    assertFalse(out.get(0).containsKey("data"));
+    assertFalse(out.get(1).containsKey("data"));
+    assertEquals(1, decoder.getParseFailureCount());
+  }
+
+  @Test
+  public void decode_splitsJsonTextSequence() {
+    CueDecoder decoder = new CueDecoder();
+    List<Map<String, Object>> out = new ArrayList<>();
+
+    assertEquals(2, decoder.decode("\u001E{\"a\":1}\n\u001E{\"b\":2}\n", 0, 0, 0, out));
+
+    assertEquals("{\"a\":1}", out.get(0).get("text"));
+    assertEquals("{\"b\":2}", out.get(1).get("text"));
+  }
+
+  @Test
+  public void decode_dropsDuplicatesWithinWindow() {
+    CueDecoder decoder = new CueDecoder(1000, 100);
+    List<Map<String, Object>> out = new ArrayList<>();
+
+    decoder.decode("x", 500, 600, 0, out);
+    // same cue after a seek
+    assertEquals(0, decoder.decode("x", 500, 600, 200, out));
+    // same text at another time is a new cue
+    assertEquals(1, decoder.decode("x", 700, 800, 200, out));
+    // outside the window it is delivered again
+    assertEquals(1, decoder.decode("x", 500, 600, 1500, out));
+    assertEquals(1, decoder.getDuplicateCount());
+  }
+
+  @Test
+  public void decode_remembersBoundedNumberOfRecords() {
+    CueDecoder decoder = new CueDecoder(60_000, 2);
+    List<Map<String, Object>> out = new ArrayList<>();
+
+    decoder.decode("a", 0, 0, 0, out);
+    decoder.decode("b", 0, 0, 0, out);
+    decoder.decode("c", 0, 0, 0, out);
+
+    // "a" was forgotten to make room
+    assertEquals(1, decoder.decode("a", 0, 0, 0, out));
+    assertEquals(0, decoder.decode("c", 0, 0, 0, out));
+  }
+}
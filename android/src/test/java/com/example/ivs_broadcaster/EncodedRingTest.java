@@ -0,0 +1,162 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class EncodedRingTest {
+  private static ByteBuffer sample(int value, int size) {
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    for (int i = 0; i < size; i++) {
+      buffer.put((byte) (value + i));
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static EncodedRing.Chunk copyAll(EncodedRing ring) {
+    EncodedRing.Chunk chunk = new EncodedRing.Chunk(1000, 100);
+    ring.copyTo(ring.getFirstSequence(), ring.getEndSequence(), chunk);
+    return chunk;
+  }
+
+  private static void assertSample(EncodedRing.Chunk chunk, int index, int value, int size) {
+    ByteBuffer bytes = chunk.sample(index);
+    assertEquals(size, bytes.remaining());
+    for (int i = 0; i < size; i++) {
+      assertEquals((byte) (value + i), bytes.get());
+    }
+  }
+
+  @Test
+  public void add_waitsForFirstKeyFrame() {
+    EncodedRing ring = new EncodedRing(100, 10, 1_000_000);
+
+    assertFalse(ring.add(sample(0, 5), 0, false));
+    assertTrue(ring.add(sample(1, 5), 1, true));
+    assertTrue(ring.add(sample(2, 5), 2, false));
+
+    assertEquals(2, ring.size());
+    assertEquals(1, ring.getRejectedCount());
+  }
+
+  @Test
+  public void add_leavesSourcePositionUntouched() {
+    EncodedRing ring = new EncodedRing(100, 10, 1_000_000);
+    ByteBuffer source = sample(0, 8);
+
+    ring.add(source, 0, true);
+
+    assertEquals(0, source.position());
+    assertEquals(8, source.remaining());
+  }
+
+  @Test
+  public void add_evictsWholeGroupsWhenFull() {
+    EncodedRing ring = new EncodedRing(30, 10, 10_000_000);
+    ring.add(sample(10, 10), 0, true);
+    ring.add(sample(20, 10), 1, false);
+    ring.add(sample(30, 10), 2, true);
+    // needs the bytes of the first sample, its delta frame goes with it
+    ring.add(sample(40, 10), 3, false);
+
+    EncodedRing.Chunk chunk = copyAll(ring);
+    assertEquals(2, chunk.count);
+    assertTrue(chunk.keyFrames[0]);
+    assertEquals(2, chunk.ptsUs[0]);
+    assertSample(chunk, 0, 30, 10);
+    assertSample(chunk, 1, 40, 10);
+  }
+
+  @Test
+  public void copyTo_copiesSamplesWrappingAroundTheEnd() {
+    EncodedRing ring = new EncodedRing(25, 10, 10_000_000);
+    ring.add(sample(10, 10), 0, true);
+    ring.add(sample(20, 10), 1, true);
+    // starts at byte 20 and wraps to the front after evicting the first sample
+    ring.add(sample(30, 10), 2, true);
+
+    EncodedRing.Chunk chunk = copyAll(ring);
+    assertEquals(2, chunk.count);
+    assertSample(chunk, 0, 20, 10);
+    assertSample(chunk, 1, 30, 10);
+
+    // the copy does not change with the ring
+    ring.add(sample(40, 10), 3, true);
+    assertSample(chunk, 1, 30, 10);
+  }
+
+  @Test
+  public void add_keepsWindowFromAKeyFrame() {
+    EncodedRing ring = new EncodedRing(1000, 100, 2_000_000);
+    // one key frame per second, 4 frames per second
+    for (int i = 0; i < 20; i++) {
+      ring.add(sample(i, 4), i * 250_000L, i % 4 == 0);
+    }
+
+    EncodedRing.Chunk chunk = copyAll(ring);
+    assertTrue(chunk.keyFrames[0]);
+    // newest is 4.75 s: 2 s back starts at 2.75 s, the covering key frame is 2 s
+    assertEquals(2_000_000L, chunk.ptsUs[0]);
+    assertEquals(2_750_000L, ring.getDurationUs());
+    assertEquals(12, chunk.count);
+  }
+
+  @Test
+  public void add_rejectsSampleLargerThanRing() {
+    EncodedRing ring = new EncodedRing(10, 10, 1_000_000);
+    ring.add(sample(0, 5), 0, true);
+
+    assertFalse(ring.add(sample(0, 11), 1, true));
+    assertEquals(1, ring.size());
+  }
+
+  @Test
+  public void add_evictsWhenSlotsRunOut() {
+    EncodedRing ring = new EncodedRing(1000, 3, 10_000_000);
+    for (int i = 0; i < 5; i++) {
+      ring.add(sample(i, 1), i, true);
+    }
+
+    assertEquals(3, ring.size());
+    assertEquals(2, ring.getEvictedCount());
+    assertEquals(2, copyAll(ring).ptsUs[0]);
+  }
+
+  @Test
+  public void copyTo_continuesInBoundedChunksUntilTheEnd() {
+    EncodedRing ring = new EncodedRing(1000, 100, 10_000_000);
+    for (int i = 0; i < 5; i++) {
+      ring.add(sample(i * 10, 10), i, true);
+    }
+    long end = ring.getEndSequence();
+    // added after the save started, left out of the clip
+    ring.add(sample(50, 10), 5, true);
+    EncodedRing.Chunk chunk = new EncodedRing.Chunk(25, 100);
+
+    assertEquals(2, ring.copyTo(0, end, chunk));
+    assertSample(chunk, 1, 10, 10);
+    assertEquals(2, ring.copyTo(2, end, chunk));
+    assertSample(chunk, 0, 20, 10);
+    assertEquals(1, ring.copyTo(4, end, chunk));
+    assertSample(chunk, 0, 40, 10);
+  }
+
+  @Test
+  public void copyTo_reportsSamplesEvictedBeforeTheyWereCopied() {
+    EncodedRing ring = new EncodedRing(20, 10, 10_000_000);
+    ring.add(sample(0, 10), 0, true);
+    ring.add(sample(10, 10), 1, true);
+    EncodedRing.Chunk chunk = new EncodedRing.Chunk(10, 10);
+    assertEquals(1, ring.copyTo(0, 2, chunk));
+
+    ring.add(sample(20, 10), 2, true);
+    ring.add(sample(30, 10), 3, true);
+
+    assertEquals(-1, ring.copyTo(1, 2, chunk));
+    assertEquals(2, ring.getFirstSequence());
+  }
+}
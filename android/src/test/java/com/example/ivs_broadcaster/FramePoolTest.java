@@ -0,0 +1,120 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class FramePoolTest {
+  @Test
+  public void acquire_returnsNullAndCountsDropWhenAllFramesAreHeld() {
+    FramePool pool = new FramePool(2);
+
+    FramePool.Frame first = pool.acquire(16);
+    FramePool.Frame second = pool.acquire(16);
+
+    assertNotNull(first);
+    assertNotNull(second);
+    assertNull(pool.acquire(16));
+    assertEquals(1, pool.getDroppedCount());
+
+    first.release();
+    assertSame(first, pool.acquire(16));
+  }
+
+  @Test
+  public void depthForQueue_letsFullQueueDropOldestInsteadOfNewest() throws InterruptedException {
+    int capacity = 2;
+    FramePool pool = new FramePool(FramePool.depthForQueue(capacity));
+    FrameQueue<FramePool.Frame> queue = new FrameQueue<>(capacity, FramePool.Frame::release);
+
+    // DeepAR still reads one frame while the submission thread hands it the next
+    FramePool.Frame inFlight = pool.acquire(16);
+    FramePool.Frame submitting = pool.acquire(16);
+    assertNotNull(inFlight);
+    assertNotNull(submitting);
+
+    for (int i = 0; i < 12; i++) {
+      // the analyzer always gets a frame and a full queue evicts its oldest one
+      FramePool.Frame newest = pool.acquire(16);
+      assertNotNull(newest);
+      newest.timestampNanos = i;
+      queue.offer(newest);
+    }
+
+    assertEquals(0, pool.getDroppedCount());
+    assertEquals(10, queue.getDroppedCount());
+    assertEquals(10, queue.poll(0, TimeUnit.MILLISECONDS).timestampNanos);
+    assertEquals(11, queue.poll(0, TimeUnit.MILLISECONDS).timestampNanos);
+  }
+
+  @Test
+  public void release_keepsFrameBusyWhileRetained() {
+    FramePool pool = new FramePool(1);
+    FramePool.Frame frame = pool.acquire(8);
+
+    frame.retain();
+    frame.release();
+    assertEquals(0, pool.getFreeCount());
+
+    frame.release();
+    assertEquals(1, pool.getFreeCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void release_throwsWhenReleasedTwice() {
+    FramePool pool = new FramePool(1);
+    FramePool.Frame frame = pool.acquire(8);
+    frame.release();
+    frame.release();
+  }
+
+  @Test
+  public void acquire_reusesBufferWhenSizeFits() {
+    FramePool pool = new FramePool(1);
+    FramePool.Frame frame = pool.acquire(64);
+    ByteBuffer buffer = frame.getBuffer();
+    frame.release();
+
+    frame = pool.acquire(32);
+    assertSame(buffer, frame.getBuffer());
+    assertEquals(32, frame.getBuffer().limit());
+  }
+
+  @Test
+  public void copyFrom_stripsRowPadding() {
+    FramePool pool = new FramePool(1);
+    // two rows of 4 bytes each padded to a stride of 6, last row unpadded
+    ByteBuffer src = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 0, 0, 5, 6, 7, 8});
+    FramePool.Frame frame = pool.acquire(8);
+
+    frame.copyFrom(src, 6, 4, 2);
+
+    ByteBuffer out = frame.getBuffer();
+    assertEquals(0, out.position());
+    assertEquals(8, out.remaining());
+    for (int i = 0; i < 8; i++) {
+      assertEquals(i + 1, out.get(i));
+    }
+    assertEquals(1, pool.getCompactedCount());
+    assertEquals(10, src.limit());
+  }
+
+  @Test
+  public void copyFrom_copiesPackedPlaneInOnePass() {
+    FramePool pool = new FramePool(1);
+    ByteBuffer src = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    src.position(5);
+    FramePool.Frame frame = pool.acquire(8);
+
+    frame.copyFrom(src, 4, 4, 2);
+
+    assertEquals(8, frame.getBuffer().remaining());
+    assertEquals(8, frame.getBuffer().get(7));
+    assertEquals(0, pool.getCompactedCount());
+  }
+}
@@ -0,0 +1,57 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class FrameQueueTest {
+  @Test
+  public void offer_dropsOldestWhenFull() throws InterruptedException {
+    List<Integer> dropped = new ArrayList<>();
+    FrameQueue<Integer> queue = new FrameQueue<>(2, dropped::add);
+
+    queue.offer(1);
+    queue.offer(2);
+    queue.offer(3);
+
+    assertEquals(1, dropped.size());
+    assertEquals(Integer.valueOf(1), dropped.get(0));
+    assertEquals(1, queue.getDroppedCount());
+    assertEquals(Integer.valueOf(2), queue.poll(0, TimeUnit.MILLISECONDS));
+    assertEquals(Integer.valueOf(3), queue.poll(0, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void poll_returnsNullAfterTimeout() throws InterruptedException {
+    FrameQueue<Integer> queue = new FrameQueue<>(1, null);
+    assertNull(queue.poll(5, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void close_handsPendingItemsToListenerAndRejectsNewOnes() throws InterruptedException {
+    List<Integer> dropped = new ArrayList<>();
+    FrameQueue<Integer> queue = new FrameQueue<>(2, dropped::add);
+    queue.offer(1);
+
+    queue.close();
+
+    assertFalse(queue.offer(2));
+    assertEquals(2, dropped.size());
+    assertNull(queue.poll(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void poll_wakesUpWhenItemArrives() throws InterruptedException {
+    FrameQueue<Integer> queue = new FrameQueue<>(1, null);
+    Thread producer = new Thread(() -> queue.offer(7));
+    producer.start();
+
+    assertEquals(Integer.valueOf(7), queue.poll(1, TimeUnit.SECONDS));
+    producer.join();
+  }
+}
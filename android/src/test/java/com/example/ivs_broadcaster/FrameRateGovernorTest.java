@@ -0,0 +1,100 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameRateGovernorTest {
+  private static final long MS = 1_000_000L;
+
+  @Test
+  public void shouldAccept_passesCameraRateMatchingTarget() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(30);
+
+    for (int i = 0; i < 30; i++) {
+      // 33 ms with a little jitter either way
+      long jitter = (i % 2 == 0) ? 2 * MS : -2 * MS;
+      assertTrue(governor.shouldAccept(i * 33 * MS + jitter));
+    }
+    assertEquals(0, governor.getShedCount());
+  }
+
+  @Test
+  public void setNetworkFps_capsRequestedRateUntilCleared() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(30);
+    governor.setTargetFps(24);
+
+    governor.setNetworkFps(15);
+    assertEquals(15, governor.getEffectiveFps());
+    // the requested rate is still reported as asked
+    assertEquals(24, governor.getTargetFps());
+
+    governor.setNetworkFps(0);
+    assertEquals(24, governor.getEffectiveFps());
+  }
+
+  @Test
+  public void shouldAccept_shedsDownToRequestedRate() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(30);
+    governor.setTargetFps(15);
+
+    int accepted = 0;
+    for (int i = 0; i < 30; i++) {
+      if (governor.shouldAccept(i * 33 * MS)) {
+        accepted++;
+      }
+    }
+    assertEquals(15, accepted);
+    assertEquals(15, governor.getShedCount());
+  }
+
+  @Test
+  public void onProcessed_lowersEffectiveRateWhenDeepARIsSlow() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(30);
+
+    for (int i = 0; i < 50; i++) {
+      governor.onProcessed(50 * MS);
+    }
+
+    assertEquals(30, governor.getTargetFps());
+    assertEquals(17, governor.getEffectiveFps());
+    assertFalse(governor.shouldAccept(0) && governor.shouldAccept(40 * MS));
+  }
+
+  @Test
+  public void clearProcessing_returnsToRequestedRate() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(30);
+    governor.onProcessed(50 * MS);
+
+    governor.clearProcessing();
+
+    assertEquals(0.0, governor.getAverageProcessingMs(), 0.001);
+    assertEquals(30, governor.getEffectiveFps());
+  }
+
+  @Test
+  public void effectiveRateNeverDropsBelowMinimum() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.onProcessed(500 * MS);
+    assertEquals(FrameRateGovernor.MIN_FPS, governor.getEffectiveFps());
+  }
+
+  @Test
+  public void setTargetFps_zeroFallsBackToEncoderRate() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(24);
+    governor.setTargetFps(60);
+    assertEquals(60, governor.getTargetFps());
+
+    governor.setTargetFps(0);
+    assertEquals(24, governor.getTargetFps());
+    assertEquals(24, governor.getEffectiveFps());
+  }
+}
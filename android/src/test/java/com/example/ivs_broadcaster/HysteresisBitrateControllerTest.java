@@ -0,0 +1,180 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class HysteresisBitrateControllerTest {
+  private static final long STEP_MS = 500;
+
+  private final List<BitrateController.Decision> decisions = new ArrayList<>();
+  private final List<Long> decisionTimes = new ArrayList<>();
+  private long nowMs = 0;
+
+  /** Replays a constant stats sample every {@link #STEP_MS} for {@code durationMs}. */
+  private void feed(BitrateController controller, long durationMs, double recommended, double rttMs) {
+    long end = nowMs + durationMs;
+    for (; nowMs < end; nowMs += STEP_MS) {
+      BitrateController.Decision decision =
+          controller.onTransmissionStats(nowMs, recommended, recommended, rttMs);
+      if (decision != null) {
+        decisions.add(decision);
+        decisionTimes.add(nowMs);
+      }
+    }
+  }
+
+  @Test
+  public void initialBitrate_comesFromProfileWithoutHistory() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+
+    assertEquals(QualityProfile.P720.getInitialBitrate(), controller.getInitialBitrate());
+    assertEquals(30, controller.getCurrent().fps);
+  }
+
+  @Test
+  public void initialBitrate_followsHistoryWithinProfileBounds() {
+    assertEquals(800_000, new HysteresisBitrateController(QualityProfile.P720, 1_000_000).getInitialBitrate());
+    assertEquals(QualityProfile.P720.getMinBitrate(),
+        new HysteresisBitrateController(QualityProfile.P720, 100_000).getInitialBitrate());
+    assertEquals(QualityProfile.P720.getMaxBitrate(),
+        new HysteresisBitrateController(QualityProfile.P720, 50_000_000).getInitialBitrate());
+  }
+
+  @Test
+  public void sustainedDrop_lowersCeilingAndFrameRate() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+    feed(controller, 10_000, 1_500_000, 80);
+    assertTrue(decisions.isEmpty());
+
+    feed(controller, 5_000, 700_000, 80);
+
+    assertEquals(1, decisions.size());
+    BitrateController.Decision decision = decisions.get(0);
+    // just under the smoothed recommendation
+    assertTrue(decision.bitrateCeiling < 800_000);
+    assertTrue(decision.bitrateCeiling >= QualityProfile.P720.getMinBitrate());
+    // too few bits for 720p at 30 fps
+    assertTrue(decision.fps < 30);
+    assertTrue(decision.reason.startsWith("down"));
+  }
+
+  @Test
+  public void shortDip_isIgnored() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+    feed(controller, 10_000, 1_500_000, 80);
+    feed(controller, 1_000, 500_000, 80);
+    feed(controller, 10_000, 1_500_000, 80);
+
+    assertTrue(decisions.isEmpty());
+  }
+
+  @Test
+  public void flappingCellularTrace_settlesInsteadOfOscillating() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+    // alternates between good and bad every 1.5 s for two minutes
+    for (int i = 0; i < 80; i++) {
+      feed(controller, 1_500, i % 2 == 0 ? 2_400_000 : 600_000, 150);
+    }
+
+    int directionChanges = 0;
+    for (int i = 1; i < decisions.size(); i++) {
+      boolean wasDown = decisions.get(i - 1).reason.startsWith("down");
+      boolean isDown = decisions.get(i).reason.startsWith("down");
+      if (wasDown != isDown) {
+        directionChanges++;
+      }
+    }
+    assertTrue("decisions: " + decisions, decisions.size() <= 3);
+    assertTrue("decisions: " + decisions, directionChanges <= 1);
+  }
+
+  @Test
+  public void recovery_waitsForCooldownThenStepsUp() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+    feed(controller, 5_000, 700_000, 80);
+    assertEquals(1, decisions.size());
+    int lowCeiling = decisions.get(0).bitrateCeiling;
+
+    feed(controller, 60_000, 2_500_000, 80);
+
+    assertTrue(decisions.size() >= 2);
+    BitrateController.Decision firstUp = decisions.get(1);
+    assertTrue(firstUp.reason.startsWith("up"));
+    assertTrue(decisionTimes.get(1) - decisionTimes.get(0) >= HysteresisBitrateController.UP_COOLDOWN_MS);
+    assertTrue(firstUp.bitrateCeiling > lowCeiling);
+    // one step at a time
+    assertTrue(firstUp.bitrateCeiling <= lowCeiling * 1.25 + 1);
+    assertTrue(controller.getCurrent().bitrateCeiling <= QualityProfile.P720.getMaxBitrate());
+    assertEquals(30, controller.getCurrent().fps);
+  }
+
+  @Test
+  public void highRoundTripTime_lowersCeilingEvenWithGoodRecommendation() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+    feed(controller, 3_000, 1_500_000, 1_500);
+
+    assertEquals(1, decisions.size());
+    assertTrue(decisions.get(0).reason.contains("rtt"));
+  }
+
+  /**
+   * Runs {@code sessions} back to back sessions on a network that carries {@code networkBitrate},
+   * seeding each from the history the previous ones left, as StreamView does.
+   *
+   * @return the history estimate after the last session
+   */
+  private long runSessions(long history, int sessions, double networkBitrate, List<Integer> initialBitrates) {
+    for (int i = 0; i < sessions; i++) {
+      HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, history);
+      initialBitrates.add(controller.getInitialBitrate());
+      // too short for the ceiling to climb above where the history put it
+      feed(controller, 8_000, networkBitrate, 80);
+      history = NetworkHistory.blend(history, controller.getSustainedBitrate());
+    }
+    return history;
+  }
+
+  @Test
+  public void networkHistory_holdsSteadyAcrossShortSessions() {
+    List<Integer> initialBitrates = new ArrayList<>();
+
+    long history = runSessions(0, 10, 1_800_000, initialBitrates);
+
+    assertEquals(1_800_000, history);
+    assertEquals(QualityProfile.P720.getInitialBitrate(), (int) initialBitrates.get(0));
+    for (int i = 1; i < initialBitrates.size(); i++) {
+      assertEquals("session " + i, 1_440_000, (int) initialBitrates.get(i));
+    }
+    assertTrue(decisions.isEmpty());
+  }
+
+  @Test
+  public void networkHistory_recoversAfterABadSession() {
+    List<Integer> initialBitrates = new ArrayList<>();
+    long history = runSessions(0, 3, 2_000_000, initialBitrates);
+    history = runSessions(history, 1, 800_000, initialBitrates);
+    assertTrue(history < 1_500_000);
+
+    history = runSessions(history, 4, 2_000_000, initialBitrates);
+
+    assertTrue("history " + history, history > 1_900_000);
+    // the session right after the bad one started low, the later ones climb back
+    assertTrue(initialBitrates.get(initialBitrates.size() - 1) > initialBitrates.get(4));
+  }
+
+  @Test
+  public void sustainedBitrate_needsEnoughSamples() {
+    HysteresisBitrateController controller = new HysteresisBitrateController(QualityProfile.P720, 0);
+    feed(controller, 2_000, 1_200_000, 80);
+    assertEquals(0, controller.getSustainedBitrate());
+
+    feed(controller, 10_000, 1_200_000, 80);
+    assertEquals(1_200_000, controller.getSustainedBitrate());
+    assertNotNull(controller.getCurrent());
+  }
+}
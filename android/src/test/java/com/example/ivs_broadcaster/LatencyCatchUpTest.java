@@ -0,0 +1,44 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyCatchUpTest {
+  @Test
+  public void speedsUpPastMarginAndStopsAtTarget() {
+    LatencyCatchUp catchUp = new LatencyCatchUp(2_000, 1.1f);
+
+    assertEquals(1.0f, catchUp.update(2_400, 3_000), 0);
+    assertEquals(1.1f, catchUp.update(2_600, 3_000), 0);
+    // keeps going inside the margin until the target is reached
+    assertEquals(1.1f, catchUp.update(2_300, 3_000), 0);
+    assertEquals(1.0f, catchUp.update(2_000, 3_000), 0);
+    assertFalse(catchUp.isCatchingUp());
+    assertEquals(1, catchUp.getCatchUpCount());
+  }
+
+  @Test
+  public void givesUpWhenBufferRunsLow() {
+    LatencyCatchUp catchUp = new LatencyCatchUp(2_000, 1.1f);
+    assertEquals(1.1f, catchUp.update(4_000, 3_000), 0);
+    assertTrue(catchUp.isCatchingUp());
+
+    assertEquals(1.0f, catchUp.update(4_000, 200), 0);
+  }
+
+  @Test
+  public void ignoresVodAndModesWithoutTarget() {
+    assertEquals(1.0f, new LatencyCatchUp(2_000, 1.1f).update(0, 3_000), 0);
+    assertEquals(1.0f, new LatencyCatchUp(PlaybackMode.SMOOTH).update(20_000, 30_000), 0);
+  }
+
+  @Test
+  public void playbackMode_fallsBackToBalanced() {
+    assertEquals(PlaybackMode.INTERACTIVE, PlaybackMode.fromValue("interactive"));
+    assertEquals(PlaybackMode.BALANCED, PlaybackMode.fromValue(null));
+    assertEquals(PlaybackMode.BALANCED, PlaybackMode.fromValue("turbo"));
+  }
+}
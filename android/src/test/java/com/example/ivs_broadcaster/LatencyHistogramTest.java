@@ -0,0 +1,70 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+  @Test
+  public void bucketUpperBound_coversEveryValue() {
+    for (long value = 0; value < 1_000_000; value += 37) {
+      int index = LatencyHistogram.bucketIndex(value);
+      long upper = LatencyHistogram.bucketUpperBound(index);
+      assertTrue(value + " -> " + upper, upper >= value);
+      assertTrue(value + " -> " + upper, upper <= value + value / 8 + 1);
+    }
+  }
+
+  @Test
+  public void bucketIndex_clampsHugeValues() {
+    assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    assertEquals(0, LatencyHistogram.bucketIndex(-5));
+  }
+
+  @Test
+  public void percentile_reportsUniformDistribution() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 100);
+    }
+    long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+    long total = histogram.snapshot(scratch, false);
+
+    assertEquals(1000, total);
+    assertWithin(50_000, LatencyHistogram.percentile(scratch, total, 50));
+    assertWithin(95_000, LatencyHistogram.percentile(scratch, total, 95));
+    assertWithin(99_000, LatencyHistogram.percentile(scratch, total, 99));
+    assertEquals(100_000, histogram.getMax());
+  }
+
+  @Test
+  public void snapshot_resetStartsNewWindow() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(10);
+    long[] scratch = new long[LatencyHistogram.BUCKET_COUNT];
+
+    assertEquals(1, histogram.snapshot(scratch, true));
+    assertEquals(0, histogram.snapshot(scratch, false));
+    assertEquals(0, LatencyHistogram.percentile(scratch, 0, 50));
+  }
+
+  @Test
+  public void pipelineMetrics_countsLateFrames() {
+    PipelineMetrics metrics = new PipelineMetrics(50_000);
+    metrics.record(PipelineMetrics.Stage.TOTAL, 20_000);
+    metrics.record(PipelineMetrics.Stage.TOTAL, 80_000);
+    metrics.recordDropped();
+
+    Map<String, Object> snapshot = metrics.snapshot(true);
+
+    assertEquals(1L, snapshot.get("late"));
+    assertEquals(1L, snapshot.get("dropped"));
+    assertEquals(0, metrics.getLateCount());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected + expected / 8);
+  }
+}
@@ -0,0 +1,138 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class MetadataQueueTest {
+  private final List<String> payloads = new ArrayList<>();
+
+  private MetadataQueue newQueue(int capacity) {
+    MetadataQueue queue = new MetadataQueue(payload -> payloads.add(payload), capacity, 5);
+    queue.setBatching(true);
+    return queue;
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void offer_rejectsEmptyAndOversizedMessages() {
+    MetadataQueue queue = newQueue(10);
+    assertEquals(MetadataQueue.Result.REJECTED_EMPTY, queue.offer(null, null, 0));
+    assertEquals(MetadataQueue.Result.REJECTED_EMPTY, queue.offer("", null, 0));
+    // multi-byte characters count by their UTF-8 size
+    assertEquals(MetadataQueue.Result.REJECTED_TOO_LARGE,
+        queue.offer(repeat('\u00e9', 513), null, 0));
+    assertEquals(MetadataQueue.Result.QUEUED, queue.offer(repeat('a', 1024), null, 0));
+    assertEquals(3L, queue.getMetrics().get("rejected"));
+  }
+
+  @Test
+  public void poll_sendsLoneMessageUnframed() {
+    MetadataQueue queue = newQueue(10);
+    queue.offer("{\"a\":1}", null, 0);
+    assertEquals(1, queue.poll(0));
+    assertEquals("{\"a\":1}", payloads.get(0));
+  }
+
+  @Test
+  public void poll_sendsOneMessagePerPayloadUnlessBatching() {
+    MetadataQueue queue = new MetadataQueue(payload -> payloads.add(payload), 10, 5);
+    queue.offer("{\"a\":1}", null, 0);
+    queue.offer("{\"b\":2}", null, 0);
+    assertEquals(2, queue.poll(0));
+    assertEquals("{\"a\":1}", payloads.get(0));
+    assertEquals("{\"b\":2}", payloads.get(1));
+  }
+
+  @Test
+  public void poll_batchesMessagesAsJsonTextSequence() {
+    MetadataQueue queue = newQueue(10);
+    queue.offer("{\"a\":1}", null, 0);
+    queue.offer("{\"b\":2}", null, 0);
+    assertEquals(1, queue.poll(0));
+    assertEquals("\u001E{\"a\":1}\n\u001E{\"b\":2}\n", payloads.get(0));
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void poll_splitsBatchesAtPayloadLimit() {
+    MetadataQueue queue = newQueue(10);
+    String message = repeat('x', 400);
+    queue.offer(message, null, 0);
+    queue.offer(message, null, 0);
+    queue.offer(message, null, 0);
+    assertEquals(2, queue.poll(0));
+    assertEquals(2 * 402, payloads.get(0).length());
+    assertEquals(message, payloads.get(1));
+    for (String payload : payloads) {
+      assertEquals(true, payload.length() <= MetadataQueue.MAX_PAYLOAD_BYTES);
+    }
+  }
+
+  @Test
+  public void poll_pacesSendsToRateLimit() {
+    MetadataQueue queue = newQueue(100);
+    String message = repeat('x', 1000);
+    for (int i = 0; i < 7; i++) {
+      queue.offer(message, null, 0);
+    }
+    assertEquals(5, queue.poll(0));
+    assertEquals(0, queue.poll(500));
+    assertEquals(500, queue.nextSendDelayMs(500));
+    assertEquals(2, queue.poll(1000));
+    assertEquals(-1, queue.nextSendDelayMs(1000));
+  }
+
+  @Test
+  public void offer_coalescesPendingMessageWithSameKey() {
+    MetadataQueue queue = newQueue(10);
+    queue.offer("first", "score", 0);
+    queue.offer("other", null, 0);
+    assertEquals(MetadataQueue.Result.COALESCED, queue.offer("second", "score", 0));
+    assertEquals(2, queue.size());
+
+    queue.poll(0);
+    assertEquals("\u001Esecond\n\u001Eother\n", payloads.get(0));
+
+    // once sent, the key starts a new message
+    assertEquals(MetadataQueue.Result.QUEUED, queue.offer("third", "score", 0));
+  }
+
+  @Test
+  public void offer_dropsOldestWhenFull() {
+    MetadataQueue queue = newQueue(2);
+    queue.offer("1", "a", 0);
+    queue.offer("2", null, 0);
+    assertEquals(MetadataQueue.Result.QUEUED_DROPPED_OLDEST, queue.offer("3", null, 0));
+    // the dropped message no longer owns its key
+    assertEquals(MetadataQueue.Result.QUEUED_DROPPED_OLDEST, queue.offer("4", "a", 0));
+
+    queue.poll(0);
+    assertEquals("\u001E3\n\u001E4\n", payloads.get(0));
+    assertEquals(2L, queue.getMetrics().get("dropped"));
+  }
+
+  @Test
+  public void metrics_countFailuresAndLatency() {
+    MetadataQueue queue = new MetadataQueue(payload -> false, 10, 5);
+    queue.offer("a", null, 0);
+    queue.poll(40);
+
+    Map<String, Object> metrics = queue.getMetrics();
+    assertEquals(1L, metrics.get("failedPayloads"));
+    assertEquals(0L, metrics.get("sentMessages"));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> latency = (Map<String, Object>) metrics.get("sendLatencyMs");
+    assertEquals(40L, latency.get("max"));
+  }
+}
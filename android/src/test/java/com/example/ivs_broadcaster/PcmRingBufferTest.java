@@ -0,0 +1,110 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class PcmRingBufferTest {
+  private static short[] ramp(int from, int count) {
+    short[] samples = new short[count];
+    for (int i = 0; i < count; i++) {
+      samples[i] = (short) (from + i);
+    }
+    return samples;
+  }
+
+  @Test
+  public void capacity_roundsUpToPowerOfTwo() {
+    assertEquals(8, new PcmRingBuffer(5).capacity());
+    assertEquals(8, new PcmRingBuffer(8).capacity());
+    assertEquals(2, new PcmRingBuffer(0).capacity());
+  }
+
+  @Test
+  public void readsWhatWasWrittenAcrossTheEnd() {
+    PcmRingBuffer ring = new PcmRingBuffer(8);
+    short[] out = new short[8];
+    ring.write(ramp(0, 6), 0, 6);
+    assertEquals(6, ring.read(out, 0, 6));
+
+    // starts at slot 6 and wraps
+    assertEquals(5, ring.write(ramp(100, 5), 0, 5));
+    assertEquals(5, ring.available());
+    assertEquals(5, ring.read(out, 0, 8));
+    assertArrayEquals(ramp(100, 5), Arrays.copyOf(out, 5));
+  }
+
+  @Test
+  public void write_dropsWhatDoesNotFit() {
+    PcmRingBuffer ring = new PcmRingBuffer(4);
+    assertEquals(4, ring.write(ramp(0, 6), 0, 6));
+    assertEquals(2, ring.getDroppedCount());
+
+    short[] out = new short[4];
+    ring.read(out, 0, 4);
+    // the oldest samples are kept
+    assertArrayEquals(ramp(0, 4), out);
+  }
+
+  @Test
+  public void read_returnsShortCountWhenUnderrun() {
+    PcmRingBuffer ring = new PcmRingBuffer(8);
+    ring.write(ramp(0, 3), 0, 3);
+    short[] out = new short[8];
+    assertEquals(3, ring.read(out, 0, 8));
+    assertEquals(0, ring.read(out, 0, 8));
+  }
+
+  @Test
+  public void clear_discardsBufferedSamples() {
+    PcmRingBuffer ring = new PcmRingBuffer(8);
+    ring.write(ramp(0, 5), 0, 5);
+    ring.clear();
+    assertEquals(0, ring.available());
+  }
+
+  @Test
+  public void producerAndConsumerThreadsSeeEverySampleInOrder() throws InterruptedException {
+    PcmRingBuffer ring = new PcmRingBuffer(64);
+    int total = 50_000;
+    Thread producer = new Thread(() -> {
+      short[] chunk = new short[7];
+      int next = 0;
+      while (next < total) {
+        int count = Math.min(chunk.length, total - next);
+        for (int i = 0; i < count; i++) {
+          chunk[i] = (short) (next + i);
+        }
+        int written = 0;
+        while (written < count) {
+          // only offer what fits so nothing is dropped
+          int fit = Math.min(count - written, ring.capacity() - ring.available());
+          if (fit == 0) {
+            Thread.yield();
+          } else {
+            written += ring.write(chunk, written, fit);
+          }
+        }
+        next += count;
+      }
+    });
+    producer.start();
+
+    short[] out = new short[5];
+    int received = 0;
+    while (received < total) {
+      int count = ring.read(out, 0, out.length);
+      if (count == 0) {
+        Thread.yield();
+      }
+      for (int i = 0; i < count; i++) {
+        assertEquals((short) (received + i), out[i]);
+      }
+      received += count;
+    }
+    producer.join();
+    assertEquals(0, ring.getDroppedCount());
+  }
+}
@@ -0,0 +1,96 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class PlaybackQoeRecorderTest {
+  @Test
+  public void startupBuffering_countsTowardsTtffNotRebuffers() {
+    PlaybackQoeRecorder recorder = new PlaybackQoeRecorder();
+    recorder.onLoadStarted(1_000);
+    recorder.onBuffering(1_100);
+    recorder.onPlaying(1_800);
+
+    assertEquals(800, recorder.getTimeToFirstFrameMs());
+    assertEquals(0, recorder.getRebufferCount());
+  }
+
+  @Test
+  public void stalls_areCountedOnceAndTimed() {
+    PlaybackQoeRecorder recorder = new PlaybackQoeRecorder();
+    recorder.onLoadStarted(0);
+    recorder.onPlaying(500);
+    // rebuffering callback followed by the buffering state for the same stall
+    recorder.onBuffering(9_500);
+    recorder.onBuffering(9_500);
+    recorder.onPlaying(10_500);
+    recorder.onStopped(19_500);
+
+    Map<String, Object> summary = recorder.summary(30_000);
+
+    assertEquals(1, summary.get("rebufferCount"));
+    assertEquals(1_000L, summary.get("rebufferMs"));
+    assertEquals(18_000L, summary.get("playingMs"));
+    assertEquals(0.0526, (Double) summary.get("rebufferRatio"), 0.0001);
+  }
+
+  @Test
+  public void renditions_trackTimeAndSwitchDirection() {
+    PlaybackQoeRecorder recorder = new PlaybackQoeRecorder();
+    recorder.onLoadStarted(0);
+    recorder.onQualityChanged("360p", 600_000, 0);
+    recorder.onPlaying(0);
+    recorder.onQualityChanged("720p", 2_500_000, 4_000);
+    recorder.onQualityChanged("480p", 1_200_000, 10_000);
+
+    Map<String, Object> summary = recorder.summary(12_000);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Long> renditions = (Map<String, Long>) summary.get("renditionMs");
+    assertEquals(4_000L, (long) renditions.get("360p"));
+    assertEquals(6_000L, (long) renditions.get("720p"));
+    assertEquals(2_000L, (long) renditions.get("480p"));
+    assertEquals(2, summary.get("bitrateSwitches"));
+    assertEquals(1, summary.get("upSwitches"));
+    assertEquals(1, summary.get("downSwitches"));
+  }
+
+  @Test
+  public void statistics_keepCumulativeFramesAndLatencyPercentiles() {
+    PlaybackQoeRecorder recorder = new PlaybackQoeRecorder();
+    recorder.onLoadStarted(0);
+    recorder.onPlaying(0);
+    for (int i = 1; i <= 100; i++) {
+      recorder.onStatistics(i / 10, i * 30, i <= 90 ? 2_000 : 6_000, i * 1_000);
+    }
+    recorder.onStatistics(0, 0, 0, 101_000);
+
+    Map<String, Object> summary = recorder.summary(101_000);
+
+    assertEquals(10L, summary.get("droppedFrames"));
+    assertEquals(3_000L, summary.get("decodedFrames"));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> latency = (Map<String, Object>) summary.get("liveLatency");
+    assertEquals(100L, latency.get("count"));
+    assertEquals(2_000.0, (double) (long) latency.get("p50"), 2_000 * 0.125);
+    assertEquals(6_000.0, (double) (long) latency.get("p95"), 6_000 * 0.125);
+  }
+
+  @Test
+  public void finish_endsSessionAndIgnoresLaterEvents() {
+    PlaybackQoeRecorder recorder = new PlaybackQoeRecorder();
+    assertNull(recorder.finish(0));
+
+    recorder.onLoadStarted(0);
+    recorder.onPlaying(100);
+    Map<String, Object> summary = recorder.finish(1_100);
+    recorder.onBuffering(2_000);
+
+    assertEquals(1_000L, summary.get("playingMs"));
+    assertEquals(0, recorder.getRebufferCount());
+    assertNull(recorder.finish(3_000));
+  }
+}
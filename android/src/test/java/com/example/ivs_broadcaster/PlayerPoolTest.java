@@ -0,0 +1,167 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class PlayerPoolTest {
+  private static final PlaybackMode MODE = PlaybackMode.BALANCED;
+
+  private static final class FakeLoader implements PlayerPool.Loader<StringBuilder> {
+    final List<String> loaded = new ArrayList<>();
+    final List<PlaybackMode> modes = new ArrayList<>();
+    final List<String> parked = new ArrayList<>();
+    final List<String> destroyed = new ArrayList<>();
+
+    @Override
+    public StringBuilder load(String url, PlaybackMode mode) {
+      loaded.add(url);
+      modes.add(mode);
+      return new StringBuilder(url);
+    }
+
+    @Override
+    public void park(StringBuilder player) {
+      parked.add(player.toString());
+    }
+
+    @Override
+    public void destroy(StringBuilder player) {
+      destroyed.add(player.toString());
+    }
+  }
+
+  @Test
+  public void acquire_reusesLoadedPlayer() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 2);
+
+    StringBuilder first = pool.acquire("a", MODE);
+    pool.release("a", MODE);
+    StringBuilder second = pool.acquire("a", MODE);
+
+    assertSame(first, second);
+    assertEquals(Arrays.asList("a"), loader.loaded);
+    assertEquals(Arrays.asList("a"), loader.parked);
+    assertEquals(1L, pool.getMetrics().get("hits"));
+  }
+
+  @Test
+  public void idlePlayers_areEvictedLeastRecentlyUsedFirst() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 2);
+    pool.acquire("a", MODE);
+    pool.release("a", MODE);
+    pool.acquire("b", MODE);
+    pool.release("b", MODE);
+    pool.acquire("a", MODE);
+    pool.release("a", MODE);
+
+    pool.acquire("c", MODE);
+
+    assertEquals(Arrays.asList("b"), loader.destroyed);
+    assertTrue(pool.contains("a", MODE));
+    assertTrue(pool.contains("c", MODE));
+  }
+
+  @Test
+  public void heldPlayers_areNeverEvicted() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 1);
+    pool.acquire("a", MODE);
+    pool.acquire("b", MODE);
+
+    assertEquals(2, pool.size());
+    assertTrue(loader.destroyed.isEmpty());
+
+    pool.release("a", MODE);
+    assertEquals(Arrays.asList("a"), loader.destroyed);
+  }
+
+  @Test
+  public void preload_keepsFirstUrlsMostRecent() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 2);
+    pool.preload(Arrays.asList("next", "afterNext", "tooFar"), MODE);
+
+    assertEquals(Arrays.asList("afterNext", "next"), loader.loaded);
+
+    pool.acquire("other", MODE);
+    assertTrue(pool.contains("next", MODE));
+    assertFalse(pool.contains("afterNext", MODE));
+  }
+
+  @Test
+  public void evictIdle_keepsHeldPlayers() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 3);
+    pool.acquire("held", MODE);
+    pool.preload(Arrays.asList("x", "y"), MODE);
+
+    pool.evictIdle();
+
+    assertEquals(1, pool.size());
+    assertTrue(pool.contains("held", MODE));
+  }
+
+  @Test
+  public void views_addRoomForTheirPlayersOnTopOfCapacity() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 2);
+    // one platform view and one texture view, each showing its own stream
+    pool.addView();
+    pool.addView();
+    pool.acquire("platform", MODE);
+    pool.acquire("texture", MODE);
+    pool.preload(Arrays.asList("x", "y"), MODE);
+
+    assertEquals(4, pool.getCapacity());
+    assertEquals(4, pool.size());
+    assertTrue(loader.destroyed.isEmpty());
+
+    pool.release("texture", MODE);
+    pool.removeView();
+
+    // the released player was just used, the least likely preload goes instead
+    assertEquals(3, pool.size());
+    assertEquals(Arrays.asList("y"), loader.destroyed);
+  }
+
+  @Test
+  public void setCapacity_shrinksIdlePlayersOnly() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 4);
+    pool.acquire("held", MODE);
+    pool.preload(Arrays.asList("x", "y", "z"), MODE);
+
+    pool.setCapacity(2);
+
+    assertEquals(2, pool.size());
+    assertTrue(pool.contains("held", MODE));
+    assertTrue(pool.contains("x", MODE));
+    assertEquals(1, pool.getHeldCount());
+  }
+
+  @Test
+  public void playbackMode_isPartOfTheKeyAndReachesTheLoader() {
+    FakeLoader loader = new FakeLoader();
+    PlayerPool<StringBuilder> pool = new PlayerPool<>(loader, 3);
+    pool.preload(Arrays.asList("a"), PlaybackMode.SMOOTH);
+
+    // buffering was set up for the preloaded mode, another mode needs its own player
+    StringBuilder interactive = pool.acquire("a", PlaybackMode.INTERACTIVE);
+    StringBuilder smooth = pool.acquire("a", PlaybackMode.SMOOTH);
+
+    assertNotSame(interactive, smooth);
+    assertEquals(Arrays.asList(PlaybackMode.SMOOTH, PlaybackMode.INTERACTIVE), loader.modes);
+    assertEquals(1L, pool.getMetrics().get("hits"));
+    assertFalse(pool.contains("a", MODE));
+  }
+}
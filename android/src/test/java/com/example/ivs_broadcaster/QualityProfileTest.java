@@ -0,0 +1,37 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QualityProfileTest {
+  @Test
+  public void forQuality_mapsFlutterValues() {
+    assertSame(QualityProfile.P360, QualityProfile.forQuality("360"));
+    assertSame(QualityProfile.P720, QualityProfile.forQuality("720"));
+    assertSame(QualityProfile.P1080, QualityProfile.forQuality("1080"));
+    assertSame(QualityProfile.AUTO, QualityProfile.forQuality("auto"));
+    assertSame(QualityProfile.P720, QualityProfile.forQuality(null));
+    assertSame(QualityProfile.P720, QualityProfile.forQuality("4k"));
+  }
+
+  @Test
+  public void p360_neverCapturesMorePixelsThanItEncodes() {
+    QualityProfile profile = QualityProfile.P360;
+    assertEquals(profile.getVideoWidth() * profile.getVideoHeight(),
+        profile.getCaptureWidth() * profile.getCaptureHeight());
+    assertEquals(profile.getRenderWidth(), profile.getVideoWidth());
+    assertEquals(profile.getRenderHeight(), profile.getVideoHeight());
+  }
+
+  @Test
+  public void bitrateBoundsAreOrdered() {
+    for (QualityProfile profile : new QualityProfile[] {
+        QualityProfile.P360, QualityProfile.P720, QualityProfile.P1080, QualityProfile.AUTO}) {
+      assertTrue(profile.toString(), profile.getMinBitrate() <= profile.getInitialBitrate());
+      assertTrue(profile.toString(), profile.getInitialBitrate() <= profile.getMaxBitrate());
+    }
+  }
+}
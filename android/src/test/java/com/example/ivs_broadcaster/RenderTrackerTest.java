@@ -0,0 +1,75 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import org.junit.Test;
+
+public class RenderTrackerTest {
+  private static final long MS = 1_000_000L;
+
+  @Test
+  public void onRendered_measuresFromSubmissionUntilRenderNotSubmitCall() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    FrameRateGovernor governor = new FrameRateGovernor();
+    governor.setEncoderFps(30);
+    RenderTracker tracker = new RenderTracker(metrics, governor);
+
+    // receiveFrame returns at once but every frame takes 50 ms to come out of DeepAR
+    for (int i = 0; i < 50; i++) {
+      tracker.onSubmitted(i * 60 * MS + 10 * MS, i * 60 * MS + 1);
+      tracker.onRendered(i * 60 * MS + 60 * MS);
+    }
+
+    assertEquals(50.0, governor.getAverageProcessingMs(), 0.001);
+    assertEquals(17, governor.getEffectiveFps());
+    assertEquals(50_000L, stats(metrics, "render").get("max"));
+    assertEquals(59_999L, stats(metrics, "total").get("max"));
+  }
+
+  @Test
+  public void onRendered_countsFramesLateOnlyOnceRendered() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    RenderTracker tracker = new RenderTracker(metrics, new FrameRateGovernor());
+
+    tracker.onSubmitted(10 * MS, 1);
+    assertEquals(0L, metrics.snapshot(false).get("late"));
+
+    tracker.onRendered(200 * MS);
+    assertEquals(1L, metrics.snapshot(false).get("late"));
+  }
+
+  @Test
+  public void onRendered_leavesRepeatedFramesOutOfTheTotal() {
+    PipelineMetrics metrics = new PipelineMetrics();
+    RenderTracker tracker = new RenderTracker(metrics, new FrameRateGovernor());
+
+    tracker.onSubmitted(500 * MS, 0);
+    tracker.onRendered(520 * MS);
+
+    assertEquals(1L, stats(metrics, "render").get("count"));
+    assertEquals(0L, stats(metrics, "total").get("count"));
+  }
+
+  @Test
+  public void onRendered_matchesOldestPendingAndForgetsOvertakenFrames() {
+    FrameRateGovernor governor = new FrameRateGovernor();
+    RenderTracker tracker = new RenderTracker(new PipelineMetrics(), governor);
+    tracker.onSubmitted(0, 1);
+    tracker.onSubmitted(10 * MS, 1);
+    // overtakes the frame submitted at 0, which DeepAR will never render
+    tracker.onSubmitted(20 * MS, 1);
+
+    tracker.onRendered(30 * MS);
+    assertEquals(20.0, governor.getAverageProcessingMs(), 0.001);
+
+    tracker.clear();
+    tracker.onRendered(40 * MS);
+    assertEquals(20.0, governor.getAverageProcessingMs(), 0.001);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> stats(PipelineMetrics metrics, String stage) {
+    return (Map<String, Object>) metrics.snapshot(false).get(stage);
+  }
+}
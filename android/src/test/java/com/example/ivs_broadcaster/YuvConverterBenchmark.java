@@ -0,0 +1,62 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Rough throughput comparison between the RGBA copy and the NV21 packing of a 1080p frame.
+ * Ignored in regular runs; remove the {@code @Ignore} locally and run
+ * `./gradlew testDebugUnitTest --tests '*YuvConverterBenchmark'`. It fails, with both timings in
+ * the message, if either path no longer fits a 30 fps frame interval.
+ */
+@Ignore("benchmark, run on demand")
+public class YuvConverterBenchmark {
+  private static final int WIDTH = 1920;
+  private static final int HEIGHT = 1080;
+  private static final int WARMUP = 20;
+  private static final int ITERATIONS = 100;
+  private static final long FRAME_BUDGET_NANOS = 1_000_000_000L / 30;
+
+  @Test
+  public void compareRgbaCopyWithNv21Packing() {
+    // camera style planes: padded luma rows and semi-planar chroma
+    int yStride = WIDTH + 64;
+    ByteBuffer y = ByteBuffer.allocateDirect(yStride * HEIGHT);
+    ByteBuffer u = ByteBuffer.allocateDirect(yStride * (HEIGHT / 2 - 1) + WIDTH - 1);
+    ByteBuffer v = ByteBuffer.allocateDirect(yStride * (HEIGHT / 2 - 1) + WIDTH - 1);
+    ByteBuffer rgba = ByteBuffer.allocateDirect(WIDTH * 4 * HEIGHT);
+
+    FramePool pool = new FramePool(1);
+    YuvConverter converter = new YuvConverter();
+
+    long rgbaNanos = run(() -> {
+      FramePool.Frame frame = pool.acquire(WIDTH * 4 * HEIGHT);
+      frame.copyFrom(rgba, WIDTH * 4, WIDTH * 4, HEIGHT);
+      frame.release();
+    });
+    long yuvNanos = run(() -> {
+      FramePool.Frame frame = pool.acquire(YuvConverter.nv21Size(WIDTH, HEIGHT));
+      converter.packNv21(y, yStride, u, v, yStride, 2, WIDTH, HEIGHT, frame.getBuffer());
+      frame.release();
+    });
+
+    String timings = String.format("RGBA copy %.3f ms/frame (%d bytes), NV21 pack %.3f ms/frame (%d bytes)",
+        rgbaNanos / 1e6, WIDTH * 4 * HEIGHT, yuvNanos / 1e6, YuvConverter.nv21Size(WIDTH, HEIGHT));
+    assertTrue(timings, rgbaNanos < FRAME_BUDGET_NANOS);
+    assertTrue(timings, yuvNanos < FRAME_BUDGET_NANOS);
+  }
+
+  private static long run(Runnable body) {
+    for (int i = 0; i < WARMUP; i++) {
+      body.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      body.run();
+    }
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+}
@@ -0,0 +1,75 @@
+package com.example.ivs_broadcaster;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class YuvConverterTest {
+  @Test
+  public void nv21Size_roundsChromaUp() {
+    assertEquals(4 * 2 + 2 * 2, YuvConverter.nv21Size(4, 2));
+    assertEquals(3 * 3 + 2 * 2 * 2, YuvConverter.nv21Size(3, 3));
+  }
+
+  @Test
+  public void packNv21_interleavesPlanarChroma() {
+    // 4x2 image, planar chroma with pixel stride 1
+    ByteBuffer y = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    ByteBuffer u = ByteBuffer.wrap(new byte[] {10, 11});
+    ByteBuffer v = ByteBuffer.wrap(new byte[] {20, 21});
+    ByteBuffer out = ByteBuffer.allocate(YuvConverter.nv21Size(4, 2));
+
+    new YuvConverter().packNv21(y, 4, u, v, 2, 1, 4, 2, out);
+
+    assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 20, 10, 21, 11}, out.array());
+  }
+
+  @Test
+  public void packNv21_handlesSemiPlanarChromaAndRowPadding() {
+    // 4x4 image, luma stride 6, chroma pixel stride 2 and row stride 6 like NV12 backed buffers
+    byte[] luma = new byte[6 * 3 + 4];
+    for (int row = 0; row < 4; row++) {
+      for (int col = 0; col < 4; col++) {
+        luma[row * 6 + col] = (byte) (row * 4 + col);
+      }
+    }
+    // last chroma row stops one byte short of the stride
+    ByteBuffer u = ByteBuffer.wrap(new byte[] {30, -1, 31, -1, 0, 0, 32, -1, 33});
+    ByteBuffer v = ByteBuffer.wrap(new byte[] {40, -1, 41, -1, 0, 0, 42, -1, 43});
+    ByteBuffer out = ByteBuffer.allocate(YuvConverter.nv21Size(4, 4));
+
+    new YuvConverter().packNv21(ByteBuffer.wrap(luma), 6, u, v, 6, 2, 4, 4, out);
+
+    byte[] expected = new byte[24];
+    for (int i = 0; i < 16; i++) {
+      expected[i] = (byte) i;
+    }
+    byte[] chroma = {40, 30, 41, 31, 42, 32, 43, 33};
+    System.arraycopy(chroma, 0, expected, 16, chroma.length);
+    assertArrayEquals(expected, out.array());
+  }
+
+  @Test
+  public void packNv21_leavesSourcePositionsUntouched() {
+    ByteBuffer y = ByteBuffer.wrap(new byte[4]);
+    ByteBuffer u = ByteBuffer.wrap(new byte[1]);
+    ByteBuffer v = ByteBuffer.wrap(new byte[1]);
+    y.position(3);
+    ByteBuffer out = ByteBuffer.allocate(YuvConverter.nv21Size(2, 2));
+
+    new YuvConverter().packNv21(y, 2, u, v, 1, 1, 2, 2, out);
+
+    assertEquals(3, y.position());
+    assertEquals(4, y.limit());
+    assertEquals(0, u.position());
+    assertEquals(out.capacity(), out.position());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void packNv21_rejectsSmallOutput() {
+    ByteBuffer plane = ByteBuffer.allocate(4);
+    new YuvConverter().packNv21(plane, 2, plane, plane, 1, 1, 2, 2, ByteBuffer.allocate(4));
+  }
+}
@@ -2,8 +2,12 @@ class VideoCapturingModel {
   final bool isRecording;
   String? videoPath;
 
+  /// Frames, bytes, duration and encode time of a finished recording.
+  Map<String, dynamic>? metrics;
+
   VideoCapturingModel({
     required this.isRecording,
     this.videoPath,
+    this.metrics,
   });
 }
@@ -4,6 +4,8 @@ import 'package:flutter/foundation.dart';
 import 'package:flutter/gestures.dart';
 import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
+import 'package:ivs_broadcaster/Broadcaster/ivs_broadcaster_platform_interface.dart';
+import 'package:ivs_broadcaster/helpers/enums.dart';
 
 /// A stateful widget that provides a preview of the broadcaster view.
 ///
@@ -11,7 +13,26 @@ import 'package:flutter/services.dart';
 /// It uses `AutomaticKeepAliveClientMixin` to ensure that the platform view is kept alive
 /// and not destroyed when the widget is offscreen or when the widget tree rebuilds.
 class BroadcaterPreview extends StatefulWidget {
-  const BroadcaterPreview({super.key});
+  const BroadcaterPreview({
+    super.key,
+    this.ingestMode = CaptureIngestMode.rgba,
+    this.extractEffects = false,
+    this.useTexture = false,
+  });
+
+  /// Pixel format the Android camera path uses. Ignored on iOS.
+  final CaptureIngestMode ingestMode;
+
+  /// Whether Android extracts AR effects into the cache directory before loading them.
+  /// Without extraction, preloading the next effects only reads them once so the
+  /// OS is likely to still have them cached; DeepAR still decodes each effect when
+  /// it is switched to.
+  final bool extractEffects;
+
+  /// Whether Android renders the preview into a Flutter texture instead of a
+  /// platform view. Flutter then composites it like any other widget, which is
+  /// much cheaper when many widgets are drawn on top of the preview.
+  final bool useTexture;
 
   @override
   State<BroadcaterPreview> createState() => _BroadcaterPreviewState();
@@ -22,6 +43,9 @@ class _BroadcaterPreviewState extends State<BroadcaterPreview>
   /// Holds the platform-specific view widget (either AndroidView or UiKitView).
   Widget? _platformView;
 
+  /// Texture id and size of the preview in texture mode, once known.
+  Map<String, dynamic>? _texture;
+
   @override
   void initState() {
     super.initState();
@@ -36,9 +60,15 @@ class _BroadcaterPreviewState extends State<BroadcaterPreview>
   void _initializePlatformView() {
     if (Platform.isAndroid) {
       // Create an Android-specific view for the broadcaster.
-      _platformView = const AndroidView(
+      _platformView = AndroidView(
         viewType: 'ivs_broadcaster',
-        creationParamsCodec: StandardMessageCodec(),
+        creationParams: <String, dynamic>{
+          'ingestMode': widget.ingestMode.name,
+          'extractEffects': widget.extractEffects,
+          if (widget.useTexture) 'previewMode': 'texture',
+        },
+        creationParamsCodec: const StandardMessageCodec(),
+        onPlatformViewCreated: _onPlatformViewCreated,
       );
     } else if (Platform.isIOS) {
       // Create an iOS-specific view for the broadcaster.
@@ -65,11 +95,43 @@ class _BroadcaterPreviewState extends State<BroadcaterPreview>
     }
   }
 
+  void _onPlatformViewCreated(int viewId) async {
+    IvsBroadcasterPlatform.instance.bindView(viewId);
+    if (!widget.useTexture) {
+      return;
+    }
+    final texture = await IvsBroadcasterPlatform.instance.getPreviewTexture();
+    if (mounted) {
+      setState(() => _texture = texture);
+    }
+  }
+
   @override
   Widget build(BuildContext context) {
     super.build(context);
-    // Return the platform view if it was initialized, or an empty widget if not.
-    return _platformView ?? const SizedBox.shrink();
+    if (!widget.useTexture || !Platform.isAndroid) {
+      // Return the platform view if it was initialized, or an empty widget if not.
+      return _platformView ?? const SizedBox.shrink();
+    }
+    final texture = _texture;
+    // The platform view still owns the native preview but is never painted.
+    return Stack(
+      fit: StackFit.expand,
+      children: [
+        Offstage(child: _platformView),
+        if (texture != null)
+          ClipRect(
+            child: FittedBox(
+              fit: BoxFit.cover,
+              child: SizedBox(
+                width: (texture['width'] as int).toDouble(),
+                height: (texture['height'] as int).toDouble(),
+                child: Texture(textureId: texture['textureId'] as int),
+              ),
+            ),
+          ),
+      ],
+    );
   }
 
   @override
@@ -2,6 +2,7 @@
 
 import 'dart:async';
 import 'dart:convert';
+import 'dart:typed_data';
 
 import 'package:flutter/services.dart';
 import 'package:ivs_broadcaster/Broadcaster/Classes/camera_brightness.dart';
@@ -42,6 +43,21 @@ class IvsBroadcaster {
   StreamController<BroadcastHealth> broadcastHealth =
       StreamController<BroadcastHealth>.broadcast();
 
+  /// A stream controller for the periodic AR pipeline latency snapshots (Android only).
+  StreamController<Map<String, dynamic>> pipelineMetrics =
+      StreamController<Map<String, dynamic>>.broadcast();
+
+  /// A stream controller for how long each [changeCamera] took until the first
+  /// frame of the new camera reached the AR pipeline (Android only).
+  StreamController<Duration> cameraSwitchLatency =
+      StreamController<Duration>.broadcast();
+
+  /// A stream controller for coalesced transmission and audio stats (Android only):
+  /// measuredBitrate, recommendedBitrate, rtt, audioPeak, audioRms and a smoothed
+  /// healthScore between 0 and 100.
+  StreamController<Map<String, dynamic>> broadcastStats =
+      StreamController<Map<String, dynamic>>.broadcast();
+
   /// Focus Point Stream Controller
   StreamController<Offset> focusPoint = StreamController<Offset>.broadcast();
   StreamController<double> zoomStream = StreamController<double>.broadcast();
@@ -107,11 +123,29 @@ class IvsBroadcaster {
         final zoom = double.parse(settings["zoom"].toString());
         zoomStream.add(zoom);
       }
+      if (settings.containsKey('pipelineMetrics')) {
+        pipelineMetrics.add(
+          Map<String, dynamic>.from(settings['pipelineMetrics'] as Map),
+        );
+      }
+      if (settings.containsKey('cameraSwitchMs')) {
+        cameraSwitchLatency.add(
+          Duration(milliseconds: (settings['cameraSwitchMs'] as num).toInt()),
+        );
+      }
+      if (settings.containsKey('stats')) {
+        broadcastStats.add(
+          Map<String, dynamic>.from(settings['stats'] as Map),
+        );
+      }
       if (settings.containsKey('isRecording')) {
         onVideoCapturingStream.add(
           VideoCapturingModel(
             isRecording: settings['isRecording'],
             videoPath: settings['videoPath'],
+            metrics: settings['recordingMetrics'] == null
+                ? null
+                : Map<String, dynamic>.from(settings['recordingMetrics'] as Map),
           ),
         );
       }
@@ -122,7 +156,9 @@ class IvsBroadcaster {
   ///
   /// * [cameraType]: The camera to switch to, either [CameraType.FRONT] or [CameraType.BACK].
   ///
-  /// Returns a [Future] that completes when the camera has been changed.
+  /// Returns a [Future] that completes when the camera has been changed. On
+  /// Android the time until the new camera's first frame is reported on
+  /// [cameraSwitchLatency].
   Future<void> changeCamera(CameraType cameraType) {
     return broadcater.changeCamera(cameraType);
   }
@@ -147,6 +183,8 @@ class IvsBroadcaster {
   /// * [streamKey]: The stream key for the broadcast.
   /// * [quality]: The desired broadcast quality, default is [IvsQuality.q720].
   /// * [cameraType]: The camera to use for the preview, default is [CameraType.BACK].
+  /// * [customAudio]: Capture the microphone in the plugin so audio from
+  ///   [pushAudio] can be mixed in and muting stops the capture (Android only).
   ///
   /// Returns a [Future] that completes when the preview has started.
   Future<void> startPreview({
@@ -155,6 +193,7 @@ class IvsBroadcaster {
     IvsQuality quality = IvsQuality.q720,
     CameraType cameraType = CameraType.BACK,
     bool autoReconnect = false,
+    bool customAudio = false,
   }) async {
     return await broadcater.startPreview(
       imgset: imgset,
@@ -162,6 +201,7 @@ class IvsBroadcaster {
       cameraType: cameraType,
       quality: quality,
       autoReconnect: autoReconnect,
+      customAudio: customAudio,
       onData: (data) {
         if (data is String) {
           _parseRawData(jsonDecode(data));
@@ -267,6 +307,44 @@ class IvsBroadcaster {
     await broadcater.stopVideoCapture();
   }
 
+  /// Keeps the last [window] of the broadcast's video encoded in memory,
+  /// without writing anything to disk until [saveReplay] is called.
+  ///
+  /// Pass [Duration.zero] to stop buffering. Windows over 60 seconds are
+  /// rejected. Android only.
+  Future<void> setReplayWindow(Duration window) async {
+    await broadcater.setReplayWindow(window.inSeconds);
+  }
+
+  /// Saves the buffered window as an MP4 clip while the broadcast goes on.
+  ///
+  /// Returns the clip's `path` together with its frame count, size, duration
+  /// and write time.
+  Future<Map<String, dynamic>> saveReplay() {
+    return broadcater.saveReplay();
+  }
+
+  /// Mixes [pcm] (48 kHz, mono, 16-bit little-endian) into the broadcast's
+  /// audio, for example background music.
+  ///
+  /// Needs a preview started with `customAudio: true`. Push in small chunks
+  /// ahead of playback; returns how many samples were queued, anything beyond
+  /// the two-second buffer is dropped.
+  Future<int> pushAudio(Uint8List pcm) {
+    return broadcater.pushAudio(pcm);
+  }
+
+  /// Sets the gain applied to audio from [pushAudio], 1.0 leaves it unchanged.
+  Future<void> setAppAudioGain(double gain) {
+    return broadcater.setAppAudioGain(gain);
+  }
+
+  /// Returns the latest peak and RMS levels in dBFS with underrun and drop
+  /// counters of the custom audio pipeline.
+  Future<Map<String, dynamic>> getAudioMetrics() {
+    return broadcater.getAudioMetrics();
+  }
+
   /// Gets the current camera brightness settings.
   ///
   /// Returns a [Future] that completes with the current [CameraBrightness].
@@ -286,4 +364,67 @@ class IvsBroadcaster {
       throw Exception("$e [Switch Effect]");
     }
   }
+
+  /// Returns the AR effects that can be passed to [switchEffect].
+  Future<List<String>> getAvailableEffects() {
+    return broadcater.getAvailableEffects();
+  }
+
+  /// Returns effect switch latency metrics (count, last, average and max in ms).
+  Future<Map<String, dynamic>> getEffectMetrics() {
+    return broadcater.getEffectMetrics();
+  }
+
+  /// Caps the rate frames are fed into the AR pipeline, 0 follows the encoder rate.
+  Future<Map<String, dynamic>> setTargetFps(int fps) {
+    return broadcater.setTargetFps(fps);
+  }
+
+  /// Returns the requested (`targetFps`) and effective (`effectiveFps`) AR frame rates.
+  ///
+  /// While broadcasting on Android it also reports the adaptive bitrate
+  /// policy's current `bitrateCeiling`, `networkFps` and `abrReason`.
+  /// `bitrateCeiling` is advisory: the running session keeps its bitrate
+  /// range and the ceiling only seeds the next session's initial bitrate.
+  /// `networkFps` caps the frames fed to the AR pipeline only, so it has no
+  /// effect while no effect is applied; `networkFpsApplied` tells whether
+  /// the cap currently holds.
+  Future<Map<String, dynamic>> getTargetFps() {
+    return broadcater.getTargetFps();
+  }
+
+  /// Returns per-stage latency percentiles (in microseconds) of the Android AR pipeline.
+  Future<Map<String, dynamic>> getPipelineMetrics() {
+    return broadcater.getPipelineMetrics();
+  }
+
+  /// Sets how often [broadcastStats], quality and health updates are pushed (default 1000 ms).
+  Future<int> setStatsInterval(int intervalMs) {
+    return broadcater.setStatsInterval(intervalMs);
+  }
+
+  /// Sends timed [metadata] with the stream, e.g. quiz answers or reactions.
+  ///
+  /// Bursts are paced to what IVS accepts; pass a [key] to let a newer message
+  /// replace one that was not sent yet.
+  Future<String> sendTimedMetadata(String metadata, {String? key}) {
+    return broadcater.sendTimedMetadata(metadata, key: key);
+  }
+
+  /// Returns the counters of the timed metadata queue.
+  Future<Map<String, dynamic>> getMetadataMetrics() {
+    return broadcater.getMetadataMetrics();
+  }
+
+  /// Packs bursts of timed metadata into fewer cues so more messages fit in
+  /// the IVS rate limit. Android only, off by default.
+  ///
+  /// A batched cue is an RFC 7464 JSON text sequence: each message starts with
+  /// the record separator `\u001E` and ends with a line feed. A lone message is
+  /// still sent as is. This plugin's Android player splits such cues back into
+  /// messages; its iOS player and other IVS players deliver the whole sequence
+  /// as one cue, so only enable this when every viewer splits them.
+  Future<void> setMetadataBatching(bool enabled) {
+    return broadcater.setMetadataBatching(enabled);
+  }
 }
@@ -15,15 +15,34 @@ import 'ivs_broadcaster_platform_interface.dart';
 /// like camera control, permissions, and streaming setup.
 class MethodChannelIvsBroadcaster extends IvsBroadcasterPlatform {
   /// The method channel used to communicate with the native platform.
+  ///
+  /// Starts on the legacy channel shared by all previews and moves to the
+  /// preview's own channel once [bindView] is called.
   @visibleForTesting
-  final methodChannel = const MethodChannel('ivs_broadcaster');
+  MethodChannel methodChannel = const MethodChannel('ivs_broadcaster');
 
   /// The event channel used to receive real-time broadcasting data from the native platform.
-  final eventChannel = const EventChannel("ivs_broadcaster_event");
+  EventChannel eventChannel = const EventChannel("ivs_broadcaster_event");
 
   /// A subscription to the event stream, listening for real-time data and errors during broadcasting.
   StreamSubscription? eventStream;
 
+  void Function(dynamic)? _onData;
+  void Function(dynamic)? _onError;
+
+  @override
+  void bindView(int viewId) {
+    methodChannel = MethodChannel('ivs_broadcaster/$viewId');
+    eventChannel = EventChannel("ivs_broadcaster_event/$viewId");
+    if (eventStream != null) {
+      // move the running subscription over to the preview's own event channel
+      eventStream?.cancel();
+      eventStream = eventChannel
+          .receiveBroadcastStream()
+          .listen(_onData, onError: _onError);
+    }
+  }
+
   /// Switches the camera to the specified [CameraType].
   ///
   /// * [cameraType]: The camera to switch to, either [CameraType.FRONT] or [CameraType.BACK].
@@ -94,6 +113,7 @@ class MethodChannelIvsBroadcaster extends IvsBroadcasterPlatform {
     void Function(dynamic)? onData,
     void Function(dynamic)? onError,
     bool autoReconnect = false,
+    bool customAudio = false,
   }) async {
     try {
       // Request permissions before starting the preview.
@@ -114,6 +134,7 @@ class MethodChannelIvsBroadcaster extends IvsBroadcasterPlatform {
         'cameraType': cameraType.index.toString(),
         "quality": quality.description,
         'autoReconnect': autoReconnect,
+        'customAudio': customAudio,
       });
       // Cancel any existing event stream before starting a new one.
       try {
@@ -122,6 +143,8 @@ class MethodChannelIvsBroadcaster extends IvsBroadcasterPlatform {
         log("Error Cancelling Event Stream: $e");
       }
       // Start listening to the event stream for real-time data and errors.
+      _onData = onData;
+      _onError = onError;
       eventStream = eventChannel
           .receiveBroadcastStream()
           .listen(onData, onError: onError);
@@ -266,6 +289,71 @@ class MethodChannelIvsBroadcaster extends IvsBroadcasterPlatform {
     }
   }
 
+  @override
+  Future<void> setReplayWindow(int seconds) async {
+    try {
+      await methodChannel.invokeMethod<void>(
+        "setReplayWindow",
+        <String, dynamic>{
+          'seconds': seconds,
+        },
+      );
+    } catch (e) {
+      throw Exception("$e [Set Replay Window]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> saveReplay() async {
+    try {
+      final result =
+          await methodChannel.invokeMethod<Map<Object?, Object?>>("saveReplay");
+      return Map<String, dynamic>.from(result ?? {});
+    } catch (e) {
+      throw Exception("$e [Save Replay]");
+    }
+  }
+
+  @override
+  Future<int> pushAudio(Uint8List pcm) async {
+    try {
+      final queued = await methodChannel.invokeMethod<int>(
+        "pushAudio",
+        <String, dynamic>{
+          'pcm': pcm,
+        },
+      );
+      return queued ?? 0;
+    } catch (e) {
+      throw Exception("$e [Push Audio]");
+    }
+  }
+
+  @override
+  Future<void> setAppAudioGain(double gain) async {
+    try {
+      await methodChannel.invokeMethod<void>(
+        "setAppAudioGain",
+        <String, dynamic>{
+          'gain': gain,
+        },
+      );
+    } catch (e) {
+      throw Exception("$e [Set App Audio Gain]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getAudioMetrics() async {
+    try {
+      final metrics = await methodChannel
+          .invokeMethod<Map<Object?, Object?>>("getAudioMetrics");
+      return Map<String, dynamic>.from(metrics ?? {});
+    } catch (e) {
+      throw Exception("$e [Get Audio Metrics]");
+    }
+  }
+
   @override
   Future<CameraBrightness> getCameraBrightness() async {
     try {
@@ -304,4 +392,130 @@ class MethodChannelIvsBroadcaster extends IvsBroadcasterPlatform {
       throw Exception("$e [Switch Effect]");
     }
   }
+
+  @override
+  Future<List<String>> getAvailableEffects() async {
+    try {
+      final effects =
+          await methodChannel.invokeMethod<List<dynamic>>("getAvailableEffects");
+      return effects?.cast<String>() ?? [];
+    } catch (e) {
+      throw Exception("$e [Get Available Effects]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getEffectMetrics() async {
+    try {
+      final metrics = await methodChannel
+          .invokeMethod<Map<Object?, Object?>>("getEffectMetrics");
+      return Map<String, dynamic>.from(metrics ?? {});
+    } catch (e) {
+      throw Exception("$e [Get Effect Metrics]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> setTargetFps(int fps) async {
+    try {
+      final info = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        "setTargetFps",
+        <String, dynamic>{
+          'fps': fps,
+        },
+      );
+      return Map<String, dynamic>.from(info ?? {});
+    } catch (e) {
+      throw Exception("$e [Set Target Fps]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getTargetFps() async {
+    try {
+      final info =
+          await methodChannel.invokeMethod<Map<Object?, Object?>>("getTargetFps");
+      return Map<String, dynamic>.from(info ?? {});
+    } catch (e) {
+      throw Exception("$e [Get Target Fps]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getPipelineMetrics() async {
+    try {
+      final metrics = await methodChannel
+          .invokeMethod<Map<Object?, Object?>>("getPipelineMetrics");
+      return Map<String, dynamic>.from(metrics ?? {});
+    } catch (e) {
+      throw Exception("$e [Get Pipeline Metrics]");
+    }
+  }
+
+  @override
+  Future<int> setStatsInterval(int intervalMs) async {
+    try {
+      final applied = await methodChannel.invokeMethod<int>(
+        "setStatsInterval",
+        <String, dynamic>{
+          'intervalMs': intervalMs,
+        },
+      );
+      return applied ?? intervalMs;
+    } catch (e) {
+      throw Exception("$e [Set Stats Interval]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>?> getPreviewTexture() async {
+    try {
+      final info = await methodChannel
+          .invokeMethod<Map<Object?, Object?>>("getPreviewTexture");
+      return info == null ? null : Map<String, dynamic>.from(info);
+    } catch (e) {
+      throw Exception("$e [Get Preview Texture]");
+    }
+  }
+
+  @override
+  Future<String> sendTimedMetadata(String metadata, {String? key}) async {
+    try {
+      final result = await methodChannel.invokeMethod<String>(
+        "sendTimeMetaData",
+        <String, dynamic>{
+          'metadata': metadata,
+          'key': key,
+        },
+      );
+      return result ?? "queued";
+    } catch (e) {
+      throw Exception("$e [Send Timed Metadata]");
+    }
+  }
+
+  @override
+  Future<void> setMetadataBatching(bool enabled) async {
+    try {
+      await methodChannel.invokeMethod<void>(
+        "setMetadataBatching",
+        <String, dynamic>{
+          'enabled': enabled,
+        },
+      );
+    } catch (e) {
+      throw Exception("$e [Set Metadata Batching]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getMetadataMetrics() async {
+    try {
+      final metrics = await methodChannel
+          .invokeMethod<Map<Object?, Object?>>("getMetadataMetrics");
+      return Map<String, dynamic>.from(metrics ?? {});
+    } catch (e) {
+      throw Exception("$e [Get Metadata Metrics]");
+    }
+  }
 }
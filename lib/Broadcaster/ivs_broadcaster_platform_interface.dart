@@ -1,3 +1,5 @@
+import 'dart:typed_data';
+
 import 'package:ivs_broadcaster/Broadcaster/Classes/camera_brightness.dart';
 import 'package:plugin_platform_interface/plugin_platform_interface.dart';
 
@@ -53,6 +55,8 @@ abstract class IvsBroadcasterPlatform extends PlatformInterface {
   /// * [cameraType]: The camera to use for the preview, default is [CameraType.BACK].
   /// * [onData]: A callback function to handle real-time data from the event stream.
   /// * [onError]: A callback function to handle errors from the event stream.
+  /// * [customAudio]: Capture the microphone in the plugin so app audio can be
+  ///   mixed in with [pushAudio] (Android only).
   ///
   /// Returns a [Future] that completes when the preview has started.
   Future<void> startPreview({
@@ -63,6 +67,7 @@ abstract class IvsBroadcasterPlatform extends PlatformInterface {
     void Function(dynamic)? onData,
     void Function(dynamic)? onError,
     bool autoReconnect,
+    bool customAudio,
   });
 
   /// Starts the broadcast.
@@ -119,9 +124,80 @@ abstract class IvsBroadcasterPlatform extends PlatformInterface {
 
   Future<void> stopVideoCapture();
 
+  /// Keeps the last [seconds] of the broadcast's video in memory so it can be
+  /// saved with [saveReplay]; zero stops buffering (Android only). At most 60
+  /// seconds can be kept, longer windows fail and leave buffering unchanged.
+  Future<void> setReplayWindow(int seconds);
+
+  /// Writes the buffered video to an MP4 and returns its `path` with frame,
+  /// size, duration and write time metrics (Android only).
+  Future<Map<String, dynamic>> saveReplay();
+
+  /// Queues 48 kHz mono 16-bit little-endian PCM to be mixed with the
+  /// microphone and returns how many samples fit (Android, custom audio only).
+  Future<int> pushAudio(Uint8List pcm);
+
+  /// Scales the audio passed to [pushAudio] (Android, custom audio only).
+  Future<void> setAppAudioGain(double gain);
+
+  /// Returns peak and RMS levels in dBFS, underrun and drop counters of the
+  /// audio pipeline (Android only).
+  Future<Map<String, dynamic>> getAudioMetrics();
+
   Future<CameraBrightness> getCameraBrightness();
 
   Future<void> setCameraBrightness(CameraBrightness brightness);
 
   Future<void> switchEffect(String effectName);
+
+  /// Returns the AR effects bundled with the app, starting with "none".
+  Future<List<String>> getAvailableEffects();
+
+  /// Returns effect switch latency metrics collected on the native side.
+  Future<Map<String, dynamic>> getEffectMetrics();
+
+  /// Caps the rate frames are fed into the AR pipeline. Pass 0 to follow the encoder rate.
+  ///
+  /// Returns the requested and effective frame rates.
+  Future<Map<String, dynamic>> setTargetFps(int fps);
+
+  /// Returns the requested and effective AR pipeline frame rates. While
+  /// broadcasting on Android it adds the advisory `bitrateCeiling`, which only
+  /// applies to the next session, and the `networkFps` cap, which only applies
+  /// while an effect routes frames through the AR pipeline.
+  Future<Map<String, dynamic>> getTargetFps();
+
+  /// Returns per-stage latency percentiles (in microseconds) of the Android AR pipeline,
+  /// together with dropped and late frame counters. `total` and `late` run from the camera
+  /// sensor until DeepAR has rendered the frame; `render`, `total` and `late` are only
+  /// measured while the texture preview, a recording or the replay buffer is active.
+  Future<Map<String, dynamic>> getPipelineMetrics();
+
+  /// Sets how often coalesced transmission and audio stats are pushed, in milliseconds.
+  ///
+  /// Returns the interval actually applied.
+  Future<int> setStatsInterval(int intervalMs);
+
+  /// Queues timed [metadata] to be sent with the stream. Messages are paced to
+  /// the IVS limits natively, and batched when [setMetadataBatching] is on; a
+  /// pending message with the same [key] is replaced.
+  ///
+  /// Returns whether the message was queued, coalesced or rejected.
+  Future<String> sendTimedMetadata(String metadata, {String? key});
+
+  /// Returns queue depth, drop and send latency counters of the timed metadata
+  /// queue.
+  Future<Map<String, dynamic>> getMetadataMetrics();
+
+  /// Packs several pending timed metadata messages into one cue (Android only,
+  /// off by default).
+  Future<void> setMetadataBatching(bool enabled);
+
+  /// Routes calls and events to the channels of the preview [viewId] instead of
+  /// the shared legacy channels (Android only).
+  void bindView(int viewId);
+
+  /// Returns the id and size of the Flutter texture the preview renders into
+  /// when it was created in texture mode, or null (Android only).
+  Future<Map<String, dynamic>?> getPreviewTexture();
 }
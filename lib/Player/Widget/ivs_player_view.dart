@@ -17,12 +17,17 @@ class IvsPlayerView extends StatefulWidget {
   /// The aspect ratio for the player view, defaults to 16:9 if not specified.
   final double? aspectRatio;
 
+  /// Renders into a Flutter texture instead of a platform view on Android,
+  /// which avoids the cost of compositing a platform view. Default is false.
+  final bool useTexture;
+
   /// Constructor for [IvsPlayerView]. Requires an [IvsPlayer] controller.
   const IvsPlayerView({
     Key? key,
     required this.controller,
     this.autoDispose = true,
     this.aspectRatio,
+    this.useTexture = false,
   }) : super(key: key);
 
   @override
@@ -52,6 +57,9 @@ class _IvsPlayerViewState extends State<IvsPlayerView>
     if (widget.autoDispose) {
       _player?.stopPlayer();
     }
+    if (widget.useTexture) {
+      widget.controller.disposeTexture();
+    }
     super.dispose();
   }
 
@@ -61,7 +69,7 @@ class _IvsPlayerViewState extends State<IvsPlayerView>
     super.build(context);
     return AspectRatio(
       aspectRatio: widget.aspectRatio ?? 16 / 9,
-      child: widget.controller.buildPlayerView(),
+      child: widget.controller.buildPlayerView(useTexture: widget.useTexture),
     );
   }
 
@@ -8,6 +8,7 @@ import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
 import 'package:http/http.dart' as http;
 import 'package:ivs_broadcaster/Player/ivs_player_interface.dart';
+import 'package:ivs_broadcaster/Player/ivs_player_method_channel.dart';
 import 'package:ivs_broadcaster/helpers/enums.dart';
 import 'package:ivs_broadcaster/helpers/strings.dart';
 
@@ -15,7 +16,13 @@ import 'package:ivs_broadcaster/helpers/strings.dart';
 /// It manages the playback, streaming quality, and state of the player, and provides various streams for tracking player status.
 class IvsPlayer {
   // Private constructor for the singleton instance
-  IvsPlayer._();
+  IvsPlayer._() : _controller = IvsPlayerInterface.instance;
+
+  /// Creates an independent controller for one more player view, e.g. for a grid
+  /// of live previews (Android only).
+  ///
+  /// It talks to its own view once that view is created; [startPlayer] waits for it.
+  IvsPlayer.create() : _controller = IvsPlayerMethodChannel(waitForView: true);
 
   /// The singleton instance of [IvsPlayer].
   static final IvsPlayer instance = IvsPlayer._();
@@ -32,9 +39,10 @@ class IvsPlayer {
   /// - If the platform is not supported, a message is displayed.
   Widget _getView() {
     if (Platform.isAndroid) {
-      return const AndroidView(
+      return AndroidView(
         viewType: 'ivs_player',
-        creationParamsCodec: StandardMessageCodec(),
+        creationParamsCodec: const StandardMessageCodec(),
+        onPlatformViewCreated: _controller.bindView,
       );
     } else if (Platform.isIOS) {
       return const UiKitView(
@@ -53,14 +61,49 @@ class IvsPlayer {
     );
   }
 
+  /// Texture the player renders into when built with `useTexture`.
+  Future<int>? _texture;
+
+  /// Draws the player's texture, creating it on first use (Android only).
+  Widget _getTextureView() {
+    _texture ??= _controller.createTexture();
+    return FutureBuilder<int>(
+      future: _texture,
+      builder: (context, snapshot) {
+        final textureId = snapshot.data;
+        if (textureId == null) {
+          return const SizedBox.expand();
+        }
+        return Texture(textureId: textureId);
+      },
+    );
+  }
+
   /// Builds the player view widget.
   /// The player view is created using a platform-specific view (AndroidView or UiKitView).
-  Widget buildPlayerView() {
+  ///
+  /// With [useTexture], Android renders into a Flutter [Texture] instead of a
+  /// platform view, which is much cheaper to composite, e.g. in scrolling
+  /// feeds. Use a controller from [IvsPlayer.create] so [startPlayer] waits
+  /// for the texture, and call [disposeTexture] when the view goes away.
+  Widget buildPlayerView({bool useTexture = false}) {
+    if (useTexture && Platform.isAndroid) {
+      return _getTextureView();
+    }
     return _getView();
   }
 
+  /// Releases the texture and player created by `buildPlayerView(useTexture: true)`.
+  Future<void> disposeTexture() async {
+    if (_texture == null) {
+      return;
+    }
+    _texture = null;
+    await _controller.disposeTexture();
+  }
+
   /// Instance of [IvsPlayerInterface] that interacts with the platform-specific implementation.
-  final _controller = IvsPlayerInterface.instance;
+  final IvsPlayerInterface _controller;
 
   /// StreamController to broadcast the current position of the player.
   StreamController<Duration> positionStream = StreamController.broadcast();
@@ -83,7 +126,33 @@ class IvsPlayer {
   /// StreamController to broadcast whether auto-quality adjustment is enabled.
   StreamController<bool> isAutoQualityStream = StreamController.broadcast();
 
+  /// StreamController to broadcast how far ahead of the position the player has buffered (Android only).
+  StreamController<Duration> bufferedPositionStream =
+      StreamController.broadcast();
+
+  /// StreamController to broadcast the live latency while playing a live stream (Android only).
+  StreamController<Duration> liveLatencyStream = StreamController.broadcast();
+
+  /// StreamController that emits the position at which the player started rebuffering (Android only).
+  StreamController<Duration> rebufferingStream = StreamController.broadcast();
+
+  /// StreamController to broadcast the size of the decoded video (Android only).
+  StreamController<Size> videoSizeStream = StreamController.broadcast();
+
+  /// StreamController that emits the QoE summary when a playback session ends (Android only).
+  StreamController<Map<String, dynamic>> qoeSummaryStream =
+      StreamController.broadcast();
+
+  /// StreamController that emits batches of timed metadata cues (Android only).
+  ///
+  /// Each cue has `startTime`, `endTime`, the raw `text` and, for JSON
+  /// payloads, the decoded `data`. Cues repeated after a seek are dropped.
+  StreamController<List<Map<String, dynamic>>> cueStream =
+      StreamController.broadcast();
+
   /// StreamSubscription to periodically update the player's position.
+  ///
+  /// Only used on iOS; Android pushes the position while playing.
   StreamSubscription? _positionStreamSubs;
 
   /// Toggles mute/unmute for the player.
@@ -101,27 +170,39 @@ class IvsPlayer {
     _controller.resume();
   }
 
-  void createPlayer(String url) {
-    _controller.createPlayer(url);
+  void createPlayer(
+    String url, {
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  }) {
+    _controller.createPlayer(url, playbackMode: playbackMode);
   }
 
   /// Starts the player with a given [url] and optional [autoPlay] flag.
   ///
   /// This method initializes the player and begins streaming the content from the specified URL.
   /// It listens for various events such as player state changes, quality updates, and errors, and broadcasts them via the respective streams.
-  void startPlayer(String url, {bool autoPlay = true}) {
-    _controller.createPlayer(url);
+  /// [playbackMode] picks the live latency policy on Android; compare modes with [liveLatencyStream] and [getQoeSummary].
+  void startPlayer(
+    String url, {
+    bool autoPlay = true,
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  }) {
+    _controller.createPlayer(url, playbackMode: playbackMode);
     _controller.startPlayer(
       url,
       autoPlay: autoPlay,
+      playbackMode: playbackMode,
       onData: (data) async {
         _parseEvents(data);
       },
       onError: (error) {},
     );
 
-    // Periodically update the player's position.
+    // Android pushes progress events while playing; poll on the other platforms.
     _positionStreamSubs?.cancel();
+    if (Platform.isAndroid) {
+      return;
+    }
     _positionStreamSubs = Stream.periodic(
       const Duration(milliseconds: 100),
     ).listen(
@@ -134,7 +215,33 @@ class IvsPlayer {
   void _parseEvents(dynamic data) async {
     // Parse incoming data and add relevant information to the appropriate streams.
     final Map<String, dynamic> parsedData = Map<String, dynamic>.from(data);
-    if (parsedData.containsKey(AppStrings.state)) {
+    if (parsedData.containsKey(AppStrings.progress)) {
+      final progress =
+          Map<String, dynamic>.from(parsedData[AppStrings.progress]);
+      positionStream.add(Duration(milliseconds: progress['position'] as int));
+      bufferedPositionStream
+          .add(Duration(milliseconds: progress['buffered'] as int));
+      liveLatencyStream
+          .add(Duration(milliseconds: progress['liveLatency'] as int));
+    } else if (parsedData.containsKey(AppStrings.cues)) {
+      final cues = parsedData[AppStrings.cues] as List;
+      cueStream.add(
+        cues.map((cue) => Map<String, dynamic>.from(cue as Map)).toList(),
+      );
+    } else if (parsedData.containsKey(AppStrings.qoeSummary)) {
+      qoeSummaryStream
+          .add(Map<String, dynamic>.from(parsedData[AppStrings.qoeSummary]));
+    } else if (parsedData.containsKey(AppStrings.rebuffering)) {
+      final value = parsedData[AppStrings.rebuffering] as int;
+      rebufferingStream.add(Duration(milliseconds: value));
+    } else if (parsedData.containsKey(AppStrings.videoWidth)) {
+      videoSizeStream.add(
+        Size(
+          (parsedData[AppStrings.videoWidth] as int).toDouble(),
+          (parsedData[AppStrings.videoHeight] as int).toDouble(),
+        ),
+      );
+    } else if (parsedData.containsKey(AppStrings.state)) {
       final value = parsedData[AppStrings.state];
       playeStateStream.add(PlayerState.values[value]);
     } else if (parsedData.containsKey(AppStrings.quality)) {
@@ -192,6 +299,28 @@ class IvsPlayer {
     return await _controller.isAutoQuality();
   }
 
+  /// Sets how often position, buffered position and live latency are pushed while
+  /// playing, 250 ms by default (Android only).
+  Future<int> setProgressInterval(Duration interval) {
+    return _controller.setProgressInterval(interval.inMilliseconds);
+  }
+
+  /// Returns the QoE summary of the current playback session (Android only).
+  Future<Map<String, dynamic>> getQoeSummary() {
+    return _controller.getQoeSummary();
+  }
+
+  /// Sets the minimum time between two batches on [cueStream] (Android only).
+  Future<void> setCueInterval(Duration interval) {
+    return _controller.setCueInterval(interval.inMilliseconds);
+  }
+
+  /// Returns how many timed metadata cues were decoded, delivered and dropped
+  /// (Android only).
+  Future<Map<String, dynamic>> getCueMetrics() {
+    return _controller.getCueMetrics();
+  }
+
   /// Seeks the player to the specified [duration].
   Future<void> seekTo(Duration duration) async {
     await _controller.seekTo(duration);
@@ -264,6 +393,16 @@ class IvsPlayer {
     return qualities;
   }
 
+  /// Preloads the next [urls] of a feed so swiping to them shows video without
+  /// reloading the stream, most likely next first (Android only). Preload with
+  /// the [playbackMode] the players will be started with.
+  Future<Map<String, dynamic>> preload(
+    List<String> urls, {
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  }) {
+    return _controller.preload(urls, playbackMode: playbackMode);
+  }
+
   /// Disposes all players and cleans up resources.
   Future<void> disposeAllPlayers() async {
     await _controller.disposeAllPlayers();
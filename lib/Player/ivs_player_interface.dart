@@ -1,5 +1,6 @@
 import 'dart:typed_data';
 
+import 'package:ivs_broadcaster/helpers/enums.dart';
 import 'package:plugin_platform_interface/plugin_platform_interface.dart';
 
 import 'ivs_player_method_channel.dart';
@@ -37,14 +38,32 @@ abstract class IvsPlayerInterface extends PlatformInterface {
   /// - [autoPlay]: If true, the player starts playing the content automatically.
   /// - [onData]: Callback function to handle data events from the player.
   /// - [onError]: Callback function to handle error events from the player.
+  /// - [playbackMode]: Latency and buffering policy for live streams (Android only).
   void startPlayer(
     String url, {
     required bool autoPlay,
+    PlaybackMode playbackMode = PlaybackMode.balanced,
     void Function(dynamic)? onData,
     void Function(dynamic)? onError,
   });
 
-  void createPlayer(String url);
+  /// Routes this controller to the channels of the platform view [viewId]
+  /// instead of the shared legacy channels (Android only).
+  void bindView(int viewId);
+
+  /// Creates a player that renders into a Flutter texture and routes this
+  /// controller to it, returning the texture id to draw (Android only).
+  Future<int> createTexture();
+
+  /// Releases the texture created by [createTexture] and its player.
+  Future<void> disposeTexture();
+
+  /// Loads [url] in the native player pool; pass the [playbackMode] the
+  /// player will be started with, as buffering is configured before loading.
+  void createPlayer(
+    String url, {
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  });
   void selectPlayer(String url);
 
   /// Resumes the playback if the player was paused.
@@ -91,6 +110,24 @@ abstract class IvsPlayerInterface extends PlatformInterface {
   /// Returns a [Future] that resolves to a [Duration] representing the current playback position.
   Future<Duration> getPosition();
 
+  /// Sets how often the native side pushes position, buffered position and live
+  /// latency while playing (Android only).
+  ///
+  /// Returns the interval actually applied, in milliseconds.
+  Future<int> setProgressInterval(int intervalMs);
+
+  /// Returns the quality-of-experience summary of the current playback session
+  /// (Android only): time to first frame, rebuffering, time per rendition,
+  /// bitrate switches, dropped frames and live latency percentiles.
+  Future<Map<String, dynamic>> getQoeSummary();
+
+  /// Sets the minimum time between two batches of timed metadata cues
+  /// (Android only, 100 ms by default).
+  Future<void> setCueInterval(int intervalMs);
+
+  /// Returns how many cues were decoded, delivered and dropped (Android only).
+  Future<Map<String, dynamic>> getCueMetrics();
+
   /// Sets the player to play multiple streams simultaneously.
   ///
   /// - [urls]: A list of streaming URLs to play simultaneously.
@@ -106,6 +143,16 @@ abstract class IvsPlayerInterface extends PlatformInterface {
   ///
   Future<Uint8List> getThumbnail({String? url});
 
+  /// Starts loading [urls] in the native player pool before their views are
+  /// shown, most likely next first (Android only). Only a player started with
+  /// the same [playbackMode] reuses a preloaded stream.
+  ///
+  /// Returns the pool metrics: size, capacity, hits, misses and evictions.
+  Future<Map<String, dynamic>> preload(
+    List<String> urls, {
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  });
+
   /// Dispose all the players.
   Future<void> disposeAllPlayers();
 }
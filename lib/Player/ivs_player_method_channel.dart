@@ -3,19 +3,105 @@ import 'dart:developer';
 
 import 'package:flutter/services.dart';
 import 'package:ivs_broadcaster/Player/ivs_player_interface.dart';
+import 'package:ivs_broadcaster/helpers/enums.dart';
 
 /// [IvsPlayerMethodChannel] is a platform-specific implementation of the [IvsPlayerInterface]
 /// using the MethodChannel and EventChannel to communicate with native code.
 class IvsPlayerMethodChannel extends IvsPlayerInterface {
+  /// Creates a channel implementation.
+  ///
+  /// With [waitForView], [startPlayer] waits until [bindView] or
+  /// [createTexture] was called so a controller never drives another view
+  /// through the legacy channels.
+  IvsPlayerMethodChannel({this.waitForView = false});
+
+  /// Whether [startPlayer] waits for the platform view to be created.
+  final bool waitForView;
+
   /// [MethodChannel] used to invoke methods on the native platform.
-  final _methodChannel = const MethodChannel("ivs_player");
+  ///
+  /// Starts on the legacy channel shared by all views and moves to the view's
+  /// own channel once [bindView] is called.
+  MethodChannel _methodChannel = const MethodChannel("ivs_player");
 
   /// [EventChannel] used to receive events from the native platform.
-  final _eventChannel = const EventChannel('ivs_player_event');
+  EventChannel _eventChannel = const EventChannel('ivs_player_event');
+
+  final Completer<void> _viewCreated = Completer<void>();
+
+  void Function(dynamic)? _onData;
+  void Function(dynamic)? _onError;
 
   /// StreamSubscription for listening to player state changes.
   StreamSubscription? playerStateSubscription;
 
+  /// Creates and disposes texture-backed players.
+  static const MethodChannel _textureChannel =
+      MethodChannel("ivs_player_textures");
+
+  /// Id of the texture created by [createTexture], if any.
+  int? _textureId;
+
+  @override
+  void bindView(int viewId) {
+    _bind(
+      MethodChannel("ivs_player/$viewId"),
+      EventChannel("ivs_player_event/$viewId"),
+    );
+  }
+
+  @override
+  Future<int> createTexture() async {
+    try {
+      final textureId = await _textureChannel.invokeMethod<int>("create");
+      _textureId = textureId!;
+      _bind(
+        MethodChannel("ivs_player_texture/$textureId"),
+        EventChannel("ivs_player_texture_event/$textureId"),
+      );
+      return textureId;
+    } catch (e) {
+      log(e.toString());
+      throw Exception(
+          "Unable to create the player texture [Create Texture]");
+    }
+  }
+
+  @override
+  Future<void> disposeTexture() async {
+    final textureId = _textureId;
+    if (textureId == null) {
+      return;
+    }
+    _textureId = null;
+    playerStateSubscription?.cancel();
+    playerStateSubscription = null;
+    try {
+      await _textureChannel.invokeMethod("dispose", {
+        "textureId": textureId,
+      });
+    } catch (e) {
+      log(e.toString());
+      throw Exception(
+          "Unable to dispose the player texture [Dispose Texture]");
+    }
+  }
+
+  void _bind(MethodChannel methodChannel, EventChannel eventChannel) {
+    _methodChannel = methodChannel;
+    _eventChannel = eventChannel;
+    if (playerStateSubscription != null) {
+      // move the running subscription over to the view's own event channel
+      playerStateSubscription?.cancel();
+      playerStateSubscription = _eventChannel
+          .receiveBroadcastStream()
+          .listen(_onData, onError: _onError);
+    }
+    if (!_viewCreated.isCompleted) {
+      _viewCreated.complete();
+    }
+  }
+
   /// Toggles mute/unmute for the player.
   @override
   void muteUnmute() {
@@ -55,13 +141,20 @@ class IvsPlayerMethodChannel extends IvsPlayerInterface {
   void startPlayer(
     String url, {
     required bool autoPlay,
+    PlaybackMode playbackMode = PlaybackMode.balanced,
     void Function(dynamic)? onData,
     void Function(dynamic)? onError,
   }) async {
     try {
+      if (waitForView) {
+        await _viewCreated.future;
+      }
+      _onData = onData;
+      _onError = onError;
       await _methodChannel.invokeMethod("startPlayer", {
         "url": url,
         "autoPlay": autoPlay,
+        "playbackMode": playbackMode.name,
       });
 
       // Cancel any existing subscription before creating a new one.
@@ -169,9 +262,66 @@ class IvsPlayerMethodChannel extends IvsPlayerInterface {
   }
 
   @override
-  void createPlayer(String url) async {
+  Future<int> setProgressInterval(int intervalMs) async {
+    try {
+      final applied = await _methodChannel.invokeMethod<int>(
+        "setProgressInterval",
+        {
+          "intervalMs": intervalMs,
+        },
+      );
+      return applied ?? intervalMs;
+    } catch (e) {
+      log(e.toString());
+      throw Exception(
+          "Unable to set the progress interval [Set Progress Interval]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getQoeSummary() async {
+    try {
+      final summary = await _methodChannel
+          .invokeMethod<Map<Object?, Object?>>("qoeSummary");
+      return Map<String, dynamic>.from(summary ?? {});
+    } catch (e) {
+      log(e.toString());
+      throw Exception("Unable to get the QoE summary [Get QoE Summary]");
+    }
+  }
+
+  @override
+  Future<void> setCueInterval(int intervalMs) async {
+    try {
+      await _methodChannel.invokeMethod("setCueInterval", {
+        "intervalMs": intervalMs,
+      });
+    } catch (e) {
+      log(e.toString());
+      throw Exception("Unable to set the cue interval [Set Cue Interval]");
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getCueMetrics() async {
+    try {
+      final metrics = await _methodChannel
+          .invokeMethod<Map<Object?, Object?>>("cueMetrics");
+      return Map<String, dynamic>.from(metrics ?? {});
+    } catch (e) {
+      log(e.toString());
+      throw Exception("Unable to get the cue metrics [Get Cue Metrics]");
+    }
+  }
+
+  @override
+  void createPlayer(
+    String url, {
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  }) async {
     await _methodChannel.invokeMethod("createPlayer", {
       "playerId": url,
+      "playbackMode": playbackMode.name,
     });
   }
 
@@ -192,6 +342,8 @@ class IvsPlayerMethodChannel extends IvsPlayerInterface {
     _methodChannel.invokeMethod("multiPlayer", {
       "urls": urls,
     });
+    _onData = onData;
+    _onError = onError;
 
     // Cancel any existing subscription before creating a new one.
     playerStateSubscription?.cancel();
@@ -214,6 +366,26 @@ class IvsPlayerMethodChannel extends IvsPlayerInterface {
     }
   }
 
+  @override
+  Future<Map<String, dynamic>> preload(
+    List<String> urls, {
+    PlaybackMode playbackMode = PlaybackMode.balanced,
+  }) async {
+    try {
+      final metrics = await _methodChannel.invokeMethod<Map<Object?, Object?>>(
+        "preload",
+        {
+          "urls": urls,
+          "playbackMode": playbackMode.name,
+        },
+      );
+      return Map<String, dynamic>.from(metrics ?? {});
+    } catch (e) {
+      log(e.toString());
+      throw Exception("Unable to preload the players [Preload]");
+    }
+  }
+
   @override
   Future<void> disposeAllPlayers() async {
     try {
@@ -82,6 +82,15 @@ enum PlayerState {
   PlayerStateEnded,
 }
 
+/// Pixel format the Android camera path feeds into the AR pipeline.
+enum CaptureIngestMode {
+  /// Frames are converted to RGBA by CameraX before they are copied.
+  rgba,
+
+  /// Frames stay in YUV and are packed to NV21, about 2.7x less data per frame.
+  yuv,
+}
+
 enum IvsQuality {
   q360,
   q720,
@@ -103,3 +112,16 @@ extension IvsQualityExtension on IvsQuality {
     }
   }
 }
+
+/// Live playback latency versus smoothness trade-off (Android only).
+enum PlaybackMode {
+  /// Lowest latency: low-latency mode, jump back to live after a stall and
+  /// speed up playback when latency drifts past about 2.5 seconds.
+  interactive,
+
+  /// Low-latency mode with a gentler catch-up towards 4 seconds.
+  balanced,
+
+  /// Regular latency with a deep initial buffer, latency is never chased.
+  smooth,
+}
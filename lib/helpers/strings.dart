@@ -7,4 +7,10 @@ class AppStrings {
   static const error = "error";
   static const seekedtotime = "seekedtotime";
   static const syncTime = "syncTime";
+  static const progress = "progress";
+  static const rebuffering = "rebuffering";
+  static const videoWidth = "videoWidth";
+  static const videoHeight = "videoHeight";
+  static const qoeSummary = "qoeSummary";
+  static const cues = "cues";
 }